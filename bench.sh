@@ -0,0 +1,60 @@
+#!/bin/bash
+
+# Compiles and runs the JMH benchmarks of benchmark/src. All arguments are
+# passed to JMH, e.g.
+#   ./bench.sh WorldUpdateBenchmark -p nrofHosts=1000
+#   ./bench.sh -l        (list the benchmarks)
+#   ./bench.sh -h        (JMH options)
+
+# Configuration variables
+SRCDIR="src"
+LIBDIR="lib"
+BENCHSRCDIR="benchmark/src"
+BENCHLIBDIR="benchmark/lib"
+TARGETDIR="benchmark/target"
+MAINCLASS="org.openjdk.jmh.Main"
+MAVENREPO="https://repo1.maven.org/maven2"
+JMHJARS="org/openjdk/jmh/jmh-core/1.37/jmh-core-1.37.jar
+org/openjdk/jmh/jmh-generator-annprocess/1.37/jmh-generator-annprocess-1.37.jar
+net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar
+org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+
+echo "[INFO] Preparing benchmarks..."
+
+# Fetch JMH if it's not there yet
+mkdir -p "$BENCHLIBDIR"
+for jar in $JMHJARS; do
+    file="$BENCHLIBDIR/$(basename "$jar")"
+    if [ ! -f "$file" ]; then
+        echo "[INFO] Downloading $(basename "$jar")"
+        if ! curl -sfL -o "$file" "$MAVENREPO/$jar"; then
+            rm -f "$file"
+            echo "[ERROR] Can't download $MAVENREPO/$jar"
+            echo "[INFO] Copy the JMH jars to $BENCHLIBDIR manually."
+            exit 1
+        fi
+    fi
+done
+
+# Build classpath with platform-appropriate separator
+CLASSPATH="$TARGETDIR"
+for jar in "$LIBDIR"/*.jar "$BENCHLIBDIR"/*.jar; do
+    [ -f "$jar" ] || continue
+    CLASSPATH="$CLASSPATH:$jar"
+done
+
+# Compile the simulator (including the test fixtures) and the benchmarks
+echo "[INFO] Compiling..."
+rm -rf "$TARGETDIR"
+mkdir -p "$TARGETDIR"
+find "$SRCDIR" "$BENCHSRCDIR" -name "*.java" > "$TARGETDIR/sources.txt"
+if ! javac -nowarn -encoding UTF-8 -d "$TARGETDIR" -cp "$CLASSPATH" \
+        @"$TARGETDIR/sources.txt"; then
+    echo "[ERROR] Compilation failed."
+    exit 1
+fi
+rm -f "$TARGETDIR/sources.txt"
+
+# Run the benchmarks with all parameters passed to this script
+echo "[INFO] Running benchmarks..."
+java -cp "$CLASSPATH" "$MAINCLASS" "$@"
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.EventQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import test.TestSettings;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SimpleBroadcastInterface;
+import interfaces.SpatialHashGrid;
+
+/**
+ * Fixtures for the benchmarks. The simulator keeps its state in static
+ * fields, so every fixture starts by resetting the settings and the static
+ * state of the classes it uses (the same way the unit tests do).
+ */
+public class BenchmarkUtils {
+	/** namespace of the benchmark hosts' movement settings */
+	public static final String GROUP_NS = "BenchmarkGroup";
+	/** namespace of the benchmark hosts' interface settings */
+	public static final String INTERFACE_NS = "BenchmarkInterface";
+	/** area (m^2) per host in the synthetic worlds */
+	public static final int AREA_PER_HOST = 100 * 100;
+	/** transmit range of the hosts in the synthetic worlds */
+	public static final double TRANSMIT_RANGE = 30;
+	/** update interval of the synthetic worlds */
+	public static final double UPDATE_INTERVAL = 0.1;
+
+	private BenchmarkUtils() {}
+
+	/**
+	 * Resets the settings to the test settings with the given world size and
+	 * resets the static state of the simulator
+	 * @param worldSize Width and height of the (square) world
+	 * @return The new settings
+	 */
+	public static TestSettings initSettings(int worldSize) {
+		return initSettings(worldSize, World.DEF_CONNECTIVITY_OPTIMIZER);
+	}
+
+	/**
+	 * Resets the settings to the test settings with the given world size and
+	 * connectivity optimizer and resets the static state of the simulator
+	 * @param worldSize Width and height of the (square) world
+	 * @param optimizer The connectivity optimizer type
+	 * (see {@link World#CONNECTIVITY_OPTIMIZER_S})
+	 * @return The new settings
+	 */
+	public static TestSettings initSettings(int worldSize, String optimizer) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, worldSize + "," + worldSize);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "1");
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.CONNECTIVITY_OPTIMIZER_S, optimizer);
+
+		ConnectivityOptimizer.reset();
+		ConnectivityGrid.reset();
+		SpatialHashGrid.reset();
+		MovementModel.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		SimClock.reset();
+		return ts;
+	}
+
+	/**
+	 * Returns the edge length of a square world where the given number of
+	 * hosts have {@link #AREA_PER_HOST} of area each
+	 * @param nrofHosts Number of hosts
+	 * @return The world size
+	 */
+	public static int worldSize(int nrofHosts) {
+		return (int)Math.ceil(Math.sqrt(1.0 * nrofHosts * AREA_PER_HOST));
+	}
+
+	/**
+	 * Creates a synthetic world of hosts that move with random waypoint
+	 * movement and have one broadcast interface. The world's size grows with
+	 * the number of hosts so that the host density stays the same.
+	 * @param nrofHosts Number of hosts
+	 * @param routerProto Router prototype of the hosts (or null for a
+	 * passive router)
+	 * @param optimizer The connectivity optimizer type
+	 * @return The world
+	 */
+	public static World createWorld(int nrofHosts, MessageRouter routerProto,
+			String optimizer) {
+		return createWorld(nrofHosts, routerProto, optimizer, false);
+	}
+
+	/**
+	 * Creates a synthetic world like
+	 * {@link #createWorld(int, MessageRouter, String)}, optionally with
+	 * symmetric connectivity (see {@link World#SYMMETRIC_CONNECTIVITY_S})
+	 * @param nrofHosts Number of hosts
+	 * @param routerProto Router prototype of the hosts (or null for a
+	 * passive router)
+	 * @param optimizer The connectivity optimizer type
+	 * @param symmetric Should connectivity be checked once per pair
+	 * @return The world
+	 */
+	public static World createWorld(int nrofHosts, MessageRouter routerProto,
+			String optimizer, boolean symmetric) {
+		int size = worldSize(nrofHosts);
+		TestSettings ts = initSettings(size, optimizer);
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.SYMMETRIC_CONNECTIVITY_S, "" + symmetric);
+		ts.putSetting(GROUP_NS + "." + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(GROUP_NS + "." + MovementModel.WAIT_TIME, "0,120");
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + TRANSMIT_RANGE);
+		ts.putSetting(INTERFACE_NS + "." + NetworkInterface.TRANSMIT_SPEED_S,
+				"250000");
+
+		MovementModel mmProto = new RandomWaypoint(new Settings(GROUP_NS));
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		interfaces.add(new SimpleBroadcastInterface(
+				new Settings(INTERFACE_NS)));
+		if (routerProto == null) {
+			routerProto = new PassiveRouter(ts);
+		}
+
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<nrofHosts; i++) {
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(),
+					new ArrayList<MovementListener>(), "n", interfaces,
+					new ModuleCommunicationBus(), mmProto, routerProto));
+		}
+
+		return new World(hosts, size, size, UPDATE_INTERVAL,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import test.TestUtils;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.World;
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SpatialHashGrid;
+
+/**
+ * Benchmarks of the connectivity optimizers' ({@link ConnectivityGrid} and
+ * {@link SpatialHashGrid}) queries and location updates with stationary
+ * hosts spread evenly over a world with a constant host density.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectivityGridBenchmark {
+	/** number of pre-generated new locations (power of two) */
+	private static final int NROF_LOCATIONS = 4096;
+
+	@Param({"1000", "10000"})
+	public int nrofHosts;
+
+	@Param({World.GRID_OPTIMIZER, World.SPATIAL_HASH_OPTIMIZER})
+	public String optimizer;
+
+	private ConnectivityOptimizer grid;
+	private NetworkInterface[] interfaces;
+	private Coord[] locations;
+	private int next;
+	private int nextLocation;
+	private Consumer<NetworkInterface> consumer;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int size = BenchmarkUtils.worldSize(nrofHosts);
+		TestUtils utils = new TestUtils(null, null,
+				BenchmarkUtils.initSettings(size, optimizer));
+		utils.setTransmitRange(BenchmarkUtils.TRANSMIT_RANGE);
+		Random rng = new Random(1);
+
+		this.interfaces = new NetworkInterface[nrofHosts];
+		for (int i=0; i<nrofHosts; i++) {
+			DTNHost h = utils.createHost(new Coord(rng.nextDouble() * size,
+					rng.nextDouble() * size));
+			interfaces[i] = h.getInterfaces().get(0);
+		}
+		this.grid = ConnectivityOptimizer.getOptimizer(
+				interfaces[0].getInterfaceType().hashCode(),
+				BenchmarkUtils.TRANSMIT_RANGE);
+
+		this.locations = new Coord[NROF_LOCATIONS];
+		for (int i=0; i<NROF_LOCATIONS; i++) {
+			locations[i] = new Coord(rng.nextDouble() * size,
+					rng.nextDouble() * size);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUpConsumer(Blackhole bh) {
+		this.consumer = bh::consume;
+	}
+
+	@Benchmark
+	public Collection<NetworkInterface> getNearInterfaces() {
+		return grid.getNearInterfaces(nextInterface());
+	}
+
+	@Benchmark
+	public void forEachNear() {
+		grid.forEachNear(nextInterface(), consumer);
+	}
+
+	@Benchmark
+	public void updateLocation() {
+		NetworkInterface ni = nextInterface();
+		nextLocation = (nextLocation + 1) & (NROF_LOCATIONS - 1);
+		ni.getHost().setLocation(locations[nextLocation]);
+		grid.updateLocation(ni);
+	}
+
+	/**
+	 * Returns the next interface in round-robin order
+	 */
+	private NetworkInterface nextInterface() {
+		if (++next == interfaces.length) {
+			next = 0;
+		}
+		return interfaces[next];
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Benchmark of MaxProp's path cost calculation
+ * ({@link MaxPropDijkstra#getCosts(Integer, Set)}) over random meeting
+ * probability sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxPropDijkstraBenchmark {
+	/** number of meetings recorded by each node */
+	private static final int NROF_MEETINGS = 50;
+	/** number of cost targets (i.e., destinations of buffered messages) */
+	private static final int NROF_TARGETS = 50;
+
+	@Param({"100", "1000"})
+	public int nrofNodes;
+
+	private MaxPropDijkstra dijkstra;
+	private Set<Integer> targets;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random rng = new Random(1);
+		Map<Integer, MeetingProbabilitySet> probs =
+			new HashMap<Integer, MeetingProbabilitySet>();
+		for (int i=0; i<nrofNodes; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet(
+					MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+			for (int j=0; j<NROF_MEETINGS; j++) {
+				set.updateMeetingProbFor(rng.nextInt(nrofNodes));
+			}
+			probs.put(i, set);
+		}
+
+		this.dijkstra = new MaxPropDijkstra(probs);
+		this.targets = new HashSet<Integer>();
+		while (targets.size() < Math.min(NROF_TARGETS, nrofNodes)) {
+			targets.add(rng.nextInt(nrofNodes));
+		}
+	}
+
+	@Benchmark
+	public Map<Integer, Double> getCosts() {
+		if (++next == nrofNodes) {
+			next = 0;
+		}
+		return dijkstra.getCosts(next, targets);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * between random nodes of the bundled Helsinki map (the same map files the
+ * default scenario uses). The map directory is relative to the working
+ * directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFinderBenchmark {
+	/** the map files of the default scenario */
+	private static final String[] MAP_FILES = {"roads.wkt", "main_roads.wkt",
+		"pedestrian_paths.wkt", "shops.wkt"};
+	/** number of pre-generated node pairs (power of two) */
+	private static final int NROF_PAIRS = 1024;
+
+	@Param({"data/spatial"})
+	public String mapDir;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		WKTMapReader r = new WKTMapReader(true);
+		for (int i=0; i<MAP_FILES.length; i++) {
+			r.addPaths(new File(mapDir, MAP_FILES[i]), i + 1);
+		}
+		List<MapNode> nodes = r.getMap().getNodes();
+		Random rng = new Random(1);
+
+		this.pathFinder = new DijkstraPathFinder(null);
+		this.from = new MapNode[NROF_PAIRS];
+		this.to = new MapNode[NROF_PAIRS];
+		for (int i=0; i<NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+	}
+
+	@Benchmark
+	public List<MapNode> getShortestPath() {
+		next = (next + 1) & (NROF_PAIRS - 1);
+		return pathFinder.getShortestPath(from[next], to[next]);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reinforcement.qlearn.QLearner;
+
+/**
+ * Benchmark of one Q-learning update ({@link QLearner#update(int, int, int,
+ * double)}) with random states, actions and rewards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QLearnerBenchmark {
+	/** number of pre-generated transitions (power of two) */
+	private static final int NROF_TRANSITIONS = 4096;
+
+	@Param({"100", "10000"})
+	public int nrofStates;
+
+	@Param({"10", "100"})
+	public int nrofActions;
+
+	private QLearner learner;
+	private int[] states;
+	private int[] actions;
+	private int[] nextStates;
+	private double[] rewards;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random rng = new Random(1);
+		this.learner = new QLearner(nrofStates, nrofActions);
+		this.states = new int[NROF_TRANSITIONS];
+		this.actions = new int[NROF_TRANSITIONS];
+		this.nextStates = new int[NROF_TRANSITIONS];
+		this.rewards = new double[NROF_TRANSITIONS];
+		for (int i=0; i<NROF_TRANSITIONS; i++) {
+			states[i] = rng.nextInt(nrofStates);
+			actions[i] = rng.nextInt(nrofActions);
+			nextStates[i] = rng.nextInt(nrofStates);
+			rewards[i] = rng.nextDouble();
+		}
+	}
+
+	@Benchmark
+	public void update() {
+		next = (next + 1) & (NROF_TRANSITIONS - 1);
+		learner.update(states[next], actions[next], nextStates[next],
+				rewards[next]);
+	}
+}
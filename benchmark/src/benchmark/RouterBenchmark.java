@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import test.TestSettings;
+import test.TestUtils;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+
+/**
+ * Benchmark of {@link ActiveRouter}'s deliverable message exchange with
+ * large buffers. A host is connected to a number of neighbors and all the
+ * hosts' buffers are full of messages to a host that isn't connected, so
+ * every exchange has to go through all the buffers without finding anything
+ * to deliver (the common case in an update).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+	@Param({"100", "1000", "10000"})
+	public int nrofMessages;
+
+	@Param({"1", "10"})
+	public int nrofConnections;
+
+	private BenchmarkRouter router;
+
+	/**
+	 * Router that exposes the deliverable message exchange
+	 */
+	public static class BenchmarkRouter extends EpidemicRouter {
+		public BenchmarkRouter(Settings s) {
+			super(s);
+		}
+
+		protected BenchmarkRouter(BenchmarkRouter r) {
+			super(r);
+		}
+
+		/**
+		 * Calls {@link ActiveRouter#exchangeDeliverableMessages()}
+		 * @return A connection that started a transfer or null
+		 */
+		public Connection exchange() {
+			return exchangeDeliverableMessages();
+		}
+
+		@Override
+		public BenchmarkRouter replicate() {
+			return new BenchmarkRouter(this);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		TestSettings ts = BenchmarkUtils.initSettings(1000);
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		utils.setMessageRouterProto(new BenchmarkRouter(ts));
+
+		Coord c0 = new Coord(0, 0);
+		DTNHost host = utils.createHost(c0);
+		DTNHost[] neighbors = new DTNHost[nrofConnections];
+		for (int i=0; i<nrofConnections; i++) {
+			neighbors[i] = utils.createHost(c0);
+		}
+		DTNHost destination = utils.createHost(new Coord(900, 900));
+
+		createMessages(host, destination);
+		for (DTNHost n : neighbors) {
+			createMessages(n, destination);
+			host.forceConnection(n, null, true);
+		}
+		this.router = (BenchmarkRouter)host.getRouter();
+	}
+
+	/**
+	 * Fills the buffer of a host with messages to the destination
+	 */
+	private void createMessages(DTNHost from, DTNHost to) {
+		for (int i=0; i<nrofMessages; i++) {
+			from.createNewMessage(new Message(from, to, "M" + from + "_" + i,
+					1000));
+		}
+	}
+
+	@Benchmark
+	public Connection exchangeDeliverableMessages() {
+		return router.exchange();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.World;
+
+/**
+ * Benchmark of one {@link World#update()} (movement, connectivity and
+ * router updates) in synthetic worlds of random waypoint hosts with a
+ * constant host density.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldUpdateBenchmark {
+	/** number of updates run before measuring so that hosts are moving */
+	private static final int SETTLE_UPDATES = 100;
+
+	@Param({"100", "1000", "10000"})
+	public int nrofHosts;
+
+	@Param({World.GRID_OPTIMIZER, World.SPATIAL_HASH_OPTIMIZER})
+	public String optimizer;
+
+	@Param({"false", "true"})
+	public boolean symmetric;
+
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.world = BenchmarkUtils.createWorld(nrofHosts, null,
+				optimizer, symmetric);
+		for (int i=0; i<SETTLE_UPDATES; i++) {
+			world.update();
+		}
+	}
+
+	@Benchmark
+	public void update() {
+		world.update();
+	}
+}
@@ -34,12 +34,23 @@ public class DTNHost implements Comparable<DTNHost> {
     private Path path;
     private double speed;
     private double nextTimeToMove;
+    /** how many waypoints this host has been given */
+    private int nrofWaypoints;
     @Getter private String name;
     private int[] color;
     private List<MessageListener> msgListeners;
     private List<MovementListener> movListeners;
+    /** new destinations not yet told to the movement listeners (or null if
+     * listeners are informed immediately) */
+    private List<Tuple<Coord, Double>> pendingDestinations;
     private List<NetworkInterface> net;
     private ModuleCommunicationBus comBus;
+    /** are the interfaces of an idle host left without connectivity
+     * updates */
+    private boolean incrementalConnectivity;
+    /** has the host moved, been inactive or had its radio range changed
+     * since its interfaces' connectivity was last updated */
+    private boolean connectivityChanged = true;
 
     // tambahan testing
     public List<Duration> intervals;
@@ -101,6 +112,7 @@ public class DTNHost implements Comparable<DTNHost> {
         setRouter(mRouterProto.replicate());
 
         this.location = movement.getInitialLocation();
+        PositionStore.setLocation(this.address, this.location);
 
         this.nextTimeToMove = movement.nextPathAvailable();
         this.path = null;
@@ -227,6 +239,98 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.location;
     }
 
+    /**
+     * Returns true if this host has any connections up.
+     *
+     * @return true if this host has any connections up
+     */
+    public boolean hasConnections() {
+        for (NetworkInterface i : net) {
+            if (!i.getConnections().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the longest transmit range of this host's interfaces.
+     *
+     * @return the longest transmit range
+     */
+    public double getMaxTransmitRange() {
+        double range = 0;
+        for (NetworkInterface i : net) {
+            range = Math.max(range, i.getTransmitRange());
+        }
+        return range;
+    }
+
+    /**
+     * Returns true if any of this host's interfaces scans only periodically
+     * (i.e., has a non-zero scanning interval).
+     *
+     * @return true if any of the interfaces scans periodically
+     */
+    public boolean hasScanningInterfaces() {
+        for (NetworkInterface i : net) {
+            if (i.getScanInterval() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sim time when this host moves next; a time not after the
+     * current time means that the host is (or may start) moving.
+     *
+     * @return The time when this host moves next
+     */
+    public double getNextTimeToMove() {
+        return this.nextTimeToMove;
+    }
+
+    /**
+     * Returns the waypoint this host is currently moving towards (or null
+     * if the host hasn't got any waypoint yet).
+     *
+     * @return The current destination
+     */
+    public Coord getDestination() {
+        return this.destination;
+    }
+
+    /**
+     * Returns the speed this host moves towards its current destination.
+     *
+     * @return The current speed
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    /**
+     * Returns how many waypoints this host has been given so far. The value
+     * changes every time the host gets a new waypoint, so it can be used to
+     * detect when the straight line the host moves along has changed.
+     *
+     * @return The number of waypoints given to this host
+     */
+    public int getNrofWaypoints() {
+        return this.nrofWaypoints;
+    }
+
+    /**
+     * Returns the highest speed this host can move with along the current
+     * path or the paths its movement model gives next.
+     *
+     * @return The maximum speed of this host
+     */
+    public double getMaxSpeed() {
+        return Math.max(this.speed, this.movement.getMaxSpeed());
+    }
+
     /**
      * Returns the Path this node is currently traveling or null if no path is
      * in use at the moment.
@@ -244,6 +348,44 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     public void setLocation(Coord location) {
         this.location = location.clone();
+        PositionStore.setLocation(this.address, this.location);
+        this.connectivityChanged = true;
+    }
+
+    /**
+     * Saves this node's movement state (location, current path and movement
+     * model state) to a warmup snapshot host state.
+     *
+     * @param state The state object to save the state to
+     */
+    void saveMovementState(WarmupSnapshot.HostState state) {
+        state.location = this.location.clone();
+        state.destination = this.destination;
+        state.speed = this.speed;
+        state.nextTimeToMove = this.nextTimeToMove;
+        state.path = this.path;
+        state.nrofWaypoints = this.nrofWaypoints;
+        state.movementModel = this.movement.getClass().getName();
+        state.rng = this.movement.getOwnRng();
+        state.modelState = this.movement.getSnapshotState();
+    }
+
+    /**
+     * Restores this node's movement state from a warmup snapshot host state.
+     *
+     * @param state The state to restore
+     */
+    void restoreMovementState(WarmupSnapshot.HostState state) {
+        this.location.setLocation(state.location);
+        PositionStore.setLocation(this.address, this.location);
+        this.connectivityChanged = true;
+        this.destination = state.destination;
+        this.speed = state.speed;
+        this.nextTimeToMove = state.nextTimeToMove;
+        this.path = state.path;
+        this.nrofWaypoints = state.nrofWaypoints;
+        this.movement.setOwnRng(state.rng);
+        this.movement.restoreSnapshotState(state.modelState);
     }
 
     /**
@@ -364,6 +506,9 @@ public class DTNHost implements Comparable<DTNHost> {
         } else {
             ni.destroyConnection(no);
         }
+        // let the normal connectivity updates check the forced change
+        this.connectivityChanged = true;
+        anotherHost.connectivityChanged = true;
     }
 
     /**
@@ -383,13 +528,187 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     public void update(boolean simulateConnections) {
         if (!isActive()) {
+            this.connectivityChanged = true;
+            return;
+        }
+        if (SimProfiler.isEnabled()) {
+            updateProfiled(simulateConnections, false);
             return;
         }
 
         if (simulateConnections) {
+            updateInterfaces();
+        }
+        this.router.update();
+    }
+
+    /**
+     * Updates the connectivity of this node's interfaces, or only the
+     * idle state of them if the node is idle (see
+     * {@link #isConnectivityIdle()}).
+     */
+    private void updateInterfaces() {
+        if (isConnectivityIdle()) {
             for (NetworkInterface i : net) {
-                i.update();
+                i.updateIdle();
             }
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.update();
+        }
+        this.connectivityChanged = false;
+    }
+
+    /**
+     * Sets whether the interfaces of an idle node are left without
+     * connectivity updates (see {@link #isConnectivityIdle()}).
+     *
+     * @param incremental True to skip the updates of idle nodes
+     */
+    public void setIncrementalConnectivity(boolean incremental) {
+        this.incrementalConnectivity = incremental;
+    }
+
+    /**
+     * Returns true if incremental connectivity updates are on and the
+     * connectivity of this node can't have changed since its interfaces were
+     * last updated: the node is active and hasn't moved, been inactive or
+     * had the range of an interface changed since then, and none of its
+     * interfaces has a scanning interval. The connections between two idle
+     * nodes stay as they are, and the connections between an idle and a
+     * non-idle node are checked by the non-idle one.
+     *
+     * @return True if the node's interfaces don't need to be updated
+     */
+    public boolean isConnectivityIdle() {
+        if (!this.incrementalConnectivity || this.connectivityChanged) {
+            return false;
+        }
+        for (int i = 0, n = net.size(); i < n; i++) {
+            if (net.get(i).getScanInterval() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells the node that the connectivity of its interfaces may have
+     * changed (e.g., an interface's range has changed) and must be checked
+     * on the next update.
+     */
+    void connectivityChanged() {
+        this.connectivityChanged = true;
+    }
+
+    /**
+     * Updates node's network layer and router like {@link #update(boolean)}
+     * and {@link #updateScanned()} do and records the time spent in both to
+     * the {@link SimProfiler}.
+     *
+     * @param simulateConnections Should network layer be updated too
+     * @param scanned Should the scanned connectivity changes be applied
+     *                instead of updating the interfaces
+     */
+    private void updateProfiled(boolean simulateConnections, boolean scanned) {
+        long time = SimProfiler.time();
+        long bytes = SimProfiler.allocatedBytes();
+        if (simulateConnections) {
+            if (scanned) {
+                for (NetworkInterface i : net) {
+                    i.updateScanned();
+                }
+            } else {
+                updateInterfaces();
+            }
+        }
+        SimProfiler.phaseDone(SimProfiler.Phase.CONNECTIVITY, time, bytes);
+
+        time = SimProfiler.time();
+        bytes = SimProfiler.allocatedBytes();
+        this.router.update();
+        SimProfiler.routerDone(this.router, time, bytes);
+    }
+
+    /**
+     * Updates the locations of this node's interfaces to their connectivity
+     * optimizers. First phase of a scanned update (see
+     * {@link #scanConnections()}).
+     */
+    public void updateInterfaceLocations() {
+        if (!isActive()) {
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.updateLocation();
+        }
+    }
+
+    /**
+     * Finds out the connectivity changes of this node's interfaces without
+     * changing any connections. Second phase of a scanned update; nodes can
+     * be scanned concurrently.
+     */
+    public void scanConnections() {
+        if (!isActive()) {
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.scanConnections();
+        }
+    }
+
+    /**
+     * Starts a symmetric connection scan of this node's interfaces (see
+     * {@link NetworkInterface#startPairScan()}). Must be called for all
+     * nodes before any of them is {@link #scanPairs() scanned}.
+     */
+    public void startPairScan() {
+        if (!isActive()) {
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.startPairScan();
+        }
+    }
+
+    /**
+     * Finds out the connectivity changes of this node's interfaces, and
+     * of the interfaces they pair with, without changing any connections.
+     * Alternative second phase of a scanned update; nodes must be scanned
+     * sequentially.
+     */
+    public void scanPairs() {
+        if (!isActive()) {
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.scanPairs();
+        }
+    }
+
+    /**
+     * Updates node's network layer using the changes found by
+     * {@link #scanConnections()} and then updates the router. Last phase of a
+     * scanned update.
+     */
+    public void updateScanned() {
+        if (!isActive()) {
+            return;
+        }
+        if (SimProfiler.isEnabled()) {
+            updateProfiled(true, true);
+            return;
+        }
+
+        for (NetworkInterface i : net) {
+            i.updateScanned();
         }
         this.router.update();
     }
@@ -405,7 +724,11 @@ public class DTNHost implements Comparable<DTNHost> {
         double distance;
         double dx, dy;
 
-        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+        if (!isActive()) {
+            this.connectivityChanged = true;
+            return;
+        }
+        if (SimClock.getTime() < this.nextTimeToMove) {
             return;
         }
         if (this.destination == null) {
@@ -422,6 +745,8 @@ public class DTNHost implements Comparable<DTNHost> {
             this.location.setLocation(this.destination); // snap to destination
             possibleMovement -= distance;
             if (!setNextWaypoint()) { // get a new waypoint
+                PositionStore.setLocation(this.address, this.location);
+                this.connectivityChanged = true;
                 return; // no more waypoints left
             }
             distance = this.location.distance(this.destination);
@@ -433,6 +758,8 @@ public class DTNHost implements Comparable<DTNHost> {
         dy = (possibleMovement / distance) * (this.destination.getY()
                 - this.location.getY());
         this.location.translate(dx, dy);
+        PositionStore.setLocation(this.address, this.location);
+        this.connectivityChanged = true;
     }
 
     /**
@@ -455,8 +782,12 @@ public class DTNHost implements Comparable<DTNHost> {
 
         this.destination = path.getNextWaypoint();
         this.speed = path.getSpeed();
+        this.nrofWaypoints++;
 
-        if (this.movListeners != null) {
+        if (this.pendingDestinations != null) {
+            this.pendingDestinations.add(new Tuple<Coord, Double>(
+                    this.destination, this.speed));
+        } else if (this.movListeners != null) {
             for (MovementListener l : this.movListeners) {
                 l.newDestination(this, this.destination, this.speed);
             }
@@ -465,6 +796,40 @@ public class DTNHost implements Comparable<DTNHost> {
         return true;
     }
 
+    /**
+     * Sets whether movement listeners should be informed about new
+     * destinations only when {@link #informMovementListeners()} is called.
+     * Deferring is needed when hosts are moved concurrently.
+     *
+     * @param defer True to defer the notifications, false to inform the
+     * listeners immediately
+     */
+    public void setDeferMovementListeners(boolean defer) {
+        if (defer && this.movListeners != null && !movListeners.isEmpty()) {
+            this.pendingDestinations = new ArrayList<Tuple<Coord, Double>>();
+        } else {
+            informMovementListeners();
+            this.pendingDestinations = null;
+        }
+    }
+
+    /**
+     * Informs the movement listeners about the destinations this host has
+     * got since the last call (if notifications are deferred).
+     */
+    public void informMovementListeners() {
+        if (this.pendingDestinations == null
+                || this.pendingDestinations.isEmpty()) {
+            return;
+        }
+        for (Tuple<Coord, Double> t : this.pendingDestinations) {
+            for (MovementListener l : this.movListeners) {
+                l.newDestination(this, t.getKey(), t.getValue());
+            }
+        }
+        this.pendingDestinations.clear();
+    }
+
     /**
      * Sends a message from this host to another host
      *
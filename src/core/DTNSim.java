@@ -6,6 +6,10 @@ import ui.DTNSimTextUI;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simulator's main class
@@ -29,6 +33,12 @@ public class DTNSim {
 	 * Separator for setting overrides in command line.
 	 */
 	public static final String CMD_SETTING_DELIMITER = "@@";
+	/**
+	 * If this option ({@value}) is given to program, the batch mode runs
+	 * that many runs concurrently. Each concurrent job runs in an isolated
+	 * {@link SimContext} of its own.
+	 */
+	public static final String JOBS_FLAG = "-j";
 
 	/**
 	 * Name of the static method that all resettable classes must have
@@ -48,8 +58,9 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs,
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
-	 * files for the simulation run (if any). For GUI mode, the number before
+	 * {@link Settings#setRunIndex(int)}). With {@link #JOBS_FLAG} and the
+	 * number of jobs, that many batch runs are run concurrently. Following
+	 * arguments are the settings files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
 	 *
 	 * @param args Command line arguments
@@ -60,6 +71,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofJobs = 1;
 		String cmdSettings = null;
 
 		/* set US locale to parse decimals in consistent way */
@@ -73,6 +85,9 @@ public class DTNSim {
 					nrofRuns = parseNrofRuns(args[firstConfIndex + 1]);
 					firstConfIndex += 2;
 					haveRunIndex = true;
+				} else if (args[firstConfIndex].equals(JOBS_FLAG)) {
+					nrofJobs = parseNrofJobs(args[firstConfIndex + 1]);
+					firstConfIndex += 2;
 				} else if (args[firstConfIndex].equals(SETTING_DEF_FLAG)) {
 					cmdSettings = args[firstConfIndex + 1];
 					firstConfIndex += 2;
@@ -98,10 +113,19 @@ public class DTNSim {
 
 		if (cmdSettings != null) {
 			parseCmdSettings(cmdSettings);
-			cmdSettings = null;
 		}
 
-		if (batchMode) {
+		if (batchMode && nrofJobs > 1 && nrofRuns[1] - nrofRuns[0] > 1) {
+			long startTime = System.currentTimeMillis();
+			int failed = runConcurrently(confFiles, firstConfIndex,
+					cmdSettings, nrofRuns, nrofJobs);
+			double duration = (System.currentTimeMillis() - startTime) / 1000.0;
+			print("---\nAll done in " + String.format("%.2f", duration) + "s");
+			if (failed > 0) {
+				System.err.println(failed + " run(s) failed");
+				System.exit(-1);
+			}
+		} else if (batchMode) {
 			long startTime = System.currentTimeMillis();
 			for (int i = nrofRuns[0]; i < nrofRuns[1]; i++) {
 				print("Run " + (i + 1) + "/" + nrofRuns[1]);
@@ -117,6 +141,95 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Runs batch runs concurrently, each job in a simulation context of its
+	 * own. Every job runs its share of the runs one after another.
+	 *
+	 * @param confFiles      Configuration file names
+	 * @param firstConfIndex Index of the first config file name
+	 * @param cmdSettings    Command line setting overrides (or null)
+	 * @param nrofRuns       The first and (last_run_index - 1) in an array
+	 * @param nrofJobs       How many runs to run concurrently
+	 * @return The number of runs that failed
+	 */
+	private static int runConcurrently(final String[] confFiles,
+			final int firstConfIndex, final String cmdSettings, int[] nrofRuns,
+			int nrofJobs) {
+		final List<SimContext> contexts = new ArrayList<SimContext>();
+		final ThreadLocal<SimContext> jobContext = new ThreadLocal<SimContext>() {
+			@Override
+			protected SimContext initialValue() {
+				SimContext context = new SimContext(confFiles, firstConfIndex,
+						cmdSettings);
+				synchronized (contexts) {
+					contexts.add(context);
+				}
+				return context;
+			}
+		};
+		final int lastRun = nrofRuns[1];
+		final AtomicInteger failed = new AtomicInteger();
+		ExecutorService jobs = Executors.newFixedThreadPool(nrofJobs);
+
+		for (int i = nrofRuns[0]; i < nrofRuns[1]; i++) {
+			final int runIndex = i;
+			jobs.execute(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex + 1) + "/" + lastRun);
+					try {
+						jobContext.get().run(runIndex);
+					} catch (RuntimeException | Error e) {
+						System.err.println("Run " + (runIndex + 1) + " failed");
+						e.printStackTrace();
+						failed.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		jobs.shutdown();
+		try {
+			jobs.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			jobs.shutdownNow();
+			failed.incrementAndGet(); /* not all runs were finished */
+		}
+		for (SimContext context : contexts) {
+			context.close();
+		}
+		return failed.get();
+	}
+
+	/**
+	 * Initializes the settings of a simulation context. Called (through
+	 * reflection) by {@link SimContext} in the context's own copy of this
+	 * class.
+	 *
+	 * @param confFiles      Configuration file names
+	 * @param firstConfIndex Index of the first config file name
+	 * @param cmdSettings    Command line setting overrides (or null)
+	 */
+	public static void initContext(String[] confFiles, int firstConfIndex,
+			String cmdSettings) {
+		initSettings(confFiles, firstConfIndex);
+		if (cmdSettings != null) {
+			parseCmdSettings(cmdSettings);
+		}
+	}
+
+	/**
+	 * Runs one batch run in a simulation context. Called (through
+	 * reflection) by {@link SimContext} in the context's own copy of this
+	 * class.
+	 *
+	 * @param runIndex The run index to use
+	 */
+	public static void runInContext(int runIndex) {
+		Settings.setRunIndex(runIndex);
+		resetForNextRun();
+		new DTNSimTextUI().start();
+	}
+
 	/**
 	 * Initializes Settings.
 	 *
@@ -228,6 +341,27 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the number of concurrent batch jobs from a command line argument
+	 *
+	 * @param arg The argument to parse
+	 * @return The number of jobs
+	 */
+	private static int parseNrofJobs(String arg) {
+		int jobs = 0;
+		try {
+			jobs = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		if (jobs < 1) {
+			System.err.println("Invalid argument '" + arg +
+					"' for number of jobs (must be a positive integer)");
+			System.exit(-1);
+		}
+		return jobs;
+	}
+
 	/**
 	 * Parses configuration override settings passed after {@link #SETTING_DEF_FLAG}
 	 * separated by {@link #CMD_SETTING_DELIMITER}. This setting will override the
@@ -164,6 +164,17 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
+	/**
+	 * Returns the time when the TTL of this message passes
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60.0;
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
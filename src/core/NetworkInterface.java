@@ -4,12 +4,13 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
@@ -32,11 +33,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
 	
+	/** initial size of the near interface batch */
+	private static final int INITIAL_BATCH_SIZE = 16;
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 	private static int nextAddress = 0;
 	private static Random rng;
 	protected DTNHost host = null;
+	/** address of the host (index of its location in the PositionStore) */
+	private int hostAddress;
 
 	protected String interfacetype;
 	protected List<Connection> connections; // connected hosts
@@ -48,6 +53,32 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** connections found out of range by the last connection scan */
+	private List<Connection> scannedDown = new ArrayList<Connection>();
+	/** interfaces found connectable by the last connection scan */
+	private List<NetworkInterface> scannedUp =
+		new ArrayList<NetworkInterface>();
+	/**
+	 * Action that tries to connect to a near interface. Created once per
+	 * interface so that the neighborhood scans don't create any objects
+	 * (see {@link ConnectivityOptimizer#forEachNear}).
+	 */
+	protected final Consumer<NetworkInterface> connectAction =
+		this::connectNear;
+	/** action that collects the connectable near interfaces of a scan */
+	private final Consumer<NetworkInterface> scanAction = this::scanNear;
+	/** action that checks the near pairs of a symmetric scan */
+	private final Consumer<NetworkInterface> pairAction = this::scanPair;
+	/** is this interface scanning in the current symmetric scan */
+	private boolean pairScanning;
+	/** near interfaces collected for a batched range check */
+	private NetworkInterface[] batch = new NetworkInterface[INITIAL_BATCH_SIZE];
+	/** host addresses of the interfaces in the batch */
+	private int[] batchHosts = new int[INITIAL_BATCH_SIZE];
+	/** number of interfaces in the batch */
+	private int batchSize;
+	/** action that adds a near interface to the batch */
+	private final Consumer<NetworkInterface> batchAction = this::addToBatch;
 
 
 	static {
@@ -98,6 +129,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.connections = new ArrayList<Connection>();
 		this.address = getNextNetAddress();
 		this.host = ni.host;
+		this.hostAddress = ni.hostAddress;
 		this.cListeners = ni.cListeners;
 		this.interfacetype = ni.interfacetype;
 		this.transmitRange = ni.transmitRange;
@@ -119,12 +151,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public void setHost(DTNHost host) {
 		this.host = host;
+		this.hostAddress = host.getAddress();
 		ModuleCommunicationBus comBus = host.getComBus();
 		comBus.subscribe(SCAN_INTERVAL_ID, this);
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
+		optimizer = ConnectivityOptimizer.getOptimizer(
 				this.interfacetype.hashCode(), transmitRange);
 		optimizer.addInterface(this);		
 	}
@@ -185,6 +218,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 	
+	/**
+	 * Returns the scanning interval of this interface
+	 * @return the scanning interval, or 0.0 if the interface scans always
+	 */
+	public double getScanInterval() {
+		return this.scanInterval;
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -271,8 +312,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
-		return this.host.getLocation().distance(
-				anotherInterface.getHost().getLocation()) <= smallerRange;
+		return PositionStore.distanceSquared(this.hostAddress,
+				anotherInterface.hostAddress) <= smallerRange * smallerRange;
 	}
 	
 	/**
@@ -309,6 +350,219 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Updates the interface instead of {@link #update()} when its host is
+	 * idle (see {@link DTNHost#isConnectivityIdle()}), i.e., its connections
+	 * can't have changed since the last update. Does nothing by default;
+	 * subclasses that do more than connecting and disconnecting in their
+	 * update should override this.
+	 */
+	public void updateIdle() {
+	}
+
+	/**
+	 * Updates this interface's location to the connectivity optimizer.
+	 */
+	public void updateLocation() {
+		optimizer.updateLocation(this);
+	}
+
+	/**
+	 * Finds out which of the current connections are out of range and which
+	 * near interfaces are connectable, without changing any connection state.
+	 * The results are used by the next {@link #updateScanned()} call. As this
+	 * only reads other interfaces' state, different interfaces can be scanned
+	 * concurrently once all locations are updated to the optimizer.
+	 */
+	public void scanConnections() {
+		scannedDown.clear();
+		scannedUp.clear();
+
+		for (int i=0, n = connections.size(); i < n; i++) {
+			Connection con = connections.get(i);
+			if (!isWithinRange(con.getOtherInterface(this))) {
+				scannedDown.add(con);
+			}
+		}
+
+		if (!isScanning()) {
+			return;
+		}
+		forEachNearInRange(false, scanAction);
+	}
+
+	/**
+	 * Performs an action for the near interfaces (see
+	 * {@link ConnectivityOptimizer#forEachNear}) whose hosts are within this
+	 * interface's transmit range. The near interfaces are first collected to
+	 * a batch, and the distances of the whole batch are then checked in one
+	 * loop over the {@link PositionStore}'s coordinate arrays. The action is
+	 * performed in the optimizer's order and must still check the range of
+	 * the other interface (e.g., with {@link #isWithinRange}).
+	 * @param half Should only half of the neighborhood be checked (see
+	 * {@link ConnectivityOptimizer#forEachHalfNear})
+	 * @param action The action to perform
+	 */
+	protected void forEachNearInRange(boolean half,
+			Consumer<NetworkInterface> action) {
+		batchSize = 0;
+		if (half) {
+			optimizer.forEachHalfNear(this, batchAction);
+		}
+		else {
+			optimizer.forEachNear(this, batchAction);
+		}
+
+		int n = PositionStore.filterWithinRange(hostAddress,
+				getTransmitRange(), batchHosts, batch, batchSize);
+		for (int i=0; i < n; i++) {
+			action.accept(batch[i]);
+		}
+	}
+
+	/**
+	 * Adds a near interface to the batch of interfaces to range check
+	 * @param ni The near interface
+	 */
+	private void addToBatch(NetworkInterface ni) {
+		if (batchSize == batch.length) {
+			batch = Arrays.copyOf(batch, batchSize * 2);
+			batchHosts = Arrays.copyOf(batchHosts, batchSize * 2);
+		}
+		batch[batchSize] = ni;
+		batchHosts[batchSize] = ni.hostAddress;
+		batchSize++;
+	}
+
+	/**
+	 * Tries to connect to a near interface (see {@link #connect}). If this
+	 * interface scans only periodically and the near interface's host is
+	 * idle (see {@link DTNHost#isConnectivityIdle()}), the near interface
+	 * also tries to connect to this one, as it would in its own update.
+	 * @param ni The near interface
+	 */
+	private void connectNear(NetworkInterface ni) {
+		connect(ni);
+		if (this.scanInterval > 0 && ni.host.isConnectivityIdle()) {
+			ni.connect(this);
+		}
+	}
+
+	/**
+	 * Adds a near interface to the interfaces found connectable by the
+	 * current connection scan if it is active, within range and not yet
+	 * connected
+	 * @param ni The near interface
+	 */
+	private void scanNear(NetworkInterface ni) {
+		if (ni != this && ni.getHost().isActive() && isWithinRange(ni)
+				&& !isConnected(ni)) {
+			scannedUp.add(ni);
+		}
+	}
+
+	/**
+	 * Starts a symmetric connection scan: clears the results of the last
+	 * scan and checks (once) whether this interface is scanning now. Must be
+	 * called for the interfaces of all active hosts before any of them
+	 * {@link #scanPairs()}.
+	 */
+	public void startPairScan() {
+		scannedDown.clear();
+		scannedUp.clear();
+		this.pairScanning = isScanning();
+	}
+
+	/**
+	 * Finds the connectivity changes like {@link #scanConnections()}, but
+	 * checks every pair of interfaces only once and records the result to
+	 * both of them. The optimizer's half neighborhood
+	 * ({@link ConnectivityOptimizer#forEachHalfNear}) is checked for new
+	 * connections, and the connections that this end is responsible for
+	 * (see {@link #checksConnection(NetworkInterface)}) for the ones out of
+	 * range. Requires {@link #isWithinRange(NetworkInterface)} to be
+	 * symmetric. Not thread safe, as the results are also written to the
+	 * other interfaces.
+	 */
+	public void scanPairs() {
+		for (int i=0, n = connections.size(); i < n; i++) {
+			Connection con = connections.get(i);
+			NetworkInterface other = con.getOtherInterface(this);
+			if (checksConnection(other) && !isWithinRange(other)) {
+				scannedDown.add(con);
+				if (other.host.isActive()) {
+					other.scannedDown.add(con);
+				}
+			}
+		}
+
+		forEachNearInRange(true, pairAction);
+	}
+
+	/**
+	 * Returns true if this end checks the range of a connection to another
+	 * interface in a symmetric scan: the one with the smaller address, or
+	 * this one if the other's host is not active (and not scanned)
+	 * @param other The interface at the other end of the connection
+	 * @return True if this end checks the connection's range
+	 */
+	private boolean checksConnection(NetworkInterface other) {
+		return this.address < other.address || !other.host.isActive();
+	}
+
+	/**
+	 * Checks a pair of near interfaces of a symmetric scan and adds each one
+	 * that is scanning to the other's connectable interfaces if they are
+	 * within range and not connected yet
+	 * @param other The other interface of the pair
+	 */
+	private void scanPair(NetworkInterface other) {
+		if (!(this.pairScanning || other.pairScanning) ||
+				!other.host.isActive() || !isWithinRange(other) ||
+				isConnected(other)) {
+			return;
+		}
+		if (this.pairScanning) {
+			scannedUp.add(other);
+		}
+		if (other.pairScanning) {
+			other.scannedUp.add(this);
+		}
+	}
+
+	/**
+	 * Updates the state of current connections like {@link #update()} does,
+	 * but using the changes found by the last {@link #scanConnections()} call
+	 * instead of scanning the neighborhood again. Subclasses that do more
+	 * than connecting and disconnecting in their update should override this.
+	 */
+	public void updateScanned() {
+		applyScannedConnections();
+	}
+
+	/**
+	 * Tears down the connections and creates the new ones that were found by
+	 * the last {@link #scanConnections()} call. Changes that the other end
+	 * of a connection has already made since the scan are skipped.
+	 */
+	protected void applyScannedConnections() {
+		for (int i=0, n = scannedDown.size(); i < n; i++) {
+			Connection con = scannedDown.get(i);
+			if (con.isUp()) {
+				disconnect(con, con.getOtherInterface(this));
+				connections.remove(con);
+			}
+		}
+		for (int i=0, n = scannedUp.size(); i < n; i++) {
+			NetworkInterface ni = scannedUp.get(i);
+			if (!isConnected(ni)) {
+				createConnection(ni);
+			}
+		}
+		scannedDown.clear();
+		scannedUp.clear();
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
@@ -347,6 +601,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;	
+			if (this.host != null) {
+				this.host.connectivityChanged();
+			}
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
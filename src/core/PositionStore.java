@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Locations of all hosts in flat coordinate arrays indexed by the hosts'
+ * addresses. Hosts write their location here every time it changes, and
+ * the connectivity code reads the locations from here instead of following
+ * references from interfaces to hosts to their {@link Coord} objects. The
+ * range checks compare squared distances, so no square roots are needed.
+ */
+public class PositionStore {
+	/** initial size of the coordinate arrays */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static double[] xs;
+	private static double[] ys;
+
+	static {
+		DTNSim.registerForReset(PositionStore.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Forgets all locations
+	 */
+	public static void reset() {
+		xs = new double[INITIAL_CAPACITY];
+		ys = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Sets the location of a host
+	 * @param address Address of the host
+	 * @param c The host's new location
+	 */
+	public static void setLocation(int address, Coord c) {
+		if (address >= xs.length) {
+			int length = Math.max(address + 1, xs.length * 2);
+			xs = Arrays.copyOf(xs, length);
+			ys = Arrays.copyOf(ys, length);
+		}
+		xs[address] = c.getX();
+		ys[address] = c.getY();
+	}
+
+	/**
+	 * Returns the x coordinate of a host
+	 * @param address Address of the host
+	 * @return The host's x coordinate
+	 */
+	public static double getX(int address) {
+		return xs[address];
+	}
+
+	/**
+	 * Returns the y coordinate of a host
+	 * @param address Address of the host
+	 * @return The host's y coordinate
+	 */
+	public static double getY(int address) {
+		return ys[address];
+	}
+
+	/**
+	 * Returns the squared distance between two hosts
+	 * @param a Address of the first host
+	 * @param b Address of the second host
+	 * @return The squared distance
+	 */
+	public static double distanceSquared(int a, int b) {
+		double dx = xs[a] - xs[b];
+		double dy = ys[a] - ys[b];
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * Filters a batch of items (e.g., interfaces) by the distance of their
+	 * hosts from a host. The items whose hosts are within the range are
+	 * moved, in their original order, to the beginning of the arrays.
+	 * @param address Address of the host at the center
+	 * @param range The range
+	 * @param addresses Addresses of the items' hosts
+	 * @param items The items
+	 * @param n Number of items in the batch
+	 * @return Number of items within the range
+	 */
+	public static <T> int filterWithinRange(int address, double range,
+			int[] addresses, T[] items, int n) {
+		double x = xs[address];
+		double y = ys[address];
+		double range2 = range * range;
+		double[] px = xs;
+		double[] py = ys;
+
+		int within = 0;
+		for (int i=0; i < n; i++) {
+			int a = addresses[i];
+			double dx = px[a] - x;
+			double dy = py[a] - y;
+			if (dx*dx + dy*dy <= range2) {
+				addresses[within] = a;
+				items[within] = items[i];
+				within++;
+			}
+		}
+		return within;
+	}
+}
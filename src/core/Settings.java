@@ -276,6 +276,24 @@ public class Settings {
 		}
 	}
 
+	/**
+	 * Returns all settings with the values of the current run (see
+	 * {@link #setRunIndex(int)}) sorted by the setting names. The settings
+	 * returned by this method are not written to the settings output.
+	 *
+	 * @return All settings' names and values
+	 */
+	public static SortedMap<String, String> getAllSettings() {
+		if (props == null) {
+			init(null);
+		}
+		SortedMap<String, String> all = new TreeMap<String, String>();
+		for (String name : props.stringPropertyNames()) {
+			all.put(name, parseRunSetting(props.getProperty(name).trim()));
+		}
+		return all;
+	}
+
 	/**
 	 * Writes the given setting string to the settings output (if any)
 	 *
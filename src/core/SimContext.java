@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * <P>An isolated simulation context. The simulator keeps its state (clock,
+ * random number generators, address and message id counters, caches etc.)
+ * in static fields of many classes, so two simulations can't share the same
+ * classes. A context loads its own copy of the simulator's classes with a
+ * class loader of its own, which gives every context its own copy of all
+ * the static state. Runs of different contexts can thus execute concurrently
+ * in the same JVM, while runs within one context are executed one after
+ * another and separated by the normal reset mechanism (see
+ * {@link DTNSim#registerForReset(String)}).</P>
+ *
+ * <P>Contexts are created by the batch mode when more than one job is
+ * requested (see {@link DTNSim#JOBS_FLAG}).</P>
+ */
+public class SimContext {
+	/** name of the method that initializes a context's settings */
+	private static final String INIT_METHOD_NAME = "initContext";
+	/** name of the method that runs a batch run in a context */
+	private static final String RUN_METHOD_NAME = "runInContext";
+
+	private URLClassLoader loader;
+	private Method runMethod;
+
+	/**
+	 * Creates a new context and initializes its settings
+	 * @param confFiles Command line arguments containing the names of the
+	 * configuration files
+	 * @param firstConfIndex Index of the first configuration file name
+	 * @param cmdSettings Command line setting overrides (or null)
+	 * @throws SimError if the context can't be created
+	 */
+	public SimContext(String[] confFiles, int firstConfIndex,
+			String cmdSettings) {
+		/* parent is the platform loader: no simulator classes are shared */
+		this.loader = new URLClassLoader(getClassPath(),
+				ClassLoader.getPlatformClassLoader());
+		try {
+			Class<?> sim = Class.forName(DTNSim.class.getName(), true,
+					loader);
+			Method init = sim.getMethod(INIT_METHOD_NAME, String[].class,
+					int.class, String.class);
+			this.runMethod = sim.getMethod(RUN_METHOD_NAME, int.class);
+			invoke(init, confFiles, firstConfIndex, cmdSettings);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Can't load simulator for a context", e);
+		} catch (NoSuchMethodException e) {
+			throw new SimError("Can't load simulator for a context", e);
+		}
+	}
+
+	/**
+	 * Runs one batch run in this context
+	 * @param runIndex The run index to use for the run
+	 */
+	public void run(int runIndex) {
+		invoke(this.runMethod, runIndex);
+	}
+
+	/**
+	 * Closes the context. The context can't be used after closing.
+	 */
+	public void close() {
+		try {
+			this.loader.close();
+		} catch (IOException e) {
+			// nothing to do: the classes are freed anyway
+		}
+	}
+
+	/**
+	 * Invokes a static method of the context's simulator and passes any
+	 * exceptions of the method to the caller
+	 */
+	private void invoke(Method m, Object... args) {
+		Thread t = Thread.currentThread();
+		ClassLoader original = t.getContextClassLoader();
+		t.setContextClassLoader(this.loader);
+		try {
+			m.invoke(null, args);
+		} catch (IllegalAccessException e) {
+			throw new SimError(e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError((Exception)cause);
+		} finally {
+			t.setContextClassLoader(original);
+		}
+	}
+
+	/**
+	 * Returns the class path of the JVM as URLs
+	 */
+	private static URL[] getClassPath() {
+		String[] paths = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[paths.length];
+		try {
+			for (int i=0; i<paths.length; i++) {
+				urls[i] = new File(paths[i]).toURI().toURL();
+			}
+		} catch (MalformedURLException e) {
+			throw new SimError("Invalid class path: " + e.getMessage(), e);
+		}
+		return urls;
+	}
+}
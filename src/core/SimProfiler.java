@@ -0,0 +1,527 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * <P>Profiler for the phases of the simulation. When enabled, the world
+ * update is split into phases (external events, movement, connectivity,
+ * routing and update listeners) and the wall time and the number of bytes
+ * allocated in each phase are collected. The time spent in each router
+ * class' update and in each listener class' callbacks is collected too.
+ * The results can be written with {@link report.ProfilingReport}.</P>
+ *
+ * <P>The profiler is enabled by loading the profiling report or with the
+ * {@link #ENABLED_S} setting. While enabled, the profiler also commits a
+ * JFR event ({@link PhaseEvent}) for each phase of every world update, so
+ * the phases can be seen in a Java Flight Recorder recording.</P>
+ *
+ * <P>Only the simulation thread is measured: allocations of the worker
+ * threads of parallel movement and connectivity are not counted (their
+ * wall time is).</P>
+ */
+public class SimProfiler {
+	/** namespace of the profiler settings ({@value}) */
+	public static final String SETTINGS_NS = "Profiler";
+	/**
+	 * Is profiling enabled -setting id ({@value}). Boolean (true/false).
+	 * Default is false, unless the profiling report is loaded.
+	 */
+	public static final String ENABLED_S = "enabled";
+
+	/** Phases of a world update */
+	public enum Phase {
+		/** processing of external events */
+		EVENTS("events"),
+		/** moving the hosts */
+		MOVEMENT("movement"),
+		/** interface (connectivity) updates */
+		CONNECTIVITY("connectivity"),
+		/** router updates */
+		ROUTING("routing"),
+		/** update listener calls */
+		LISTENERS("listeners");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns the name of the phase
+		 * @return the name of the phase
+		 */
+		public String getLabel() {
+			return this.label;
+		}
+	}
+
+	/**
+	 * Collected time and allocations of a phase or a class
+	 */
+	public static class Counter {
+		private String name;
+		private long calls;
+		private long nanos;
+		private long bytes;
+		private long intervalNanos;
+		private long intervalBytes;
+
+		private Counter(String name) {
+			this.name = name;
+		}
+
+		private void add(long nanos, long bytes) {
+			this.calls++;
+			this.nanos += nanos;
+			this.bytes += bytes;
+			this.intervalNanos += nanos;
+			this.intervalBytes += bytes;
+		}
+
+		/** @return the name of the phase or class */
+		public String getName() {
+			return this.name;
+		}
+
+		/** @return how many times the phase or class was measured */
+		public long getCalls() {
+			return this.calls;
+		}
+
+		/** @return the total wall time (nanoseconds) */
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		/** @return the total number of bytes allocated */
+		public long getBytes() {
+			return this.bytes;
+		}
+	}
+
+	/**
+	 * JFR event of a simulation phase during one world update
+	 */
+	@Name("one.SimulationPhase")
+	@Label("Simulation Phase")
+	@Category("ONE Simulator")
+	@Description("Time and allocations of a phase of one world update")
+	public static class PhaseEvent extends Event {
+		@Label("Phase")
+		public String phase;
+
+		@Label("Simulation Time")
+		public double simTime;
+
+		@Label("Phase Duration")
+		@Timespan(Timespan.NANOSECONDS)
+		public long phaseDuration;
+
+		@Label("Allocated")
+		@DataAmount
+		public long allocated;
+	}
+
+	private static boolean enabled;
+	private static Counter total;
+	private static Counter[] phases;
+	private static Map<Class<?>, Counter> routers;
+	private static Map<Class<?>, Counter> listeners;
+	private static List<Counter> routerList;
+	private static List<Counter> listenerList;
+	private static com.sun.management.ThreadMXBean threadBean;
+	private static EventType phaseEventType;
+
+	static {
+		DTNSim.registerForReset(SimProfiler.class.getCanonicalName());
+		java.lang.management.ThreadMXBean tb =
+			ManagementFactory.getThreadMXBean();
+		if (tb instanceof com.sun.management.ThreadMXBean &&
+				((com.sun.management.ThreadMXBean)tb).
+				isThreadAllocatedMemorySupported()) {
+			threadBean = (com.sun.management.ThreadMXBean)tb;
+		}
+		phaseEventType = EventType.getEventType(PhaseEvent.class);
+		reset();
+	}
+
+	private SimProfiler() {}
+
+	/**
+	 * Enables profiling
+	 */
+	public static void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * Returns true if profiling is enabled
+	 * @return true if profiling is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the current wall time for measuring a phase
+	 * @return the current wall time (nanoseconds)
+	 */
+	public static long time() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far
+	 * (or 0 if that is not supported by the JVM)
+	 * @return the number of bytes allocated by the current thread
+	 */
+	public static long allocatedBytes() {
+		return threadBean == null ? 0 :
+			threadBean.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Records a measured phase
+	 * @param phase The phase
+	 * @param startTime Wall time when the phase started
+	 * @param startBytes Bytes allocated when the phase started
+	 */
+	public static void phaseDone(Phase phase, long startTime,
+			long startBytes) {
+		phases[phase.ordinal()].add(time() - startTime,
+				allocatedBytes() - startBytes);
+	}
+
+	/**
+	 * Records a measured router update to the routing phase and to the
+	 * router's class
+	 * @param router The router that was updated
+	 * @param startTime Wall time when the update started
+	 * @param startBytes Bytes allocated when the update started
+	 */
+	public static void routerDone(Object router, long startTime,
+			long startBytes) {
+		long nanos = time() - startTime;
+		long bytes = allocatedBytes() - startBytes;
+		phases[Phase.ROUTING.ordinal()].add(nanos, bytes);
+		getCounter(routers, routerList, router.getClass()).add(nanos, bytes);
+	}
+
+	/**
+	 * Records a measured listener callback to the listener's class
+	 * @param listener The listener that was called
+	 * @param startTime Wall time when the call started
+	 * @param startBytes Bytes allocated when the call started
+	 */
+	public static void listenerDone(Object listener, long startTime,
+			long startBytes) {
+		getCounter(listeners, listenerList, listener.getClass()).add(
+				time() - startTime, allocatedBytes() - startBytes);
+	}
+
+	/**
+	 * Records a whole world update and commits the JFR events of the phases
+	 * measured during it
+	 * @param startTime Wall time when the update started
+	 * @param startBytes Bytes allocated when the update started
+	 */
+	public static void updateDone(long startTime, long startBytes) {
+		total.add(time() - startTime, allocatedBytes() - startBytes);
+		boolean commit = phaseEventType.isEnabled();
+		for (Counter c : phases) {
+			if (commit && c.intervalNanos > 0) {
+				PhaseEvent e = new PhaseEvent();
+				e.phase = c.name;
+				e.simTime = SimClock.getTime();
+				e.phaseDuration = c.intervalNanos;
+				e.allocated = c.intervalBytes;
+				e.commit();
+			}
+			c.intervalNanos = 0;
+			c.intervalBytes = 0;
+		}
+	}
+
+	/**
+	 * Wraps a message listener so that the time spent in its callbacks is
+	 * recorded to its class. If profiling is not enabled, the listener is
+	 * returned as is.
+	 * @param listener The listener to wrap
+	 * @return A listener that calls the given listener
+	 */
+	public static MessageListener profiledListener(MessageListener listener) {
+		return enabled ? new ProfiledMessageListener(listener) : listener;
+	}
+
+	/**
+	 * Wraps a connection listener so that the time spent in its callbacks
+	 * is recorded to its class. If profiling is not enabled, the listener
+	 * is returned as is.
+	 * @param listener The listener to wrap
+	 * @return A listener that calls the given listener
+	 */
+	public static ConnectionListener profiledListener(
+			ConnectionListener listener) {
+		return enabled ? new ProfiledConnectionListener(listener) : listener;
+	}
+
+	/**
+	 * Wraps a movement listener so that the time spent in its callbacks is
+	 * recorded to its class. If profiling is not enabled, the listener is
+	 * returned as is.
+	 * @param listener The listener to wrap
+	 * @return A listener that calls the given listener
+	 */
+	public static MovementListener profiledListener(
+			MovementListener listener) {
+		return enabled ? new ProfiledMovementListener(listener) : listener;
+	}
+
+	/**
+	 * Wraps an application listener so that the time spent in its callbacks
+	 * is recorded to its class. If profiling is not enabled, the listener
+	 * is returned as is.
+	 * @param listener The listener to wrap
+	 * @return A listener that calls the given listener
+	 */
+	public static ApplicationListener profiledListener(
+			ApplicationListener listener) {
+		return enabled ? new ProfiledApplicationListener(listener) : listener;
+	}
+
+	/**
+	 * Message listener that measures the callbacks of another listener
+	 */
+	private static class ProfiledMessageListener implements MessageListener {
+		private MessageListener listener;
+
+		private ProfiledMessageListener(MessageListener listener) {
+			this.listener = listener;
+		}
+
+		public void newMessage(Message m) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.newMessage(m);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.messageTransferStarted(m, from, to);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.messageDeleted(m, where, dropped);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.messageTransferAborted(m, from, to);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.messageTransferred(m, from, to, firstDelivery);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Connection listener that measures the callbacks of another listener
+	 */
+	private static class ProfiledConnectionListener
+			implements ConnectionListener {
+		private ConnectionListener listener;
+
+		private ProfiledConnectionListener(ConnectionListener listener) {
+			this.listener = listener;
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.hostsConnected(host1, host2);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.hostsDisconnected(host1, host2);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Movement listener that measures the callbacks of another listener
+	 */
+	private static class ProfiledMovementListener
+			implements MovementListener {
+		private MovementListener listener;
+
+		private ProfiledMovementListener(MovementListener listener) {
+			this.listener = listener;
+		}
+
+		public void newDestination(DTNHost host, Coord destination,
+				double speed) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.newDestination(host, destination, speed);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+
+		public void initialLocation(DTNHost host, Coord location) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.initialLocation(host, location);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Application listener that measures the callbacks of another listener
+	 */
+	private static class ProfiledApplicationListener
+			implements ApplicationListener {
+		private ApplicationListener listener;
+
+		private ProfiledApplicationListener(ApplicationListener listener) {
+			this.listener = listener;
+		}
+
+		public void gotEvent(String event, Object params, Application app,
+				DTNHost host) {
+			long time = time();
+			long bytes = allocatedBytes();
+			try {
+				listener.gotEvent(event, params, app, host);
+			} finally {
+				listenerDone(listener, time, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Returns the counter of all world updates
+	 * @return the counter of all world updates
+	 */
+	public static Counter getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the counter of a phase
+	 * @param phase The phase
+	 * @return the counter of the phase
+	 */
+	public static Counter getPhase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the counters of the router classes
+	 * @return the counters of the router classes
+	 */
+	public static List<Counter> getRouters() {
+		return routerList;
+	}
+
+	/**
+	 * Returns the counters of the listener classes
+	 * @return the counters of the listener classes
+	 */
+	public static List<Counter> getListeners() {
+		return listenerList;
+	}
+
+	/**
+	 * Returns the counter of a class from the given map (creates a new
+	 * counter if the class doesn't have one yet)
+	 */
+	private static Counter getCounter(Map<Class<?>, Counter> map,
+			List<Counter> list, Class<?> c) {
+		Counter counter = map.get(c);
+		if (counter == null) {
+			counter = new Counter(c.getSimpleName());
+			map.put(c, counter);
+			list.add(counter);
+		}
+		return counter;
+	}
+
+	/**
+	 * Resets all static fields to default values
+	 */
+	public static void reset() {
+		Settings s = new Settings(SETTINGS_NS);
+		enabled = s.contains(ENABLED_S) && s.getBoolean(ENABLED_S);
+		total = new Counter("total");
+		phases = new Counter[Phase.values().length];
+		for (Phase p : Phase.values()) {
+			phases[p.ordinal()] = new Counter(p.getLabel());
+		}
+		routers = new HashMap<Class<?>, Counter>();
+		listeners = new HashMap<Class<?>, Counter>();
+		routerList = new ArrayList<Counter>();
+		listenerList = new ArrayList<Counter>();
+	}
+}
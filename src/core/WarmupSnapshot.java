@@ -0,0 +1,298 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import movement.MovementModel;
+
+/**
+ * <P>Cache of the host movement state after the movement model warmup. When
+ * the movement settings and the seed are the same for many runs (e.g., when
+ * only routing settings are varied), the warmup has to be simulated only
+ * once: the state of the hosts and movement models (locations, current
+ * paths, the models' internal state and random number generators) is saved
+ * to a snapshot file and the later runs restore it instead of simulating the
+ * warmup again.</P>
+ *
+ * <P>The snapshot files are stored in the directory given with the
+ * {@link #WARMUP_CACHE_S} setting and named after a hash of the
+ * movement-relevant settings: {@link MovementModel#MOVEMENT_MODEL_NS},
+ * map and POI namespaces, the namespaces of the movement models in use, the
+ * scenario's update interval and number of host groups, the
+ * parallel movement setting, and all host group settings except the ones
+ * that only affect routing, interfaces and applications. The hash also
+ * covers the warmup time and the number of hosts. All movement models must
+ * support snapshots (see {@link MovementModel#supportsSnapshots()}),
+ * otherwise the warmup is always simulated.</P>
+ *
+ * <P>Note that movement listeners are not informed of the warmup movement
+ * when the state is restored from a snapshot.</P>
+ */
+public class WarmupSnapshot {
+	/**
+	 * Warmup cache directory -setting id ({@value}) in the
+	 * {@link MovementModel#MOVEMENT_MODEL_NS} namespace. If set, post-warmup
+	 * snapshots are stored to, and restored from, this directory.
+	 */
+	public static final String WARMUP_CACHE_S = "warmupCache";
+
+	/** version of the snapshot file format */
+	private static final int FORMAT_VERSION = 1;
+	/** prefix of the snapshot file names */
+	private static final String FILE_PREFIX = "warmup-";
+	/** suffix of the snapshot file names */
+	private static final String FILE_SUFFIX = ".snapshot";
+	/** namespaces whose settings are always part of the key */
+	private static final String[] MOVEMENT_NAMESPACES = {
+		MovementModel.MOVEMENT_MODEL_NS, "MapBasedMovement",
+		"PointsOfInterest"};
+	/** other settings that are part of the key */
+	private static final String[] MOVEMENT_SETTINGS = {
+		SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+		SimScenario.SCENARIO_NS + "." + SimScenario.NROF_GROUPS_S,
+		World.SETTINGS_NS + "." + World.PARALLEL_MOVEMENT_S};
+	/** prefixes of host group settings that don't affect movement */
+	private static final String[] NON_MOVEMENT_GROUP_SETTINGS = {
+		SimScenario.ROUTER_S, SimScenario.GROUP_ID_S,
+		SimScenario.NROF_INTERF_S, SimScenario.INTERFACENAME_S,
+		SimScenario.APPCOUNT_S, SimScenario.GAPPNAME_S,
+		SimScenario.GROUP_COLOR_S, SimScenario.SCAN_INTERVAL_S,
+		"bufferSize", "msgTtl"};
+
+	/** the snapshot file of the current settings */
+	private File file;
+	/** the key (movement-relevant settings) of the current settings */
+	private String key;
+
+	/**
+	 * Movement state of a single host
+	 */
+	static class HostState implements Serializable {
+		private static final long serialVersionUID = 42L;
+		Coord location;
+		Coord destination;
+		double speed;
+		double nextTimeToMove;
+		movement.Path path;
+		int nrofWaypoints;
+		String movementModel;
+		Random rng;
+		Serializable modelState;
+	}
+
+	/**
+	 * Creates a warmup snapshot cache for the current settings
+	 * @param cacheDir Directory where the snapshots are stored
+	 * @param warmupTime The warmup time (seconds)
+	 * @param nrofHosts Number of hosts in the simulation
+	 */
+	public WarmupSnapshot(String cacheDir, double warmupTime, int nrofHosts) {
+		this.key = createKey(warmupTime, nrofHosts);
+		this.file = new File(cacheDir, FILE_PREFIX + hash(this.key) +
+				FILE_SUFFIX);
+	}
+
+	/**
+	 * Returns true if all the hosts' movement models support snapshots
+	 * @param hosts The hosts
+	 * @return true if the state of the hosts can be saved to a snapshot
+	 */
+	public static boolean isSupported(List<DTNHost> hosts) {
+		for (DTNHost h : hosts) {
+			if (!h.getMovement().supportsSnapshots()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the snapshot file of the current settings
+	 * @return The snapshot file
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Restores the post-warmup state of the hosts from the snapshot, if a
+	 * snapshot of the current settings exists
+	 * @param hosts The hosts whose state is restored
+	 * @return true if the state was restored, false if there was no usable
+	 * snapshot (the hosts are not modified then)
+	 */
+	public boolean restore(List<DTNHost> hosts) {
+		if (!this.file.exists()) {
+			return false;
+		}
+
+		HostState[] states;
+		Random sharedRng;
+		try (ObjectInputStream in = new ObjectInputStream(
+				new GZIPInputStream(new BufferedInputStream(
+						new FileInputStream(this.file))))) {
+			if (in.readInt() != FORMAT_VERSION ||
+					!this.key.equals(in.readUTF())) {
+				return false;
+			}
+			sharedRng = (Random)in.readObject();
+			states = (HostState[])in.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			return false; // unreadable snapshot is just a cache miss
+		}
+
+		if (states.length != hosts.size()) {
+			return false;
+		}
+		for (int i=0; i<states.length; i++) {
+			if (!hosts.get(i).getMovement().getClass().getName().equals(
+					states[i].movementModel)) {
+				return false;
+			}
+		}
+
+		MovementModel.setSharedRng(sharedRng);
+		for (int i=0; i<states.length; i++) {
+			hosts.get(i).restoreMovementState(states[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the current state of the hosts to the snapshot
+	 * @param hosts The hosts whose state is stored
+	 * @throws SimError if the snapshot can't be written
+	 */
+	public void store(List<DTNHost> hosts) {
+		HostState[] states = new HostState[hosts.size()];
+		for (int i=0; i<states.length; i++) {
+			states[i] = new HostState();
+			hosts.get(i).saveMovementState(states[i]);
+		}
+
+		File dir = this.file.getAbsoluteFile().getParentFile();
+		try {
+			dir.mkdirs();
+			/* write to a temporary file first so that concurrent runs never
+			 * read a partially written snapshot */
+			File tmp = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, dir);
+			try (ObjectOutputStream out = new ObjectOutputStream(
+					new GZIPOutputStream(new BufferedOutputStream(
+							new FileOutputStream(tmp))))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(this.key);
+				out.writeObject(MovementModel.getSharedRng());
+				out.writeObject(states);
+			}
+			Files.move(tmp.toPath(), this.file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new SimError("Can't write warmup snapshot " + this.file +
+					": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Creates the key of the current settings: the movement-relevant
+	 * settings, the warmup time and the number of hosts
+	 */
+	private static String createKey(double warmupTime, int nrofHosts) {
+		Map<String, String> all = Settings.getAllSettings();
+		StringBuilder sb = new StringBuilder();
+		sb.append("warmup=").append(warmupTime).append('\n');
+		sb.append("hosts=").append(nrofHosts).append('\n');
+
+		for (Map.Entry<String, String> e : all.entrySet()) {
+			if (isMovementSetting(e.getKey(), all)) {
+				sb.append(e.getKey()).append('=').append(e.getValue());
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns true if the setting can affect the movement
+	 * @param name Full name of the setting
+	 * @param all All settings
+	 */
+	private static boolean isMovementSetting(String name,
+			Map<String, String> all) {
+		int dot = name.indexOf('.');
+		if (dot < 0) {
+			return false;
+		}
+		String ns = name.substring(0, dot);
+		String setting = name.substring(dot + 1);
+
+		if (name.equals(MovementModel.MOVEMENT_MODEL_NS + "." +
+				WARMUP_CACHE_S)) {
+			return false;
+		}
+		for (String s : MOVEMENT_NAMESPACES) {
+			if (ns.equals(s)) {
+				return true;
+			}
+		}
+		for (String s : MOVEMENT_SETTINGS) {
+			if (name.equals(s)) {
+				return true;
+			}
+		}
+		if (ns.startsWith(SimScenario.GROUP_NS)) {
+			for (String s : NON_MOVEMENT_GROUP_SETTINGS) {
+				if (setting.startsWith(s)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		/* namespace of a movement model in use */
+		for (Map.Entry<String, String> e : all.entrySet()) {
+			if (e.getKey().startsWith(SimScenario.GROUP_NS) &&
+					e.getKey().endsWith("." + SimScenario.MOVEMENT_MODEL_S) &&
+					e.getValue().equals(ns)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a hex SHA-256 hash of the given string
+	 */
+	private static String hash(String s) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] digest = md.digest(s.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+	}
+}
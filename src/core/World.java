@@ -6,13 +6,20 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.ExternalEventsQueue;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
+import interfaces.KineticConnectivity;
+import movement.MovementModel;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,15 +44,170 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should hosts be moved in parallel -setting id ({@value}). Boolean
+	 * (true/false) variable. When enabled, every host's movement model gets
+	 * a random number generator of its own (seeded from
+	 * {@link movement.MovementModel#RNG_SEED} and the host's address) so the
+	 * results do not depend on the number of threads. Hosts whose movement
+	 * model does not support parallel movement are moved sequentially.
+	 * Default is {@link #DEF_PARALLEL_MOVEMENT}.
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+	/**
+	 * Should connectivity be updated in parallel -setting id ({@value}).
+	 * Boolean (true/false) variable. When enabled, hosts are updated in
+	 * phases: first all interface locations are updated to the connectivity
+	 * optimizers, then all interfaces find their connectivity changes in
+	 * parallel, and finally the changes are applied and the routers updated
+	 * sequentially in the (possibly randomized) update order.
+	 * Default is {@link #DEF_PARALLEL_CONNECTIVITY}.
+	 */
+	public static final String PARALLEL_CONNECTIVITY_S = 
+		"parallelConnectivity";
+	/**
+	 * Should connectivity be checked once per interface pair -setting id
+	 * ({@value}). Boolean (true/false) variable. When enabled, hosts are
+	 * updated in the same phases as with {@link #PARALLEL_CONNECTIVITY_S},
+	 * but instead of every interface checking all its near interfaces, the
+	 * connectivity optimizers give every interface half of its
+	 * neighborhood, so that every near pair of interfaces is range checked
+	 * only once and the result is recorded to both of them. Connections
+	 * come up in a different order than with the other update modes. The
+	 * pairs are checked sequentially (also when parallel connectivity is
+	 * enabled). Default is {@link #DEF_SYMMETRIC_CONNECTIVITY}.
+	 */
+	public static final String SYMMETRIC_CONNECTIVITY_S =
+		"symmetricConnectivity";
+	/**
+	 * Should only the hosts whose connectivity may have changed be updated
+	 * -setting id ({@value}). Boolean (true/false) variable. When enabled,
+	 * the interfaces of hosts that haven't moved, been inactive or had their
+	 * radio range changed since their last update (e.g., stationary hosts
+	 * and hosts waiting at a waypoint) are not updated to the connectivity
+	 * optimizer and don't look for new connections (see
+	 * {@link DTNHost#isConnectivityIdle()}); the hosts that have moved check
+	 * the connections with them. The routers are still updated. The
+	 * connections come up in the same updates, but the host that creates
+	 * the connection may differ. Only used when connectivity is updated
+	 * sequentially (i.e., not with {@link #PARALLEL_CONNECTIVITY_S} or
+	 * {@link #SYMMETRIC_CONNECTIVITY_S}). Default is
+	 * {@link #DEF_INCREMENTAL_CONNECTIVITY}.
+	 */
+	public static final String INCREMENTAL_CONNECTIVITY_S =
+		"incrementalConnectivity";
+	/**
+	 * Number of threads used for the parallel phases -setting id ({@value}).
+	 * Default is the number of available processors.
+	 */
+	public static final String THREADS_S = "threads";
+	/**
+	 * Old name of the {@link #THREADS_S} setting ({@value}). Used only if
+	 * the new setting is not defined.
+	 */
+	public static final String MOVEMENT_THREADS_S = "movementThreads";
+	/**
+	 * Should quiescent update intervals be skipped -setting id ({@value}).
+	 * Boolean (true/false) variable. When enabled and no connections are up,
+	 * the world works out the earliest time any connection could come up
+	 * (from host locations, speeds, waiting times, activeness and radio
+	 * ranges) and the time of the next event, and skips host updates (i.e.,
+	 * connectivity and router updates) of the intervals before that. Hosts
+	 * are still moved and update listeners informed every
+	 * {@link #QUIET_STEP_S} seconds. Routers' periodic tasks (e.g., dropping
+	 * expired messages) are delayed until the next regular update. Nothing
+	 * is skipped while any interface has a scanning interval.
+	 * Default is {@link #DEF_ADAPTIVE_STEP}.
+	 */
+	public static final String ADAPTIVE_STEP_S = "adaptiveStep";
+	/**
+	 * How often hosts are moved and update listeners informed while
+	 * skipping quiescent intervals -setting id ({@value}). Rounded to a
+	 * multiple of the update interval. Larger values save more time but
+	 * discretize the movement more coarsely. Default is the update interval.
+	 */
+	public static final String QUIET_STEP_S = "quietStep";
+	/**
+	 * Should connections be predicted kinetically -setting id ({@value}).
+	 * Boolean (true/false) variable. When enabled, interfaces don't poll for
+	 * connectivity every update interval. Instead, the exact times when
+	 * hosts moving along straight path segments come within range of, or go
+	 * out of range from, each other are predicted and the connections are
+	 * created and destroyed at those times (see {@link KineticConnectivity}).
+	 * Default is {@link #DEF_KINETIC_CONNECTIVITY}.
+	 */
+	public static final String KINETIC_CONNECTIVITY_S = "kineticConnectivity";
+	/**
+	 * Should events with the same time be processed together -setting id
+	 * ({@value}). Boolean (true/false) variable. When enabled, all the
+	 * events that are due at the same time are processed before the hosts
+	 * are updated, instead of updating all hosts after every single event.
+	 * Default is {@link #DEF_COALESCE_EVENTS}.
+	 */
+	public static final String COALESCE_EVENTS_S = "coalesceEvents";
+	/**
+	 * Connectivity optimizer type -setting id ({@value}). Either
+	 * {@value #GRID_OPTIMIZER} (the {@link ConnectivityGrid}),
+	 * {@value #SPATIAL_HASH_OPTIMIZER} (the
+	 * {@link interfaces.SpatialHashGrid}, which keeps the cells in
+	 * address-indexed primitive arrays and scales better to large numbers of
+	 * hosts) or {@value #MULTI_RESOLUTION_OPTIMIZER} (the
+	 * {@link interfaces.MultiResolutionGrid}, which keeps interfaces with
+	 * different radio ranges in grids of different cell sizes). All find the
+	 * same contacts. The setting is read when the interfaces are created,
+	 * before the world.
+	 * Default is {@link #DEF_CONNECTIVITY_OPTIMIZER}.
+	 */
+	public static final String CONNECTIVITY_OPTIMIZER_S =
+		"connectivityOptimizer";
+	/** value of the connectivity optimizer setting for connectivity grids
+	 * ({@value}) */
+	public static final String GRID_OPTIMIZER = "grid";
+	/** value of the connectivity optimizer setting for spatial hash grids
+	 * ({@value}) */
+	public static final String SPATIAL_HASH_OPTIMIZER = "spatialHash";
+	/** value of the connectivity optimizer setting for multi-resolution
+	 * grids ({@value}) */
+	public static final String MULTI_RESOLUTION_OPTIMIZER = "multiResolution";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the hosts be moved in parallel -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_PARALLEL_MOVEMENT = false;
+	/** should connectivity be updated in parallel -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_PARALLEL_CONNECTIVITY = false;
+	/** should connectivity be checked once per pair -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_SYMMETRIC_CONNECTIVITY = false;
+	/** should only the non-idle hosts' connectivity be updated -setting's
+	 * default value ({@value}) */
+	public static final boolean DEF_INCREMENTAL_CONNECTIVITY = false;
+	/** should quiescent intervals be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_ADAPTIVE_STEP = false;
+	/** should connections be predicted kinetically -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_KINETIC_CONNECTIVITY = false;
+	/** should events with the same time be processed together -setting's
+	 * default value ({@value}) */
+	public static final boolean DEF_COALESCE_EVENTS = false;
+	/** connectivity optimizer type -setting's default value ({@value}) */
+	public static final String DEF_CONNECTIVITY_OPTIMIZER = GRID_OPTIMIZER;
+	/** how many hosts one parallel task handles at most */
+	private static final int HOST_TASK_SIZE = 64;
 
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
+	/** the event queues with stable next event times (see
+	 * {@link EventQueue#hasStableTime()}) ordered by their next event's time */
+	private PriorityQueue<QueueEntry> queueHeap;
+	/** the event queues whose next event's time can change any time */
+	private List<QueueEntry> unstableQueues;
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
@@ -65,6 +227,40 @@ public class World {
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
 
+	/** pool for the parallel phases (null if all phases are sequential) */
+	private ForkJoinPool workerPool;
+	/** is parallel movement on */
+	private boolean parallelMovement;
+	/** is connectivity updated in parallel */
+	private boolean parallelConnectivity;
+	/** is connectivity checked once per interface pair */
+	private boolean symmetricConnectivity;
+	/** all hosts in an array (for the parallel phases) */
+	private DTNHost[] hostArray;
+	/** are quiescent update intervals skipped */
+	private boolean adaptiveStep;
+	/** how many update intervals are moved at once when skipping */
+	private int quietStepIntervals;
+	/** end time of the simulation (skipping doesn't go past it) */
+	private double endTime;
+	/** how many update intervals have been skipped */
+	private long nrofSkippedIntervals;
+	/** moving and waiting hosts (reused when looking for quiet intervals) */
+	private List<DTNHost> quietMovers;
+	private List<DTNHost> quietStayers;
+	/** hosts that can be moved in parallel */
+	private DTNHost[] parallelMovers;
+	/** hosts that must be moved sequentially (when movement is parallel) */
+	private DTNHost[] serialMovers;
+	/** kinetic connectivity engine (null if interfaces poll connectivity) */
+	private KineticConnectivity kinetic;
+	/** are the events with the same time processed together */
+	private boolean coalesceEvents;
+	/** how many external events have been processed */
+	private long nrofProcessedEvents;
+	/** how many times hosts have been updated after processing events */
+	private long nrofEventUpdates;
+
 	/**
 	 * Constructor.
 	 */
@@ -83,6 +279,18 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;		
 
+		this.queueHeap = new PriorityQueue<QueueEntry>();
+		this.unstableQueues = new ArrayList<QueueEntry>();
+		for (int i=0, n = eventQueues.size(); i < n; i++) {
+			EventQueue eq = eventQueues.get(i);
+			if (eq.hasStableTime()) {
+				this.queueHeap.add(new QueueEntry(eq, i));
+			}
+			else {
+				this.unstableQueues.add(new QueueEntry(eq, i));
+			}
+		}
+
 		setNextEventQueue();
 		initSettings();
 	}
@@ -117,12 +325,116 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		parallelMovement = DEF_PARALLEL_MOVEMENT;
+		if (s.contains(PARALLEL_MOVEMENT_S)) {
+			parallelMovement = s.getBoolean(PARALLEL_MOVEMENT_S);
+		}
+		parallelConnectivity = DEF_PARALLEL_CONNECTIVITY;
+		if (s.contains(PARALLEL_CONNECTIVITY_S)) {
+			parallelConnectivity = s.getBoolean(PARALLEL_CONNECTIVITY_S);
+		}
+		symmetricConnectivity = DEF_SYMMETRIC_CONNECTIVITY;
+		if (s.contains(SYMMETRIC_CONNECTIVITY_S)) {
+			symmetricConnectivity = s.getBoolean(SYMMETRIC_CONNECTIVITY_S);
+		}
+
+		boolean incrementalConnectivity = DEF_INCREMENTAL_CONNECTIVITY;
+		if (s.contains(INCREMENTAL_CONNECTIVITY_S)) {
+			incrementalConnectivity = s.getBoolean(INCREMENTAL_CONNECTIVITY_S);
+		}
+		if (incrementalConnectivity) {
+			for (DTNHost host : this.hosts) {
+				host.setIncrementalConnectivity(true);
+			}
+		}
+
+		if (parallelMovement || parallelConnectivity) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			String threadsSetting = THREADS_S;
+			if (!s.contains(THREADS_S) && s.contains(MOVEMENT_THREADS_S)) {
+				threadsSetting = MOVEMENT_THREADS_S;
+			}
+			if (s.contains(threadsSetting)) {
+				threads = s.getInt(threadsSetting);
+			}
+			if (threads < 1) {
+				throw new SettingsError("Too small value (" + threads +
+						") for " + SETTINGS_NS + "." + threadsSetting);
+			}
+			this.workerPool = new ForkJoinPool(threads);
+			this.hostArray = hosts.toArray(new DTNHost[0]);
+		}
+		if (parallelMovement) {
+			initParallelMovement();
+		}
+
+		adaptiveStep = DEF_ADAPTIVE_STEP;
+		if (s.contains(ADAPTIVE_STEP_S)) {
+			adaptiveStep = s.getBoolean(ADAPTIVE_STEP_S);
+		}
+		if (adaptiveStep) {
+			quietStepIntervals = 1;
+			if (s.contains(QUIET_STEP_S)) {
+				quietStepIntervals = (int)Math.round(
+						s.getDouble(QUIET_STEP_S) / updateInterval);
+			}
+			if (quietStepIntervals < 1) {
+				throw new SettingsError("Too small value for " + SETTINGS_NS +
+						"." + QUIET_STEP_S + " (must be at least the update " +
+						"interval)");
+			}
+			Settings scen = new Settings(SimScenario.SCENARIO_NS);
+			this.endTime = scen.getDouble(SimScenario.END_TIME_S);
+			this.quietMovers = new ArrayList<DTNHost>();
+			this.quietStayers = new ArrayList<DTNHost>();
+		}
+
+		boolean kineticConnectivity = DEF_KINETIC_CONNECTIVITY;
+		if (s.contains(KINETIC_CONNECTIVITY_S)) {
+			kineticConnectivity = s.getBoolean(KINETIC_CONNECTIVITY_S);
+		}
+		if (kineticConnectivity && simulateConnections) {
+			this.kinetic = new KineticConnectivity(this.hosts);
+		}
+
+		coalesceEvents = DEF_COALESCE_EVENTS;
+		if (s.contains(COALESCE_EVENTS_S)) {
+			coalesceEvents = s.getBoolean(COALESCE_EVENTS_S);
+		}
+	}
+
+	/**
+	 * Gives every host's movement model a random number generator of its own
+	 * and sorts the hosts into ones that can be moved in parallel and ones
+	 * that must be moved sequentially.
+	 */
+	private void initParallelMovement() {
+		List<DTNHost> parallel = new ArrayList<DTNHost>();
+		List<DTNHost> serial = new ArrayList<DTNHost>();
+
+		for (DTNHost host : this.hosts) {
+			host.getMovement().setHostRng(host.getAddress());
+			host.setDeferMovementListeners(true);
+			if (host.getMovement().supportsParallelMovement()) {
+				parallel.add(host);
+			}
+			else {
+				serial.add(host);
+			}
+		}
+
+		this.parallelMovers = parallel.toArray(new DTNHost[0]);
+		this.serialMovers = serial.toArray(new DTNHost[0]);
 	}
 
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
-	 * calling this method.
+	 * calling this method. If a warmup cache directory is set (see
+	 * {@link WarmupSnapshot#WARMUP_CACHE_S}), the post-warmup state is
+	 * restored from a snapshot of an earlier run with the same movement
+	 * settings, or saved to a snapshot for later runs.
 	 * @param time The total time (seconds) to move
 	 */
 	public void warmupMovementModel(double time) {
@@ -130,6 +442,23 @@ public class World {
 			return;
 		}
 
+		WarmupSnapshot snapshot = null;
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		if (s.contains(WarmupSnapshot.WARMUP_CACHE_S) &&
+				!WarmupSnapshot.isSupported(this.hosts)) {
+			System.err.println("Warning: not all movement models support " +
+					"warmup snapshots; simulating the warmup");
+		}
+		else if (s.contains(WarmupSnapshot.WARMUP_CACHE_S)) {
+			snapshot = new WarmupSnapshot(
+					s.getSetting(WarmupSnapshot.WARMUP_CACHE_S), time,
+					this.hosts.size());
+			if (snapshot.restore(this.hosts)) {
+				simClock.setTime(0);
+				return;
+			}
+		}
+
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
 			simClock.advance(updateInterval);
@@ -138,24 +467,41 @@ public class World {
 		double finalStep = -SimClock.getTime();
 
 		moveHosts(finalStep);
-		simClock.setTime(0);	
+		simClock.setTime(0);
+
+		if (snapshot != null) {
+			snapshot.store(this.hosts);
+		}
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Sets the event queue that has the next event. The external event
+	 * queues with stable next event times are kept in a heap ordered by
+	 * their next event's time, so only the scheduled updates, the heap's
+	 * first queue, the queues without stable times (see
+	 * {@link EventQueue#hasStableTime()}) and the kinetic connectivity
+	 * engine (if any) need to be checked.
 	 */
 	public void setNextEventQueue() {
 		EventQueue nextQueue = scheduledUpdates;
 		double earliest = nextQueue.nextEventsTime();
 
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
+		QueueEntry first = queueHeap.peek();
+		for (int i=0, n = unstableQueues.size(); i < n; i++) {
+			QueueEntry e = unstableQueues.get(i);
+			e.time = e.queue.nextEventsTime();
+			if (first == null || e.compareTo(first) < 0) {
+				first = e;
 			}
 		}
+		if (first != null && first.time < earliest) {
+			nextQueue = first.queue;
+			earliest = first.time;
+		}
+		if (kinetic != null && kinetic.nextEventsTime() < earliest) {
+			nextQueue = kinetic;
+			earliest = kinetic.nextEventsTime();
+		}
 
 		this.nextEventQueue = nextQueue;
 		this.nextQueueEventTime = earliest;
@@ -167,28 +513,270 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		boolean profile = SimProfiler.isEnabled();
+		long startTime = profile ? SimProfiler.time() : 0;
+		long startBytes = profile ? SimProfiler.allocatedBytes() : 0;
+
+		if (this.adaptiveStep) {
+			skipQuiescentIntervals();
+		}
+		if (this.kinetic != null) {
+			long time = profile ? SimProfiler.time() : 0;
+			long bytes = profile ? SimProfiler.allocatedBytes() : 0;
+			this.kinetic.refresh();
+			if (profile) {
+				SimProfiler.phaseDone(SimProfiler.Phase.CONNECTIVITY, time,
+						bytes);
+			}
+		}
+
 		double runUntil = SimClock.getTime() + this.updateInterval;
 
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			double eventTime = this.nextQueueEventTime;
+			simClock.setTime(eventTime);
+			do {
+				ExternalEvent ee = nextEvent();
+				long time = profile ? SimProfiler.time() : 0;
+				long bytes = profile ? SimProfiler.allocatedBytes() : 0;
+				ee.processEvent(this);
+				if (profile) {
+					SimProfiler.phaseDone(SimProfiler.Phase.EVENTS, time,
+							bytes);
+				}
+				this.nrofProcessedEvents++;
+				setNextEventQueue();
+			} while (this.coalesceEvents &&
+					this.nextQueueEventTime == eventTime);
+
+			updateHosts(); // update all hosts after every event (time)
+			this.nrofEventUpdates++;
 			setNextEventQueue();
 		}
 
+		long time = profile ? SimProfiler.time() : 0;
+		long bytes = profile ? SimProfiler.allocatedBytes() : 0;
 		moveHosts(this.updateInterval);
+		if (profile) {
+			SimProfiler.phaseDone(SimProfiler.Phase.MOVEMENT, time, bytes);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
+			time = profile ? SimProfiler.time() : 0;
+			bytes = profile ? SimProfiler.allocatedBytes() : 0;
 			ul.updated(this.hosts);
+			if (profile) {
+				SimProfiler.phaseDone(SimProfiler.Phase.LISTENERS, time,
+						bytes);
+				SimProfiler.listenerDone(ul, time, bytes);
+			}
+		}
+
+		if (profile) {
+			SimProfiler.updateDone(startTime, startBytes);
+		}
+	}
+
+	/**
+	 * Takes the next event from the queue that has it and re-sorts the
+	 * queue in the queue heap
+	 * @return The next event
+	 */
+	private ExternalEvent nextEvent() {
+		EventQueue queue = this.nextEventQueue;
+		ExternalEvent ee = queue.nextEvent();
+
+		QueueEntry first = queueHeap.peek();
+		if (first != null && first.queue == queue) {
+			queueHeap.poll();
+			first.time = queue.nextEventsTime();
+			queueHeap.add(first);
+		}
+		return ee;
+	}
+
+	/**
+	 * Returns how many external events (including scheduled updates) have
+	 * been processed
+	 * @return The number of processed events
+	 */
+	public long getNrofProcessedEvents() {
+		return this.nrofProcessedEvents;
+	}
+
+	/**
+	 * Returns how many times the hosts have been updated after processing
+	 * events. Without coalescing, this is the number of processed events.
+	 * @return The number of host update passes done for events
+	 */
+	public long getNrofEventUpdates() {
+		return this.nrofEventUpdates;
+	}
+
+	/**
+	 * Returns the number of events known to be waiting in the event queues:
+	 * scheduled updates, events read to the buffers of external events
+	 * queues and predicted contact events (if kinetic connectivity is used).
+	 * Event generators create their events on demand and are not counted.
+	 * @return The number of queued events
+	 */
+	public int getNrofQueuedEvents() {
+		int nrof = scheduledUpdates.size();
+		for (int i=0, n=eventQueues.size(); i < n; i++) {
+			EventQueue eq = eventQueues.get(i);
+			if (eq instanceof ExternalEventsQueue) {
+				nrof += ((ExternalEventsQueue)eq).eventsLeftInBuffer();
+			}
+		}
+		if (kinetic != null) {
+			nrof += kinetic.getNrofQueuedEvents();
+		}
+		return nrof;
+	}
+
+	/**
+	 * Skips the update intervals during which no connection can come up and
+	 * no events happen. Hosts are moved, and update listeners informed, every
+	 * {@link #quietStepIntervals} update intervals during the skip. Leaves
+	 * at least one update interval before the first possible change.
+	 */
+	private void skipQuiescentIntervals() {
+		setNextEventQueue();
+		double quietUntil = nextPossibleConnectionTime(
+				Math.min(this.nextQueueEventTime, this.endTime));
+
+		double time = SimClock.getTime();
+		double lastMove = time;
+		int intervals = 0;
+
+		while (time + 2 * updateInterval < quietUntil && !isCancelled) {
+			time += updateInterval;
+			intervals++;
+			this.nrofSkippedIntervals++;
+
+			if (intervals % quietStepIntervals == 0 ||
+					time + 2 * updateInterval >= quietUntil) {
+				moveHosts(time - lastMove);
+				simClock.setTime(time);
+				lastMove = time;
+				for (UpdateListener ul : this.updateListeners) {
+					ul.updated(this.hosts);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the earliest sim time any connection could come up or go down
+	 * based on the hosts' locations, maximum speeds, waiting times, activeness
+	 * and radio ranges. Returns the current time if any connections are up or
+	 * any interface scans only periodically. Only changes before the given
+	 * time are looked for: pairs of hosts that can't get in range before it
+	 * are skipped by comparing squared distances, and the search ends as
+	 * soon as a change within the next two update intervals (i.e., before
+	 * anything could be skipped) is found.
+	 * @param until The time after which the changes don't matter
+	 * @return The earliest time of a possible connectivity change, the
+	 * current time if a change may happen within two update intervals, or
+	 * <code>until</code> if no change can happen before it
+	 */
+	private double nextPossibleConnectionTime(double until) {
+		double now = SimClock.getTime();
+		double soon = now + 2 * updateInterval;
+		double next = until;
+		List<DTNHost> moving = this.quietMovers;
+		List<DTNHost> still = this.quietStayers;
+		moving.clear();
+		still.clear();
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			if (host.hasConnections() || host.hasScanningInterfaces()) {
+				return now; /* connections may change on any update */
+			}
+			next = Math.min(next, host.getMovement().nextActivenessChange());
+			if (host.getNextTimeToMove() > now) {
+				next = Math.min(next, host.getNextTimeToMove());
+				still.add(host);
+			}
+			else {
+				moving.add(host);
+			}
+		}
+		if (next <= soon) {
+			return now;
+		}
+
+		/* every pair with at least one moving host is checked once */
+		for (int i=0, n = moving.size(); i < n; i++) {
+			DTNHost host = moving.get(i);
+			for (int j = i + 1; j < n; j++) {
+				next = earliestContact(host, moving.get(j), true, now, next);
+				if (next <= soon) {
+					return now;
+				}
+			}
+			for (int j=0, m = still.size(); j < m; j++) {
+				next = earliestContact(host, still.get(j), false, now, next);
+				if (next <= soon) {
+					return now;
+				}
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Returns the earliest time two hosts could get in range of each other,
+	 * if that is before the given time
+	 * @param host A moving host
+	 * @param other The other host
+	 * @param otherMoving Is the other host moving
+	 * @param now The current time
+	 * @param until The earliest change found so far
+	 * @return The earliest time the hosts could get in range, or
+	 * <code>until</code> if they can't before it
+	 */
+	private double earliestContact(DTNHost host, DTNHost other,
+			boolean otherMoving, double now, double until) {
+		double range = Math.max(host.getMaxTransmitRange(),
+				other.getMaxTransmitRange());
+		double closingSpeed = host.getMaxSpeed();
+		if (otherMoving) {
+			closingSpeed += other.getMaxSpeed();
+		}
+		double reach = range + closingSpeed * (until - now);
+		double distSq = host.getLocation().distanceSquared(
+				other.getLocation());
+		if (distSq > reach * reach) {
+			return until; /* too far to get in range before "until" */
+		}
+
+		double gap = Math.sqrt(distSq) - range;
+		if (gap <= 0) {
+			return now;
 		}
+		if (closingSpeed > 0) {
+			return Math.min(until, now + gap / closingSpeed);
+		}
+		return until;
+	}
+
+	/**
+	 * Returns how many update intervals' host updates have been skipped
+	 * because nothing could change during them
+	 * @return The number of skipped update intervals
+	 */
+	public long getNrofSkippedIntervals() {
+		return this.nrofSkippedIntervals;
 	}
 
 	/**
@@ -197,12 +785,22 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		/* kinetic connectivity creates the connections by itself */
+		boolean pollConnections = this.simulateConnections &&
+			this.kinetic == null;
+
+		if ((this.parallelConnectivity || this.symmetricConnectivity) &&
+				pollConnections) {
+			updateHostsInPhases();
+			return;
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				hosts.get(i).update(pollConnections);
 			}
 		}
 		else { // update order randomizing is on
@@ -214,22 +812,108 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				this.updateOrder.get(i).update(pollConnections);
 			}			
 		}
 	}
 
+	/**
+	 * Updates all hosts in three phases: interface locations are updated
+	 * sequentially, connectivity changes are found (in parallel, or
+	 * sequentially once per interface pair if symmetric connectivity is
+	 * enabled), and the changes are applied (and routers updated)
+	 * sequentially in the same order as {@link #updateHosts()} would update
+	 * the hosts.
+	 */
+	private void updateHostsInPhases() {
+		List<DTNHost> order = this.hosts;
+		if (this.updateOrder != null) {
+			Random rng = new Random(SimClock.getIntTime());
+			Collections.shuffle(this.updateOrder, rng);
+			order = this.updateOrder;
+		}
+
+		boolean profile = SimProfiler.isEnabled();
+		long time = profile ? SimProfiler.time() : 0;
+		long bytes = profile ? SimProfiler.allocatedBytes() : 0;
+
+		for (int i=0, n = order.size(); i < n; i++) {
+			DTNHost host = order.get(i);
+			host.updateInterfaceLocations();
+			if (this.symmetricConnectivity) {
+				host.startPairScan();
+			}
+		}
+
+		if (this.symmetricConnectivity) {
+			for (int i=0, n = hosts.size(); i < n; i++) {
+				hosts.get(i).scanPairs();
+			}
+		}
+		else {
+			this.workerPool.invoke(new HostTask(this.hostArray, 0,
+					this.hostArray.length, DTNHost::scanConnections));
+		}
+		if (profile) {
+			SimProfiler.phaseDone(SimProfiler.Phase.CONNECTIVITY, time,
+					bytes);
+		}
+
+		for (int i=0, n = order.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			order.get(i).updateScanned();
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.parallelMovement) {
+			moveHostsInParallel(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
 
+	/**
+	 * Moves the hosts that support it in parallel and the rest of the hosts
+	 * sequentially. Movement listeners are informed afterwards in host order
+	 * so that the results are the same regardless of the number of threads.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(double timeIncrement) {
+		this.workerPool.invoke(new HostTask(this.parallelMovers, 0,
+				this.parallelMovers.length, h -> h.move(timeIncrement)));
+
+		for (DTNHost host : this.serialMovers) {
+			host.move(timeIncrement);
+		}
+
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			hosts.get(i).informMovementListeners();
+		}
+	}
+
+	/**
+	 * Releases the resources of the world (i.e., the threads of the parallel
+	 * phases) when the simulation has ended. The world must not be updated
+	 * after this.
+	 */
+	public void done() {
+		if (this.workerPool != null) {
+			this.workerPool.shutdown();
+			this.workerPool = null;
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -287,4 +971,66 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * An event queue and the cached time of its next event; ordered by the
+	 * time and, for equal times, by the queue's position in the event queue
+	 * list
+	 */
+	private static class QueueEntry implements Comparable<QueueEntry> {
+		private EventQueue queue;
+		private double time;
+		private int index;
+
+		public QueueEntry(EventQueue queue, int index) {
+			this.queue = queue;
+			this.time = queue.nextEventsTime();
+			this.index = index;
+		}
+
+		public int compareTo(QueueEntry other) {
+			int c = Double.compare(this.time, other.time);
+			return c != 0 ? c : Integer.compare(this.index, other.index);
+		}
+	}
+
+	/**
+	 * Fork-join task that does an action for a range of hosts
+	 */
+	private static class HostTask extends RecursiveAction {
+		private static final long serialVersionUID = 42L;
+		private transient DTNHost[] hosts;
+		private int from;
+		private int to;
+		private transient Consumer<DTNHost> action;
+
+		/**
+		 * Constructor.
+		 * @param hosts The hosts
+		 * @param from Index of the first host to handle
+		 * @param to Index after the last host to handle
+		 * @param action The action to do for each host
+		 */
+		public HostTask(DTNHost[] hosts, int from, int to,
+				Consumer<DTNHost> action) {
+			this.hosts = hosts;
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= HOST_TASK_SIZE) {
+				for (int i = from; i < to; i++) {
+					action.accept(hosts[i]);
+				}
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new HostTask(hosts, from, mid, action),
+					new HostTask(hosts, mid, to, action));
+		}
+	}
 }
@@ -1,64 +1,360 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package input;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 import core.SimError;
 
 /**
- * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * <P>Reads External Events from a binary file. Can also create binary files
+ * from a list of external events (see {@link BinaryEventsWriter} for
+ * converting text event files).</P>
+ *
+ * <P>The binary file is memory-mapped and the events are decoded directly
+ * from the mapping. The file starts with a header: magic number
+ * ({@link #MAGIC}), version, number of events (long), and the offsets of
+ * the string table and of the block index (longs, the index offset is 0 if
+ * the file has no index). The header is followed by the events as
+ * fixed-width records: a type byte and the event time (double), followed
+ * by the fields of the event type:</P>
+ * <UL>
+ * <LI>{@link #CREATE}: from and to addresses, message ID index, size and
+ * response size (ints)</LI>
+ * <LI>{@link #RELAY}: from and to addresses, message ID index (ints) and
+ * the relay stage (byte)</LI>
+ * <LI>{@link #DELETE}: host address, message ID index (ints) and 1 for
+ * drops or 0 for removes (byte)</LI>
+ * <LI>{@link #CONNECTION}: from and to addresses, interface ID index or
+ * {@link #NO_STRING} (ints) and 1 for up or 0 for down events (byte)</LI>
+ * <LI>{@link #EVENT}: no fields (an update-only {@link ExternalEvent})</LI>
+ * </UL>
+ * <P>The message and interface IDs are interned to the string table: the
+ * number of strings, and each string as its length (int) and UTF-8 bytes.
+ * The optional block index has the number of events per block and the
+ * number of blocks (ints), and for each block the time of its first event
+ * (double) and the file offset of its first record (long). With the index,
+ * {@link #seek(double)} jumps close to the wanted time without decoding
+ * the events before it. All values are big-endian.</P>
+ *
+ * <P>Files stored with serialized event objects by the older versions are
+ * still read (but not written).</P>
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
 	public static final String BINARY_EXT = ".binee";
-	
+
+	/** magic number at the start of binary events files ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** version of the binary events file format */
+	public static final int VERSION = 1;
+	/** size of the file header */
+	public static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+	/** string index of a missing (null) string */
+	public static final int NO_STRING = -1;
+
+	/** record type of update-only events */
+	public static final byte EVENT = 0;
+	/** record type of message creation events */
+	public static final byte CREATE = 1;
+	/** record type of message relay events */
+	public static final byte RELAY = 2;
+	/** record type of message delete events */
+	public static final byte DELETE = 3;
+	/** record type of connection events */
+	public static final byte CONNECTION = 4;
+	/** sizes of the records by their type */
+	static final int[] RECORD_SIZES = {1 + 8, 1 + 8 + 4*5,
+		1 + 8 + 4*3 + 1, 1 + 8 + 4*2 + 1, 1 + 8 + 4*3 + 1};
+
+	/** stream magic of the files with serialized event objects */
+	private static final int LEGACY_MAGIC = 0xACED0005;
+	/** largest part of the file that is mapped at once */
+	private static final long MAP_WINDOW = 1 << 30;
+
+	private File eventsFile;
+	private long eventsLeft;
+
+	/** input of the files with serialized event objects */
 	private ObjectInputStream in;
-	private int eventsLeft;
-	
+
+	private FileChannel channel;
+	private long fileSize;
+	/** the currently mapped part of the file */
+	private ByteBuffer window;
+	/** file offset of the mapped part */
+	private long windowStart;
+	/** file offset of the next record */
+	private long nextRecord;
+	/** number of events in the file */
+	private long nrofEvents;
+	/** offset of the string table (i.e., end of the records) */
+	private long tableOffset;
+	/** offset of the block index or 0 if there's no index */
+	private long indexOffset;
+	private String[] strings;
+
 	/**
 	 * Constructor.
 	 * @param eventsFile The file where the events are read
 	 */
-	public BinaryEventsReader(File eventsFile) {	
+	public BinaryEventsReader(File eventsFile) {
+		this.eventsFile = eventsFile;
 		try {
-			FileInputStream fis = new FileInputStream(eventsFile);
-			in = new ObjectInputStream(fis);
-			// first object should tell the amount of events
-			eventsLeft = (Integer)in.readObject(); 
+			int magic;
+			DataInputStream dis = new DataInputStream(
+					new FileInputStream(eventsFile));
+			try {
+				magic = dis.readInt();
+			} finally {
+				dis.close();
+			}
+
+			if (magic == LEGACY_MAGIC) {
+				openLegacy();
+			}
+			else if (magic == MAGIC) {
+				open();
+			}
+			else {
+				throw invalid("unknown file format");
+			}
 		} catch (IOException e) {
-			throw new SimError(e);
+			throw new SimError("Couldn't read binary events file " +
+					eventsFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Opens a file with serialized event objects
+	 */
+	private void openLegacy() throws IOException {
+		in = new ObjectInputStream(new FileInputStream(eventsFile));
+		try {
+			// first object should tell the amount of events
+			eventsLeft = (Integer)in.readObject();
 		} catch (ClassNotFoundException e) {
 			throw new SimError("Invalid binary input file for external " +
 					"events:" + eventsFile.getAbsolutePath(), e);
 		}
-		
 	}
-	
+
+	/**
+	 * Opens a file of the binary events format and reads the header and
+	 * the string table
+	 */
+	private void open() throws IOException {
+		this.channel = new RandomAccessFile(eventsFile, "r").getChannel();
+		this.fileSize = channel.size();
+
+		map(0, HEADER_SIZE);
+		int version = window.getInt(pos(4));
+		if (version != VERSION) {
+			throw invalid("unsupported version " + version);
+		}
+		this.nrofEvents = window.getLong(pos(8));
+		this.tableOffset = window.getLong(pos(16));
+		this.indexOffset = window.getLong(pos(24));
+		if (nrofEvents < 0 || tableOffset < HEADER_SIZE ||
+				tableOffset > fileSize - 4) {
+			throw invalid("invalid header");
+		}
+		if (indexOffset != 0 && (indexOffset < tableOffset ||
+				indexOffset > fileSize - 8)) {
+			throw invalid("invalid block index offset");
+		}
+
+		readStrings();
+		this.nextRecord = HEADER_SIZE;
+		this.eventsLeft = nrofEvents;
+	}
+
+	/**
+	 * Returns an error about an invalid binary events file
+	 */
+	private SimError invalid(String reason) {
+		return new SimError("Invalid binary events file " + eventsFile +
+				": " + reason);
+	}
+
+	/**
+	 * Maps a part of the file (and some of the data after it), unless the
+	 * part is already mapped
+	 * @param offset File offset of the part
+	 * @param length Length of the part
+	 */
+	private void map(long offset, int length) throws IOException {
+		if (window != null && offset >= windowStart &&
+				offset + length <= windowStart + window.capacity()) {
+			return;
+		}
+		long size = Math.min(MAP_WINDOW, fileSize - offset);
+		if (size < length) {
+			throw invalid("truncated at offset " + offset);
+		}
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+				offset, size);
+		this.window = mapped;
+		this.windowStart = offset;
+	}
+
+	/**
+	 * Returns the position of a file offset in the mapped part
+	 */
+	private int pos(long offset) {
+		return (int)(offset - windowStart);
+	}
+
+	/**
+	 * Reads the string table that follows the records
+	 */
+	private void readStrings() throws IOException {
+		long offset = tableOffset;
+		map(offset, 4);
+		int nrof = window.getInt(pos(offset));
+		if (nrof < 0 || nrof > (fileSize - offset) / 4) {
+			throw invalid("invalid number of strings " + nrof);
+		}
+		offset += 4;
+
+		this.strings = new String[nrof];
+		byte[] buffer = new byte[64];
+		for (int i=0; i < nrof; i++) {
+			map(offset, 4);
+			int length = window.getInt(pos(offset));
+			if (length < 0) {
+				throw invalid("invalid string length " + length);
+			}
+			offset += 4;
+			map(offset, length);
+			if (length > buffer.length) {
+				buffer = new byte[Math.max(length, buffer.length * 2)];
+			}
+			ByteBuffer b = window.duplicate();
+			b.position(pos(offset));
+			b.get(buffer, 0, length);
+			strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+			offset += length;
+		}
+	}
+
+	/**
+	 * Returns a string of the string table
+	 * @param index Index of the string or {@link #NO_STRING}
+	 * @return The string (null for {@link #NO_STRING})
+	 */
+	private String string(int index) {
+		if (index == NO_STRING) {
+			return null;
+		}
+		if (index < 0 || index >= strings.length) {
+			throw invalid("invalid string index " + index);
+		}
+		return strings[index];
+	}
+
+	/**
+	 * Decodes the next record of the file
+	 * @return The event of the record
+	 */
+	private ExternalEvent decode() throws IOException {
+		long offset = nextRecord;
+		map(offset, 1);
+		int type = window.get(pos(offset));
+		if (type < 0 || type >= RECORD_SIZES.length) {
+			throw invalid("unknown record type " + type + " at offset " +
+					offset);
+		}
+		int size = RECORD_SIZES[type];
+		if (offset + size > tableOffset) {
+			throw invalid("record at offset " + offset + " overlaps the " +
+					"string table");
+		}
+		map(offset, size);
+
+		ByteBuffer w = window;
+		int p = pos(offset) + 1;
+		double time = w.getDouble(p);
+		p += 8;
+		nextRecord += size;
+
+		switch (type) {
+		case CREATE:
+			return new MessageCreateEvent(w.getInt(p), w.getInt(p + 4),
+					string(w.getInt(p + 8)), w.getInt(p + 12),
+					w.getInt(p + 16), time);
+		case RELAY:
+			return new MessageRelayEvent(w.getInt(p), w.getInt(p + 4),
+					string(w.getInt(p + 8)), time, w.get(p + 12));
+		case DELETE:
+			return new MessageDeleteEvent(w.getInt(p),
+					string(w.getInt(p + 4)), time, w.get(p + 8) != 0);
+		case CONNECTION:
+			return new ConnectionEvent(w.getInt(p), w.getInt(p + 4),
+					string(w.getInt(p + 8)), w.get(p + 12) != 0, time);
+		default:
+			return new ExternalEvent(time);
+		}
+	}
+
+	/**
+	 * Returns the time of the next record's event
+	 */
+	private double nextRecordsTime() throws IOException {
+		map(nextRecord, 1 + 8);
+		return window.getDouble(pos(nextRecord) + 1);
+	}
+
 	/**
 	 * Read events from a binary file created with storeBinaryFile method
 	 * @param nrof Maximum number of events to read
 	 * @return Events in an ArrayList (empty list if didn't read any)
 	 * @see #storeToBinaryFile(String, List)
 	 */
-	@SuppressWarnings("unchecked") // suppress cast warnings
 	public List<ExternalEvent> readEvents(int nrof) {
-		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				(int)Math.min(nrof, eventsLeft));
 
 		if (eventsLeft == 0) {
 			return events;
 		}
-		
+		if (in != null) {
+			return readLegacyEvents(events, nrof);
+		}
+
+		try {
+			for (int i=0; i < nrof && eventsLeft > 0; i++) {
+				events.add(decode());
+				eventsLeft--;
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read binary events file " +
+					eventsFile + ": " + e.getMessage(), e);
+		}
+		if (eventsLeft == 0) {
+			close();
+		}
+		return events;
+	}
+
+	/**
+	 * Reads events from a file with serialized event objects
+	 */
+	private List<ExternalEvent> readLegacyEvents(
+			ArrayList<ExternalEvent> events, int nrof) {
 		try {
 			for (int i=0; i < nrof && eventsLeft > 0; i++) {
 				events.add((ExternalEvent)in.readObject());
@@ -70,9 +366,98 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		} catch (Exception e) { // FIXME: quick 'n' dirty exception handling
 			throw new SimError(e);
 		}
-		return events;	
+		return events;
 	}
-	
+
+	/**
+	 * Skips the events that happen before the given time, so that the next
+	 * read event is the first one at or after the time. The events must be
+	 * in time order. If the file has a block index, the reader jumps to the
+	 * block where the time is and only decodes that block's events. Only
+	 * forward seeks are done: events that have already been read are not
+	 * read again.
+	 * @param time The time to seek to
+	 */
+	public void seek(double time) {
+		try {
+			if (in != null) {
+				throw new SimError("Seeking is not supported for " +
+						eventsFile + " (binary events file of an old format)");
+			}
+			if (eventsLeft == 0) {
+				return;
+			}
+			if (indexOffset != 0) {
+				seekBlock(time);
+			}
+			while (eventsLeft > 0 && nextRecordsTime() < time) {
+				nextRecord += recordSize();
+				eventsLeft--;
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read binary events file " +
+					eventsFile + ": " + e.getMessage(), e);
+		}
+		if (eventsLeft == 0) {
+			close();
+		}
+	}
+
+	/**
+	 * Returns the size of the next record
+	 */
+	private int recordSize() throws IOException {
+		map(nextRecord, 1);
+		int type = window.get(pos(nextRecord));
+		if (type < 0 || type >= RECORD_SIZES.length) {
+			throw invalid("unknown record type " + type + " at offset " +
+					nextRecord);
+		}
+		return RECORD_SIZES[type];
+	}
+
+	/**
+	 * Moves to the last indexed block whose first event happens before the
+	 * given time (unless the current record is already past that block)
+	 */
+	private void seekBlock(double time) throws IOException {
+		map(indexOffset, 8);
+		int blockSize = window.getInt(pos(indexOffset));
+		int nrofBlocks = window.getInt(pos(indexOffset) + 4);
+		long entries = indexOffset + 8;
+		if (blockSize < 1 || nrofBlocks < 0 ||
+				entries + nrofBlocks * 16L > fileSize) {
+			throw invalid("invalid block index");
+		}
+		map(entries, nrofBlocks * 16);
+		int base = pos(entries);
+
+		// binary search for the last block starting before the time
+		int lo = 0;
+		int hi = nrofBlocks - 1;
+		int block = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (window.getDouble(base + mid * 16) < time) {
+				block = mid;
+				lo = mid + 1;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		if (block < 0) {
+			return;
+		}
+
+		long offset = window.getLong(base + block * 16 + 8);
+		long eventsBefore = (long)block * blockSize;
+		if (offset > nextRecord && eventsBefore < nrofEvents) {
+			this.nextRecord = offset;
+			this.eventsLeft = nrofEvents - eventsBefore;
+		}
+	}
+
 	/**
 	 * Checks if the given file is a binary external events file
 	 * @param file The file to check
@@ -82,8 +467,8 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		if (!file.getName().endsWith(BINARY_EXT)) {
 			return false;
 		}
-		
-		// extension matches, try to read an event 
+
+		// extension matches, try to read an event
 		try {
 			BinaryEventsReader r = new BinaryEventsReader(file);
 			r.readEvents(1);
@@ -92,46 +477,47 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		catch (SimError e) {
 			return false; // read failed -> not a valid file
 		}
-		
+
 		return true; // seems to be a valid binary ee file
 	}
-	
+
 	/**
 	 * Stores the events to a binary file
-	 * @param fileName Path to the file where the events are stored
+	 * @param fileName Path to the file where the events are stored. The
+	 * {@link #BINARY_EXT} extension is appended if the name doesn't have it.
 	 * @param events List of events to store
 	 * @throws IOException if something in storing went wrong
+	 * @see BinaryEventsWriter
 	 */
 	public static void storeToBinaryFile(String fileName,
-			List<ExternalEvent> events) throws IOException {
+			List<? extends ExternalEvent> events) throws IOException {
 
 		// make sure the file name ends with binary extension
 		if (!fileName.endsWith(BINARY_EXT)) {
-			fileName += "BINARY_EXT";
+			fileName += BINARY_EXT;
 		}
-		
-		ObjectOutputStream out;
-		FileOutputStream fos = new FileOutputStream(fileName);
-		out = new ObjectOutputStream(fos);
 
-		// store the number of events
-		out.writeObject(new Integer(events.size()));
-		
-		// store events
+		BinaryEventsWriter out = new BinaryEventsWriter(fileName);
 		for (ExternalEvent ee : events) {
-			out.writeObject(ee);
+			out.write(ee);
 		}
-
 		out.close();
 	}
 
 	public void close() {
 		try {
-			this.in.close();
+			if (in != null) {
+				this.in.close();
+			}
+			if (channel != null) {
+				channel.close();
+				channel = null;
+			}
+			this.window = null;
 		}
 		catch (IOException ioe) {
 			throw new SimError(ioe);
 		}
 	}
-		
+
 }
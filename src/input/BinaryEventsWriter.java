@@ -0,0 +1,291 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>Writes external events to a binary events file that
+ * {@link BinaryEventsReader} reads (see it for the format). The events
+ * are written one at a time, so a file of any size can be created without
+ * keeping the events in memory.</P>
+ *
+ * <P>Can also be run as a program that converts an events file (e.g., a
+ * standard text events file) to the binary format:</P>
+ * <pre>
+ * java input.BinaryEventsWriter &lt;events file&gt; [&lt;binary file&gt;]
+ * </pre>
+ * <P>If the binary file is not given, its name is the events file's name
+ * with the extension replaced by {@link BinaryEventsReader#BINARY_EXT}.</P>
+ */
+public class BinaryEventsWriter {
+	/** default number of events per block in the block index */
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+	/** number of events that are read at once when converting */
+	private static final int CONVERT_BATCH = 1000;
+
+	private String fileName;
+	private DataOutputStream out;
+	/** file offset of the next record */
+	private long offset;
+	private long nrofEvents;
+
+	/** interned strings and their indexes */
+	private Map<String, Integer> stringIndexes;
+	private List<String> strings;
+
+	/** number of events per block or 0 if no block index is written */
+	private int blockSize;
+	/** the first times and offsets of the blocks */
+	private List<Double> blockTimes;
+	private List<Long> blockOffsets;
+
+	/**
+	 * Creates a writer that writes a block index with the default block
+	 * size ({@value #DEFAULT_BLOCK_SIZE})
+	 * @param fileName Path of the file where the events are written
+	 * @throws IOException if the file can't be created
+	 */
+	public BinaryEventsWriter(String fileName) throws IOException {
+		this(fileName, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a writer
+	 * @param fileName Path of the file where the events are written
+	 * @param blockSize Number of events per block of the block index, or 0
+	 * for no block index
+	 * @throws IOException if the file can't be created
+	 */
+	public BinaryEventsWriter(String fileName, int blockSize)
+			throws IOException {
+		if (blockSize < 0) {
+			throw new SimError("Invalid block size " + blockSize);
+		}
+		this.fileName = fileName;
+		this.blockSize = blockSize;
+		this.stringIndexes = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		this.blockTimes = new ArrayList<Double>();
+		this.blockOffsets = new ArrayList<Long>();
+
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName), 1 << 16));
+		// the counts and offsets are filled in when the file is closed
+		out.writeInt(BinaryEventsReader.MAGIC);
+		out.writeInt(BinaryEventsReader.VERSION);
+		out.writeLong(0);
+		out.writeLong(0);
+		out.writeLong(0);
+		this.offset = BinaryEventsReader.HEADER_SIZE;
+	}
+
+	/**
+	 * Returns the index of a string in the string table, adding the string
+	 * to the table if it is new
+	 * @param s The string (or null)
+	 * @return The index or {@link BinaryEventsReader#NO_STRING} for null
+	 */
+	private int stringIndex(String s) {
+		if (s == null) {
+			return BinaryEventsReader.NO_STRING;
+		}
+		Integer index = stringIndexes.get(s);
+		if (index == null) {
+			index = strings.size();
+			stringIndexes.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes an event
+	 * @param ee The event to write
+	 * @throws IOException if the writing fails
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		if (blockSize > 0 && nrofEvents % blockSize == 0) {
+			blockTimes.add(ee.getTime());
+			blockOffsets.add(offset);
+		}
+
+		byte type;
+		if (ee instanceof MessageCreateEvent) {
+			type = BinaryEventsReader.CREATE;
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			type = BinaryEventsReader.RELAY;
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			type = BinaryEventsReader.DELETE;
+		}
+		else if (ee instanceof ConnectionEvent) {
+			type = BinaryEventsReader.CONNECTION;
+		}
+		else if (ee.getClass() == ExternalEvent.class) {
+			type = BinaryEventsReader.EVENT;
+		}
+		else {
+			throw new SimError("Can't store event " + ee + " of type " +
+					ee.getClass().getName() + " to a binary events file");
+		}
+
+		out.writeByte(type);
+		out.writeDouble(ee.getTime());
+		switch (type) {
+		case BinaryEventsReader.CREATE:
+			MessageCreateEvent ce = (MessageCreateEvent)ee;
+			out.writeInt(ce.fromAddr);
+			out.writeInt(ce.toAddr);
+			out.writeInt(stringIndex(ce.id));
+			out.writeInt(ce.getSize());
+			out.writeInt(ce.getResponseSize());
+			break;
+		case BinaryEventsReader.RELAY:
+			MessageRelayEvent re = (MessageRelayEvent)ee;
+			out.writeInt(re.fromAddr);
+			out.writeInt(re.toAddr);
+			out.writeInt(stringIndex(re.id));
+			out.writeByte(re.getStage());
+			break;
+		case BinaryEventsReader.DELETE:
+			MessageDeleteEvent de = (MessageDeleteEvent)ee;
+			out.writeInt(de.fromAddr);
+			out.writeInt(stringIndex(de.id));
+			out.writeByte(de.isDrop() ? 1 : 0);
+			break;
+		case BinaryEventsReader.CONNECTION:
+			ConnectionEvent con = (ConnectionEvent)ee;
+			out.writeInt(con.fromAddr);
+			out.writeInt(con.toAddr);
+			out.writeInt(stringIndex(con.interfaceId));
+			out.writeByte(con.isUp ? 1 : 0);
+			break;
+		}
+
+		offset += BinaryEventsReader.RECORD_SIZES[type];
+		nrofEvents++;
+	}
+
+	/**
+	 * Writes the string table and the block index, fills in the header and
+	 * closes the file
+	 * @throws IOException if the writing fails
+	 */
+	public void close() throws IOException {
+		long tableOffset = offset;
+		out.writeInt(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			offset += 4 + bytes.length;
+		}
+		offset += 4;
+
+		long indexOffset = 0;
+		if (blockSize > 0) {
+			indexOffset = offset;
+			out.writeInt(blockSize);
+			out.writeInt(blockTimes.size());
+			for (int i=0, n = blockTimes.size(); i < n; i++) {
+				out.writeDouble(blockTimes.get(i));
+				out.writeLong(blockOffsets.get(i));
+			}
+		}
+		out.close();
+
+		RandomAccessFile header = new RandomAccessFile(fileName, "rw");
+		try {
+			header.seek(8);
+			header.writeLong(nrofEvents);
+			header.writeLong(tableOffset);
+			header.writeLong(indexOffset);
+		} finally {
+			header.close();
+		}
+	}
+
+	/**
+	 * Converts all events of an events file to a binary events file
+	 * @param eventsFile The events file (any format that
+	 * {@link ExternalEventsQueue} reads)
+	 * @param binFileName Path of the binary events file
+	 * @return Number of converted events
+	 * @throws IOException if the writing fails
+	 */
+	public static long convert(File eventsFile, String binFileName)
+			throws IOException {
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+			reader = new BinaryEventsReader(eventsFile);
+		}
+		else {
+			reader = new MappedEventsReader(eventsFile);
+		}
+
+		BinaryEventsWriter writer = new BinaryEventsWriter(binFileName);
+		long nrof = 0;
+		List<ExternalEvent> events = reader.readEvents(CONVERT_BATCH);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				writer.write(ee);
+			}
+			nrof += events.size();
+			events = reader.readEvents(CONVERT_BATCH);
+		}
+		reader.close();
+		writer.close();
+		return nrof;
+	}
+
+	/**
+	 * Converts an events file to a binary events file
+	 * @param args The events file and, optionally, the binary file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: BinaryEventsWriter <events file> " +
+					"[<binary file>]");
+			System.exit(1);
+		}
+
+		String binFileName;
+		if (args.length == 2) {
+			binFileName = args[1];
+		}
+		else {
+			String name = args[0];
+			int dot = name.lastIndexOf('.');
+			if (dot > name.lastIndexOf(File.separatorChar)) {
+				name = name.substring(0, dot);
+			}
+			binFileName = name + BinaryEventsReader.BINARY_EXT;
+		}
+
+		File eventsFile = new File(args[0]);
+		if (eventsFile.getCanonicalFile().equals(
+				new File(binFileName).getCanonicalFile())) {
+			System.err.println("Can't convert " + args[0] + " to itself");
+			System.exit(1);
+		}
+
+		long nrof = convert(eventsFile, binFileName);
+		System.out.println("Converted " + nrof + " events to " + binFileName);
+	}
+}
@@ -46,6 +46,14 @@ public class ConnectionEvent extends ExternalEvent {
 		from.forceConnection(to, interfaceId, this.isUp);
 	}
 	
+	/**
+	 * Returns the type of the interface of the connection
+	 * @return The interface type or null if the first interface is used
+	 */
+	public String getInterfaceId() {
+		return this.interfaceId;
+	}
+	
 	@Override
 	public String toString() {
 		return "CONN " + (isUp ? "up" : "down") + " @" + this.time + " " + 
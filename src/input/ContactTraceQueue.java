@@ -0,0 +1,302 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import core.Settings;
+import core.SimError;
+
+/**
+ * <P>Event queue that replays the connection events of a binary contact
+ * trace recorded with {@link report.ContactTraceReport}. The trace file is
+ * memory-mapped and the events are read directly from the mapping, so a
+ * trace of any size is replayed without parsing text or loading it to the
+ * heap.</P>
+ *
+ * <P>A recorded trace lets one mobility simulation drive any number of
+ * routing simulations. In the replay runs, the hosts don't need to move
+ * and the connectivity isn't simulated, e.g.:</P>
+ * <pre>
+ * Scenario.simulateConnections = false
+ * Group.movementModel = StationaryMovement
+ * Group.nodeLocation = 0,0
+ * Events1.class = ContactTraceQueue
+ * Events1.traceFile = reports/scenario_ContactTraceReport.ctr
+ * </pre>
+ * <P>The host groups (and thus the addresses) and the interface types
+ * must be the same as in the recording run.</P>
+ *
+ * <P>The trace file starts with a header (magic number and version),
+ * followed by blocks of at most {@link #MAX_BLOCK_SIZE} events stored by
+ * column: the number of events in the block, the event times (doubles),
+ * the addresses of the hosts the connections are from and to (ints) and
+ * a flags byte for each event ({@link #UP_FLAG} and the index of the
+ * event's interface type). The blocks are followed by the table of
+ * interface type names (count, and each name as a 16 bit length and UTF-8
+ * bytes), and the file ends with the offset of the table (long). All
+ * values are big-endian.</P>
+ */
+public class ContactTraceQueue implements EventQueue {
+	/** trace file path -setting id ({@value}). Supports value filling. */
+	public static final String TRACE_FILE_S = "traceFile";
+
+	/** extension of contact trace files */
+	public static final String TRACE_EXT = ".ctr";
+	/** magic number at the start of trace files ("ONEC") */
+	public static final int MAGIC = 0x4F4E4543;
+	/** version of the trace file format */
+	public static final int VERSION = 1;
+	/** size of the file header (magic number and version) */
+	public static final int HEADER_SIZE = 8;
+	/** largest number of events in one block */
+	public static final int MAX_BLOCK_SIZE = 4096;
+	/** number of bytes one event takes in a block */
+	public static final int EVENT_SIZE = 8 + 4 + 4 + 1;
+	/** flag of the "connection up" events */
+	public static final int UP_FLAG = 0x80;
+	/** interface index of events without an interface type */
+	public static final int NO_INTERFACE = 0x7F;
+
+	/** largest part of the file that is mapped at once */
+	private static final long MAP_WINDOW = 1 << 30;
+
+	private File traceFile;
+	private FileChannel channel;
+	private long fileSize;
+	/** offset of the interface type table (i.e., end of the blocks) */
+	private long tableOffset;
+	private String[] interfaceTypes;
+
+	/** the currently mapped part of the file */
+	private ByteBuffer window;
+	/** file offset of the mapped part */
+	private long windowStart;
+
+	/** file offset of the next block */
+	private long nextBlock;
+	/** number of events in the current block */
+	private int blockSize;
+	/** index of the next event in the current block */
+	private int nextIndex;
+	/** positions of the current block's columns in the mapped part */
+	private int timesPos;
+	private int fromPos;
+	private int toPos;
+	private int flagsPos;
+
+	/**
+	 * Creates a new queue based on the given settings
+	 * (see {@link #TRACE_FILE_S})
+	 * @param s The settings
+	 */
+	public ContactTraceQueue(Settings s) {
+		this(new File(s.valueFillString(s.getSetting(TRACE_FILE_S))));
+	}
+
+	/**
+	 * Creates a new queue that replays a trace file
+	 * @param traceFile The trace file
+	 */
+	public ContactTraceQueue(File traceFile) {
+		this.traceFile = traceFile;
+		try {
+			this.channel = new RandomAccessFile(traceFile, "r").getChannel();
+			this.fileSize = channel.size();
+			if (fileSize < HEADER_SIZE + 8) {
+				throw invalid("file too short");
+			}
+
+			map(0, HEADER_SIZE);
+			if (window.getInt(pos(0)) != MAGIC) {
+				throw invalid("not a contact trace file");
+			}
+			if (window.getInt(pos(4)) != VERSION) {
+				throw invalid("unsupported version " +
+						window.getInt(pos(4)));
+			}
+
+			map(fileSize - 8, 8);
+			this.tableOffset = window.getLong(pos(fileSize - 8));
+			if (tableOffset < HEADER_SIZE || tableOffset > fileSize - 12) {
+				throw invalid("invalid interface table offset");
+			}
+			readInterfaceTypes();
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace " + traceFile +
+					": " + e.getMessage(), e);
+		}
+
+		this.nextBlock = HEADER_SIZE;
+		readBlock();
+	}
+
+	/**
+	 * Returns an error about an invalid trace file
+	 */
+	private SimError invalid(String reason) {
+		return new SimError("Invalid contact trace " + traceFile + ": " +
+				reason);
+	}
+
+	/**
+	 * Maps a part of the trace file (and some of the data after it), unless
+	 * the part is already mapped
+	 * @param offset File offset of the part
+	 * @param length Length of the part
+	 */
+	private void map(long offset, int length) throws IOException {
+		if (window != null && offset >= windowStart &&
+				offset + length <= windowStart + window.capacity()) {
+			return;
+		}
+		long size = Math.min(MAP_WINDOW, fileSize - offset);
+		if (size < length) {
+			throw invalid("truncated at offset " + offset);
+		}
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+				offset, size);
+		this.window = mapped;
+		this.windowStart = offset;
+	}
+
+	/**
+	 * Returns the position of a file offset in the mapped part
+	 */
+	private int pos(long offset) {
+		return (int)(offset - windowStart);
+	}
+
+	/**
+	 * Reads the interface type table at the end of the file
+	 */
+	private void readInterfaceTypes() throws IOException {
+		int length = (int)(fileSize - 8 - tableOffset);
+		map(tableOffset, length);
+		ByteBuffer table = window.duplicate();
+		table.position(pos(tableOffset));
+
+		int nrof = table.getInt();
+		if (nrof < 0 || nrof > NO_INTERFACE) {
+			throw invalid("invalid number of interface types " + nrof);
+		}
+		this.interfaceTypes = new String[nrof];
+		for (int i=0; i < nrof; i++) {
+			byte[] name = new byte[table.getShort() & 0xFFFF];
+			table.get(name);
+			interfaceTypes[i] = new String(name, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Makes the next block of events the current one, or closes the file if
+	 * there are no more blocks
+	 */
+	private void readBlock() {
+		this.nextIndex = 0;
+		this.blockSize = 0;
+		if (nextBlock >= tableOffset) {
+			close();
+			return;
+		}
+
+		try {
+			map(nextBlock, 4);
+			int n = window.getInt(pos(nextBlock));
+			if (n < 1 || n > MAX_BLOCK_SIZE) {
+				throw invalid("invalid block size " + n);
+			}
+			int length = 4 + n * EVENT_SIZE;
+			if (nextBlock + length > tableOffset) {
+				throw invalid("block at offset " + nextBlock +
+						" overlaps the interface table");
+			}
+			map(nextBlock, length);
+
+			this.timesPos = pos(nextBlock) + 4;
+			this.fromPos = timesPos + 8 * n;
+			this.toPos = fromPos + 4 * n;
+			this.flagsPos = toPos + 4 * n;
+			this.blockSize = n;
+			this.nextBlock += length;
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace " + traceFile +
+					": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Closes the trace file
+	 */
+	private void close() {
+		this.window = null;
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		this.channel = null;
+	}
+
+	/**
+	 * Returns the next event in the queue or ExternalEvent with time of
+	 * double.MAX_VALUE if there are no events left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (nextIndex >= blockSize) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		int i = nextIndex;
+		double time = window.getDouble(timesPos + 8 * i);
+		int from = window.getInt(fromPos + 4 * i);
+		int to = window.getInt(toPos + 4 * i);
+		int flags = window.get(flagsPos + i) & 0xFF;
+		int type = flags & NO_INTERFACE;
+		if (type != NO_INTERFACE && type >= interfaceTypes.length) {
+			throw invalid("unknown interface type index " + type);
+		}
+
+		nextIndex++;
+		if (nextIndex >= blockSize) {
+			readBlock();
+		}
+
+		return new ConnectionEvent(from, to,
+				type == NO_INTERFACE ? null : interfaceTypes[type],
+				(flags & UP_FLAG) != 0, time);
+	}
+
+	/**
+	 * Returns next event's time or Double.MAX_VALUE if there are no
+	 * events left in the queue.
+	 * @return Next event's time
+	 */
+	public double nextEventsTime() {
+		if (nextIndex >= blockSize) {
+			return Double.MAX_VALUE;
+		}
+		return window.getDouble(timesPos + 8 * nextIndex);
+	}
+
+	/**
+	 * Returns true: the events are read in order from the trace, so the
+	 * next event's time changes only when an event is taken
+	 * @return true
+	 */
+	public boolean hasStableTime() {
+		return true;
+	}
+}
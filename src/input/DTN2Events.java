@@ -202,6 +202,13 @@ public class DTN2Events implements EventQueue {
 		else
 			return Double.MAX_VALUE;
 	}
+	
+	/**
+	 * Returns false: bundles arrive from dtnd at any time
+	 */
+	public boolean hasStableTime() {
+		return false;
+	}
 	//************************************************************************//
 	
 	
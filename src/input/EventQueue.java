@@ -27,4 +27,19 @@ public interface EventQueue {
 	 */
 	public double nextEventsTime();
 
+	/**
+	 * Returns true if the time of the next event can change only when the
+	 * next event is taken with {@link #nextEvent()} (e.g., the events are
+	 * read from a file or generated one at a time). The world caches the
+	 * next event's time of such queues and asks it again only after taking
+	 * an event from the queue. Queues whose events may arrive at any time
+	 * (e.g., from another thread) must return false; the world then asks
+	 * their next event's time every time it looks for the next event.
+	 * Default is false.
+	 * @return True if the next event's time is stable, false if not
+	 */
+	public default boolean hasStableTime() {
+		return false;
+	}
+
 }
@@ -9,10 +9,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import core.Settings;
+import core.SettingsError;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. Optionally, the
+ * preloads are read ahead of time in a background thread (see
+ * {@link #PREFETCH_SETTING}).
  */
 public class ExternalEventsQueue implements EventQueue {
 	/** ExternalEvents namespace ({@value})*/
@@ -21,6 +24,9 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of preloads to read ahead in a background thread -setting id
+	 * ({@value}). Default is 0 (events are read when they are needed). */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -31,18 +37,37 @@ public class ExternalEventsQueue implements EventQueue {
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	/** the background reader of the preloads or null if not prefetching */
+	private Prefetcher<List<ExternalEvent>> prefetcher;
+	private int nrofPrefetch;
 	
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file. Other files are read as
+	 * standard text events with a {@link MappedEventsReader}.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 0);
+	}
+
+	/**
+	 * Creates a new Queue from a file and reads the preloads ahead of time
+	 * in a background thread
+	 * @param filePath Path to the file where the events are read from
+	 * (see {@link #ExternalEventsQueue(String, int)})
+	 * @param nrofPreload How many events to preload
+	 * @param nrofPrefetch How many preloads to read ahead in the background
+	 * (0 = no background reading)
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			int nrofPrefetch) {
 		setNrofPreload(nrofPreload);
+		this.nrofPrefetch = nrofPrefetch;
 		init(filePath);
 	}
 	
@@ -58,12 +83,21 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		if (s.contains(PREFETCH_SETTING)) {
+			this.nrofPrefetch = s.getInt(PREFETCH_SETTING);
+			if (nrofPrefetch < 0) {
+				throw new SettingsError("Negative value (" + nrofPrefetch +
+						") for " + s.getFullPropertyName(PREFETCH_SETTING));
+			}
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
 
 	/**
-	 * Sets maximum number of events that are read when the next preload occurs
+	 * Sets maximum number of events that are read when the next preload occurs.
+	 * If the preloads are read in a background thread, the thread keeps
+	 * using the value that was set when it was started.
 	 * @param nrof Maximum number of events to read. If less than 1, default
 	 * value ( {@value DEFAULT_NROF_PRELOAD} ) is used.
 	 */
@@ -81,10 +115,13 @@ public class ExternalEventsQueue implements EventQueue {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
-			this.reader = new StandardEventsReader(eventsFile);
+			this.reader = new MappedEventsReader(eventsFile);
 		}
-		
-		this.queue = readEvents(nrofPreload);
+
+		if (nrofPrefetch > 0) {
+			startPrefetching();
+		}
+		this.queue = readEvents();
 		this.nextEventIndex = 0;
 	}
 	
@@ -103,6 +140,15 @@ public class ExternalEventsQueue implements EventQueue {
 		}
 	}
 	
+	/**
+	 * Returns true: the events are read in order from the file, so the next
+	 * event's time changes only when an event is taken
+	 * @return true
+	 */
+	public boolean hasStableTime() {
+		return true;
+	}
+	
 	/**
 	 * Returns the next event in the queue or ExternalEvent with time of 
 	 * double.MAX_VALUE if there are no events left
@@ -117,7 +163,7 @@ public class ExternalEventsQueue implements EventQueue {
 		nextEventIndex++;
 		
 		if (nextEventIndex >= queue.size()) { // ran out of events
-			queue = readEvents(nrofPreload);
+			queue = readEvents();
 			nextEventIndex = 0;
 		}
 		
@@ -140,19 +186,47 @@ public class ExternalEventsQueue implements EventQueue {
 		
 	
 	/**
-	 * Read some events from the external events reader
-	 * @param nrof Maximum number of events to read
+	 * Starts reading the preloads in a background thread
+	 */
+	private void startPrefetching() {
+		final ExternalEventsReader source = this.reader;
+		final int nrof = this.nrofPreload;
+		this.prefetcher = Prefetcher.start("Prefetch " + eventsFile.getName(),
+				new Prefetcher.Source<List<ExternalEvent>>() {
+			public List<ExternalEvent> read() {
+				List<ExternalEvent> events = source.readEvents(nrof);
+				if (events.size() == 0) {
+					source.close();
+					return null;
+				}
+				return events;
+			}
+		}, nrofPrefetch);
+	}
+
+	/**
+	 * Read the next preload (at most {@link #nrofPreload} events) from the
+	 * external events reader or from the background thread
 	 * @return A List of events that were read or an empty  list if no events
 	 * could be read
 	 */
-	private List<ExternalEvent> readEvents(int nrof) {
+	private List<ExternalEvent> readEvents() {
 		if (allEventsRead) {
 			return new ArrayList<ExternalEvent>(0);
 		}
+
+		if (prefetcher != null) {
+			List<ExternalEvent> events = prefetcher.next();
+			if (events == null) {
+				allEventsRead = true;
+				return new ArrayList<ExternalEvent>(0);
+			}
+			return events;
+		}
+
+		List<ExternalEvent> events = reader.readEvents(nrofPreload);
 		
-		List<ExternalEvent> events = reader.readEvents(nrof);
-		
-		if (nrof > 0 && events.size() == 0) {
+		if (events.size() == 0) {
 			reader.close();
 			allEventsRead = true;
 		}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import core.SimError;
+
+/**
+ * <P>External events reader for the standard text format (see
+ * {@link StandardEventsReader}) that memory-maps the events file and
+ * tokenizes the bytes directly. No strings are created for the lines or
+ * the numeric fields, and the addresses parsed from the host IDs are
+ * cached, so only the message (and interface) IDs of the events are copied
+ * to strings. Files of any size are read through a sliding mapped window.
+ * </P>
+ *
+ * <P>The events are the same as the ones {@link StandardEventsReader}
+ * reads: fields are separated by white space, lines starting with
+ * <code>#</code> and blank lines are skipped, and extra fields at the end
+ * of a line are ignored. Numbers are parsed like {@link Double#parseDouble}
+ * and {@link Integer#parseInt} parse them (i.e., without locale specific
+ * grouping).</P>
+ */
+public class MappedEventsReader implements ExternalEventsReader {
+	/** largest part of the file that is mapped at once */
+	private static final long MAP_WINDOW = 1 << 30;
+	/** largest number of fields of a line that are looked at */
+	private static final int MAX_FIELDS = 7;
+	/** initial size of the host ID cache (a power of two) */
+	private static final int INITIAL_CACHE_SIZE = 256;
+	/** powers of ten that are exact doubles */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private static final byte[] CREATE = bytes(StandardEventsReader.CREATE);
+	private static final byte[] SEND = bytes(StandardEventsReader.SEND);
+	private static final byte[] DELIVERED =
+		bytes(StandardEventsReader.DELIVERED);
+	private static final byte[] ABORT = bytes(StandardEventsReader.ABORT);
+	private static final byte[] DROP = bytes(StandardEventsReader.DROP);
+	private static final byte[] REMOVE = bytes(StandardEventsReader.REMOVE);
+	private static final byte[] CONNECTION =
+		bytes(StandardEventsReader.CONNECTION);
+	private static final byte[] CONNECTION_UP =
+		bytes(StandardEventsReader.CONNECTION_UP);
+	private static final byte[] CONNECTION_DOWN =
+		bytes(StandardEventsReader.CONNECTION_DOWN);
+
+	private File eventsFile;
+	private FileChannel channel;
+	private long fileSize;
+	/** the currently mapped part of the file */
+	private MappedByteBuffer window;
+	/** file offset of the mapped part */
+	private long windowStart;
+	/** file offset of the next line */
+	private long nextLine;
+
+	/** start and end positions (in the window) of the current line's
+	 * fields */
+	private int[] fieldStart = new int[MAX_FIELDS];
+	private int[] fieldEnd = new int[MAX_FIELDS];
+	private int nrofFields;
+	/** start and end positions of the current line */
+	private int lineStart;
+	private int lineEnd;
+
+	/** cached host IDs and their addresses (open addressing) */
+	private byte[][] cachedIds = new byte[INITIAL_CACHE_SIZE][];
+	private int[] cachedAddresses = new int[INITIAL_CACHE_SIZE];
+	private int nrofCached;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public MappedEventsReader(File eventsFile) {
+		this.eventsFile = eventsFile;
+		try {
+			this.channel = new RandomAccessFile(eventsFile, "r").getChannel();
+			this.fileSize = channel.size();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+		this.nextLine = 0;
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		int eventsRead = 0;
+
+		while (eventsRead < nrof && readLine()) {
+			if (nrofFields == 0 || window.get(lineStart) == '#') {
+				continue; // skip empty and comment lines
+			}
+
+			try {
+				events.add(parseEvent());
+				eventsRead++;
+			} catch (Exception e) {
+				throw new SimError("Can't parse external event " +
+						(eventsRead+1) + " from '" + lineString() + "'", e);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Parses an event from the fields of the current line
+	 * @return The event
+	 */
+	private ExternalEvent parseEvent() {
+		double time = parseDouble(0);
+
+		if (fieldEquals(1, DROP) || fieldEquals(1, REMOVE)) {
+			String msgId = fieldString(2);
+			int hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time,
+					fieldEquals(1, DROP));
+		}
+		else if (fieldEquals(1, CONNECTION)) {
+			int hostAddr = getHostAddress(2);
+			int host2Addr = getHostAddress(3);
+			boolean isUp;
+			if (fieldEqualsIgnoreCase(4, CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (fieldEqualsIgnoreCase(4, CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						fieldString(4) + "'");
+			}
+			String interfaceId = nrofFields > 5 ? fieldString(5) : null;
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		String msgId = fieldString(2);
+		int hostAddr = getHostAddress(3);
+		int host2Addr = getHostAddress(4);
+
+		if (fieldEquals(1, CREATE)) {
+			int size = parseInt(5);
+			int respSize = 0;
+			if (nrofFields > 6 && isInt(6)) {
+				respSize = parseInt(6);
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		int stage;
+		if (fieldEquals(1, SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (fieldEquals(1, DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (fieldEquals(1, ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new SimError("Unknown action '" + fieldString(1) +
+					"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Maps the part of the file starting from the given offset
+	 */
+	private void map(long offset) {
+		try {
+			long size = Math.min(MAP_WINDOW, fileSize - offset);
+			this.window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+					size);
+			this.windowStart = offset;
+		} catch (IOException e) {
+			throw new SimError("Couldn't read external events from " +
+					eventsFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finds the next line and its fields
+	 * @return True if a line was found, false if the end of file was reached
+	 */
+	private boolean readLine() {
+		if (nextLine >= fileSize) {
+			return false;
+		}
+		if (window == null || !findLine()) {
+			map(nextLine); // line crosses the end of the mapped part
+			if (!findLine()) {
+				throw new SimError("Too long line at offset " + nextLine +
+						" in " + eventsFile);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the fields of the line at {@link #nextLine} from the mapped part
+	 * @return False if the line doesn't end in the mapped part
+	 */
+	private boolean findLine() {
+		long start = nextLine - windowStart;
+		if (start < 0 || start >= window.limit()) {
+			return false;
+		}
+		boolean windowAtEof = windowStart + window.limit() == fileSize;
+		int limit = window.limit();
+		int p = (int)start;
+		int fields = 0;
+		boolean inField = false;
+
+		while (p < limit) {
+			byte b = window.get(p);
+			if (b == '\n' || b == '\r') {
+				break;
+			}
+			if (isWhitespace(b)) {
+				if (inField) {
+					inField = false;
+					if (fields <= MAX_FIELDS) {
+						fieldEnd[fields - 1] = p;
+					}
+				}
+			}
+			else if (!inField) {
+				inField = true;
+				fields++;
+				if (fields <= MAX_FIELDS) {
+					fieldStart[fields - 1] = p;
+				}
+			}
+			p++;
+		}
+
+		if (p == limit && !windowAtEof) {
+			return false;
+		}
+		if (inField && fields <= MAX_FIELDS) {
+			fieldEnd[fields - 1] = p;
+		}
+
+		this.lineStart = (int)start;
+		this.lineEnd = p;
+		this.nrofFields = Math.min(fields, MAX_FIELDS);
+
+		// skip the line terminator (\n, \r or \r\n)
+		if (p < limit && window.get(p) == '\r') {
+			p++;
+			if (p < limit) {
+				if (window.get(p) == '\n') {
+					p++;
+				}
+			}
+			else if (!windowAtEof) {
+				return false; // \n may follow in the next part
+			}
+		}
+		else if (p < limit) {
+			p++;
+		}
+		this.nextLine = windowStart + p;
+		return true;
+	}
+
+	/**
+	 * Returns true for the ASCII white space characters (see
+	 * {@link Character#isWhitespace(char)})
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= 0x09 && b <= 0x0D) ||
+			(b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Checks that a field exists
+	 * @throws NoSuchElementException if the line doesn't have the field
+	 */
+	private void checkField(int field) {
+		if (field >= nrofFields) {
+			throw new NoSuchElementException("Missing field " + (field + 1));
+		}
+	}
+
+	/**
+	 * Returns true if a field is equal to the given bytes
+	 */
+	private boolean fieldEquals(int field, byte[] value) {
+		checkField(field);
+		int start = fieldStart[field];
+		if (fieldEnd[field] - start != value.length) {
+			return false;
+		}
+		for (int i=0; i < value.length; i++) {
+			if (window.get(start + i) != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a field is equal to the given (lower case ASCII)
+	 * bytes, ignoring case
+	 */
+	private boolean fieldEqualsIgnoreCase(int field, byte[] value) {
+		checkField(field);
+		int start = fieldStart[field];
+		if (fieldEnd[field] - start != value.length) {
+			return false;
+		}
+		for (int i=0; i < value.length; i++) {
+			byte b = window.get(start + i);
+			if (b >= 'A' && b <= 'Z') {
+				b += 'a' - 'A';
+			}
+			if (b != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a field as a string
+	 */
+	private String fieldString(int field) {
+		checkField(field);
+		return string(fieldStart[field], fieldEnd[field]);
+	}
+
+	/**
+	 * Returns the current line as a string (for error messages)
+	 */
+	private String lineString() {
+		return string(lineStart, lineEnd);
+	}
+
+	/**
+	 * Returns the bytes between two positions of the mapped part as a string
+	 */
+	private String string(int start, int end) {
+		byte[] b = new byte[end - start];
+		for (int i=0; i < b.length; i++) {
+			b[i] = window.get(start + i);
+		}
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns true if a field is an integer (an optional sign and digits)
+	 */
+	private boolean isInt(int field) {
+		try {
+			parseInt(field);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parses an integer from a field
+	 * @throws NumberFormatException if the field is not an integer
+	 */
+	private int parseInt(int field) {
+		checkField(field);
+		int p = fieldStart[field];
+		int end = fieldEnd[field];
+		boolean negative = false;
+		byte first = window.get(p);
+		if ((first == '-' || first == '+') && end - p > 1) {
+			negative = first == '-';
+			p++;
+		}
+
+		long value = 0;
+		for (; p < end; p++) {
+			int digit = window.get(p) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" +
+						fieldString(field) + "\"");
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L) {
+				throw new NumberFormatException("Value out of range: \"" +
+						fieldString(field) + "\"");
+			}
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Value out of range: \"" +
+					fieldString(field) + "\"");
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Parses a double from a field. Plain decimal numbers with at most 15
+	 * significant digits are converted exactly without creating a string
+	 * (one correctly rounded division); anything else is given to
+	 * {@link Double#parseDouble(String)}.
+	 */
+	private double parseDouble(int field) {
+		checkField(field);
+		int p = fieldStart[field];
+		int end = fieldEnd[field];
+		boolean negative = window.get(p) == '-';
+		if (negative || window.get(p) == '+') {
+			p++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		boolean plain = p < end;
+		for (; plain && p < end; p++) {
+			byte b = window.get(p);
+			if (b == '.' && decimals < 0) {
+				decimals = 0;
+			}
+			else if (isDigit(b) && digits < 15) {
+				mantissa = mantissa * 10 + (b - '0');
+				if (mantissa != 0) {
+					digits++;
+				}
+				if (decimals >= 0) {
+					decimals++;
+				}
+			}
+			else {
+				plain = false;
+			}
+		}
+
+		if (!plain || decimals == 0 || decimals >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(fieldString(field));
+		}
+
+		double value = mantissa;
+		if (decimals > 0) {
+			value /= POWERS_OF_TEN[decimals];
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a host address from a hostId field (the numeric part after
+	 * optional non-numeric part) using the cache of already parsed IDs.
+	 * @param field Index of the field
+	 * @return The address
+	 * @throws SimError if no address could be parsed from the id
+	 */
+	private int getHostAddress(int field) {
+		checkField(field);
+		int start = fieldStart[field];
+		int end = fieldEnd[field];
+
+		int hash = 1;
+		for (int i=start; i < end; i++) {
+			hash = 31 * hash + window.get(i);
+		}
+		int mask = cachedIds.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (cachedIds[slot] != null) {
+			if (cachedEquals(cachedIds[slot], start, end)) {
+				return cachedAddresses[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int address = parseHostAddress(start, end);
+		byte[] id = new byte[end - start];
+		for (int i=0; i < id.length; i++) {
+			id[i] = window.get(start + i);
+		}
+		cachedIds[slot] = id;
+		cachedAddresses[slot] = address;
+		nrofCached++;
+		if (nrofCached * 2 > cachedIds.length) {
+			growCache();
+		}
+		return address;
+	}
+
+	/**
+	 * Returns true if a cached ID has the same bytes as a part of the
+	 * mapped file
+	 */
+	private boolean cachedEquals(byte[] id, int start, int end) {
+		if (id.length != end - start) {
+			return false;
+		}
+		for (int i=0; i < id.length; i++) {
+			if (id[i] != window.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the size of the host ID cache
+	 */
+	private void growCache() {
+		byte[][] oldIds = cachedIds;
+		int[] oldAddresses = cachedAddresses;
+		cachedIds = new byte[oldIds.length * 2][];
+		cachedAddresses = new int[oldIds.length * 2];
+		int mask = cachedIds.length - 1;
+
+		for (int i=0; i < oldIds.length; i++) {
+			byte[] id = oldIds[i];
+			if (id == null) {
+				continue;
+			}
+			int hash = 1;
+			for (byte b : id) {
+				hash = 31 * hash + b;
+			}
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (cachedIds[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			cachedIds[slot] = id;
+			cachedAddresses[slot] = oldAddresses[i];
+		}
+	}
+
+	/**
+	 * Parses a host address from the bytes of a host ID: either only digits
+	 * or non-digits followed by digits
+	 * @throws SimError if the ID is not valid
+	 */
+	private int parseHostAddress(int start, int end) {
+		int digitsStart = end;
+		while (digitsStart > start && isDigit(window.get(digitsStart - 1))) {
+			digitsStart--;
+		}
+		boolean valid = digitsStart < end;
+		for (int i=start; valid && i < digitsStart; i++) {
+			valid = !isDigit(window.get(i));
+		}
+		if (!valid) {
+			throw new SimError("Invalid host ID '" + string(start, end) +
+					"'");
+		}
+
+		long address = 0;
+		for (int i=digitsStart; i < end; i++) {
+			address = address * 10 + (window.get(i) - '0');
+			if (address > Integer.MAX_VALUE) {
+				throw new NumberFormatException("For input string: \"" +
+						string(digitsStart, end) + "\"");
+			}
+		}
+		return (int)address;
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	public void close() {
+		this.window = null;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+}
@@ -33,6 +33,22 @@ public class MessageCreateEvent extends MessageEvent {
 	}
 
 	
+	/**
+	 * Returns the size of the message
+	 * @return The size of the message
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the requested response message
+	 * @return The response size or 0 if no response is requested
+	 */
+	public int getResponseSize() {
+		return this.responseSize;
+	}
+
 	/**
 	 * Creates the message this event represents. 
 	 */
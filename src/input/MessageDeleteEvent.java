@@ -31,6 +31,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		this.drop = drop;
 	}
 	
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return True for drops, false for "normal" removing
+	 */
+	public boolean isDrop() {
+		return this.drop;
+	}
+
 	/**
 	 * Deletes the message
 	 */
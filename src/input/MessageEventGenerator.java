@@ -220,6 +220,15 @@ public class MessageEventGenerator implements EventQueue {
 		return this.nextEventsTime;
 	}
 	
+	/**
+	 * Returns true: the next event's time changes only when an event is
+	 * taken
+	 * @see input.EventQueue#hasStableTime()
+	 */
+	public boolean hasStableTime() {
+		return true;
+	}
+	
 	/**
 	 * Returns a next free message ID
 	 * @return next globally unique message ID
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * Reads batches of input (e.g., events or movements) ahead of time in a
+ * background thread, so that parsing the input files overlaps with the
+ * simulation. The batches are read one after another by a single thread
+ * and handed out in the same order, so the simulation gets exactly the
+ * same input as without prefetching. At most the given number of batches
+ * (the lookahead) wait to be taken; then the background thread waits until
+ * a batch is taken. Errors of the background thread are thrown by
+ * {@link #next()} when the simulation gets to the failed batch.
+ *
+ * @param <T> Type of the batches
+ */
+public class Prefetcher<T> {
+	/** marker of the end of the batches in the queue */
+	private static final Object END = new Object();
+	/** the prefetchers whose threads may still be running */
+	private static List<Prefetcher<?>> running;
+
+	private BlockingQueue<Object> queue;
+	private Source<T> source;
+	private Thread thread;
+	private volatile boolean stopped;
+	private boolean ended;
+
+	static {
+		DTNSim.registerForReset(Prefetcher.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Source of the batches. Called only by the background thread.
+	 * @param <T> Type of the batches
+	 */
+	public interface Source<T> {
+		/**
+		 * Reads the next batch
+		 * @return The batch or null if there are no more batches
+		 */
+		public T read();
+	}
+
+	/**
+	 * Error that a batch was read with, passed to the simulation thread
+	 */
+	private static class Failure {
+		private Throwable cause;
+
+		private Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	/**
+	 * Creates a prefetcher (the background thread is started by
+	 * {@link #start(String, Source, int)})
+	 */
+	private Prefetcher(String name, Source<T> source, int lookahead) {
+		this.queue = new ArrayBlockingQueue<Object>(lookahead);
+		this.source = source;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				prefetch();
+			}
+		}, name);
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Creates a prefetcher and starts its background thread
+	 * @param name Name of the thread
+	 * @param source The source of the batches
+	 * @param lookahead Maximum number of batches read ahead (at least 1)
+	 * @return The started prefetcher
+	 */
+	public static <T> Prefetcher<T> start(String name, Source<T> source,
+			int lookahead) {
+		if (lookahead < 1) {
+			throw new SimError("Invalid prefetch lookahead " + lookahead);
+		}
+		Prefetcher<T> p = new Prefetcher<T>(name, source, lookahead);
+		synchronized (Prefetcher.class) {
+			running.add(p);
+		}
+		p.thread.start();
+		return p;
+	}
+
+	/**
+	 * Stops the background threads of all prefetchers
+	 */
+	public static synchronized void reset() {
+		if (running != null) {
+			for (Prefetcher<?> p : running) {
+				p.stop();
+			}
+		}
+		running = new ArrayList<Prefetcher<?>>();
+	}
+
+	/**
+	 * Reads batches to the queue until there are no more batches, reading
+	 * fails, or the prefetcher is stopped (run by the background thread)
+	 */
+	private void prefetch() {
+		try {
+			while (!stopped) {
+				T batch;
+				try {
+					batch = source.read();
+				} catch (RuntimeException | Error e) {
+					queue.put(new Failure(e));
+					return;
+				}
+				if (batch == null) {
+					queue.put(END);
+					return;
+				}
+				queue.put(batch);
+			}
+		} catch (InterruptedException e) {
+			// stopped while waiting for room in the queue
+		}
+	}
+
+	/**
+	 * Returns the next batch. Waits for the background thread if the batch
+	 * hasn't been read yet.
+	 * @return The next batch or null if there are no more batches
+	 */
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (ended) {
+			return null;
+		}
+
+		Object o;
+		try {
+			o = queue.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for input", e);
+		}
+
+		if (o == END || o instanceof Failure) {
+			ended = true;
+			synchronized (Prefetcher.class) {
+				running.remove(this);
+			}
+		}
+		if (o == END) {
+			return null;
+		}
+		if (o instanceof Failure) {
+			Throwable cause = ((Failure)o).cause;
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw (Error)cause;
+		}
+		return (T)o;
+	}
+
+	/**
+	 * Stops the background thread. No more batches are read, and the ones
+	 * read ahead are discarded.
+	 */
+	public void stop() {
+		this.stopped = true;
+		this.ended = true;
+		thread.interrupt();
+		queue.clear();
+	}
+}
@@ -52,6 +52,17 @@ public class ScheduledUpdatesQueue implements EventQueue {
 		return this.nextEvent.getTime();
 	}
 
+	/**
+	 * Returns the number of scheduled updates in the queue
+	 * @return the number of scheduled updates
+	 */
+	public int size() {
+		if (this.nextEvent.getTime() == Double.MAX_VALUE) {
+			return 0;
+		}
+		return this.updates.size() + 1;
+	}
+
 	/**
 	 * Add a new update request for the given time
 	 * @param simTime The time when the update should happen
@@ -7,6 +7,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.function.Consumer;
 
 import movement.MovementModel;
 
@@ -218,6 +219,74 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		return ni;
 	}
 
+	/**
+	 * Performs an action for all interfaces using the same technology and
+	 * channel that are in neighboring cells. The cells are read directly
+	 * from the grid, without the neighbor cell array and result list of
+	 * {@link #getNearInterfaces(NetworkInterface)}.
+	 */
+	@Override
+	public void forEachNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		if (!ginterfaces.containsKey(netinterf)) {
+			return;
+		}
+
+		Coord c = netinterf.getLocation();
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+		for (int i = row - 1; i <= row + 1; i++) {
+			GridCell[] cellRow = cells[i];
+			for (int j = col - 1; j <= col + 1; j++) {
+				forEachInCell(cellRow[j], action);
+			}
+		}
+	}
+
+
+	/**
+	 * Performs an action for the half stencil of an interface's
+	 * neighborhood: the interfaces after it in its own cell and all
+	 * interfaces in the next cell of the same row and in the three cells of
+	 * the next row. Every pair of interfaces in the same or neighboring
+	 * cells is visited from exactly one of the two.
+	 */
+	@Override
+	public void forEachHalfNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		GridCell own = ginterfaces.get(netinterf);
+		if (own == null) {
+			return;
+		}
+
+		ArrayList<NetworkInterface> list = own.interfaces;
+		for (int k = list.indexOf(netinterf) + 1, n = list.size(); k < n;
+				k++) {
+			action.accept(list.get(k));
+		}
+
+		Coord c = netinterf.getLocation();
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+		forEachInCell(cells[row][col + 1], action);
+		GridCell[] nextRow = cells[row + 1];
+		for (int j = col - 1; j <= col + 1; j++) {
+			forEachInCell(nextRow[j], action);
+		}
+	}
+
+	/**
+	 * Performs an action for all interfaces in a cell
+	 */
+	private void forEachInCell(GridCell cell,
+			Consumer<NetworkInterface> action) {
+		ArrayList<NetworkInterface> list = cell.interfaces;
+		for (int k=0, n = list.size(); k < n; k++) {
+			action.accept(list.get(k));
+		}
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
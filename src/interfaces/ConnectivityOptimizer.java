@@ -5,14 +5,67 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
+import core.DTNSim;
 import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
 abstract public class ConnectivityOptimizer {
+	/** type of the optimizers (value of the optimizer type setting) */
+	private static String type;
+
+	static {
+		DTNSim.registerForReset(ConnectivityOptimizer.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Reads the optimizer type setting
+	 * (see {@link World#CONNECTIVITY_OPTIMIZER_S})
+	 */
+	public static void reset() {
+		Settings s = new Settings(World.SETTINGS_NS);
+		type = World.DEF_CONNECTIVITY_OPTIMIZER;
+		if (s.contains(World.CONNECTIVITY_OPTIMIZER_S)) {
+			type = s.getSetting(World.CONNECTIVITY_OPTIMIZER_S);
+		}
+
+		if (!type.equals(World.GRID_OPTIMIZER) &&
+				!type.equals(World.SPATIAL_HASH_OPTIMIZER) &&
+				!type.equals(World.MULTI_RESOLUTION_OPTIMIZER)) {
+			throw new SettingsError("Unknown value (" + type + ") for " +
+					World.SETTINGS_NS + "." + World.CONNECTIVITY_OPTIMIZER_S);
+		}
+	}
+
+	/**
+	 * Returns the connectivity optimizer of the type selected with the
+	 * {@link World#CONNECTIVITY_OPTIMIZER_S} setting for the interfaces of
+	 * the given key
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter; multi-resolution grids size their cells
+	 * 	by the interfaces' ranges)
+	 * @return The optimizer for the interfaces of the key
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key,
+			double cellSize) {
+		if (type.equals(World.SPATIAL_HASH_OPTIMIZER)) {
+			return SpatialHashGrid.SpatialHashGridFactory(key, cellSize);
+		}
+		if (type.equals(World.MULTI_RESOLUTION_OPTIMIZER)) {
+			return MultiResolutionGrid.MultiResolutionGridFactory(key);
+		}
+		return ConnectivityGrid.ConnectivityGridFactory(key, cellSize);
+	}
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -40,6 +93,48 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Performs an action for all network interfaces that might be located so
+	 * that they can be connected with the network interface, in the same
+	 * order as {@link #getNearInterfaces(NetworkInterface)} returns them.
+	 * Unlike getNearInterfaces, the optimizers of this package do this
+	 * without creating any objects, so callers that reuse the same action
+	 * object scan their neighborhood without producing garbage. The action
+	 * must not add, remove or move interfaces of this optimizer.
+	 * This default implementation iterates the result of getNearInterfaces.
+	 *
+	 * @param ni network interface that needs to be connected
+	 * @param action The action to perform for each near interface
+	 */
+	public void forEachNear(NetworkInterface ni,
+			Consumer<NetworkInterface> action) {
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			action.accept(near);
+		}
+	}
+
+	/**
+	 * Performs an action for half of the near interfaces of a network
+	 * interface: when this is called for every interface of the optimizer,
+	 * every unordered pair of near interfaces is visited exactly once (from
+	 * one of its two interfaces). Like {@link #forEachNear}, the optimizers
+	 * of this package create no objects for this, and the action must not
+	 * add, remove or move interfaces. This default implementation visits the
+	 * near interfaces with a larger address than the interface's.
+	 *
+	 * @param ni network interface whose half of the neighborhood is visited
+	 * @param action The action to perform for each interface of the half
+	 */
+	public void forEachHalfNear(NetworkInterface ni,
+			Consumer<NetworkInterface> action) {
+		int address = ni.getAddress();
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			if (near.getAddress() > address) {
+				action.accept(near);
+			}
+		}
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
@@ -95,11 +93,35 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		forEachNearInRange(false, connectAction);
+
+		updateTransmitSpeed();
+	}
+
+	/**
+	 * Updates the state of current connections using the changes found by
+	 * the last connection scan and recalculates the transmission speed.
+	 */
+	@Override
+	public void updateScanned() {
+		applyScannedConnections();
+		updateTransmitSpeed();
+	}
 
+	/**
+	 * Recalculates the transmission speed, which depends on the ongoing
+	 * transmissions also when the connections stay the same.
+	 */
+	@Override
+	public void updateIdle() {
+		updateTransmitSpeed();
+	}
+
+	/**
+	 * Recalculates the current transmission speed from the number of ongoing
+	 * transmissions and updates the connections.
+	 */
+	private void updateTransmitSpeed() {
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
 		numberOfTransmissions = 0;
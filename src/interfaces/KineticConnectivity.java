@@ -0,0 +1,390 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * <P>Kinetic connectivity engine. Instead of checking every update interval
+ * which interfaces are within range of each other, this engine predicts the
+ * exact times when interfaces come within range and go out of range and
+ * creates connection up/down events for those times.</P>
+ *
+ * <P>Hosts move along straight lines between the waypoints of their paths
+ * at constant speeds, so the times when the distance of two hosts equals
+ * their radio range can be solved in closed form. A host's trajectory is
+ * known until it reaches its current waypoint (or, for a waiting host, until
+ * it starts moving again). The predictions of a host are recalculated only
+ * when its trajectory changes: when it gets a new waypoint, stops, starts
+ * moving or changes its activeness.</P>
+ *
+ * <P>The engine is an {@link EventQueue} whose events the world processes
+ * at their exact times. {@link #refresh()} must be called at the start of
+ * every update interval, before the events of the interval are processed.
+ * Scanning intervals and run-time radio range changes are not taken into
+ * account.</P>
+ */
+public class KineticConnectivity implements EventQueue {
+	/** all hosts, indexed by their addresses */
+	private List<DTNHost> hosts;
+	/** interfaces of each interface type */
+	private Map<String, List<NetworkInterface>> typeInterfaces;
+
+	/** trajectory start location and velocity of each host */
+	private double[] x0, y0, vx, vy;
+	/** sim time the trajectory of each host starts from */
+	private double[] t0;
+	/** sim time until the trajectory of each host is known */
+	private double[] validUntil;
+	/** trajectory version of each host (events of old versions are stale) */
+	private int[] version;
+	/** number of waypoints of each host when the trajectory was computed */
+	private int[] lastNrofWaypoints;
+	/** was each host moving when the trajectory was computed */
+	private boolean[] lastMoving;
+	/** was each host active when the trajectory was computed */
+	private boolean[] lastActive;
+	/** hosts whose trajectory changed in the current refresh */
+	private boolean[] dirty;
+	/** has the first refresh been done */
+	private boolean initialized;
+
+	/** predicted contact events */
+	private PriorityQueue<ContactEvent> events;
+	/** sequence number for ordering events with the same time */
+	private long nextSeq;
+
+	/**
+	 * Creates a kinetic connectivity engine for the given hosts
+	 * @param hosts The hosts (indexed by their addresses)
+	 */
+	public KineticConnectivity(List<DTNHost> hosts) {
+		int n = hosts.size();
+		this.hosts = hosts;
+		this.typeInterfaces = new HashMap<String, List<NetworkInterface>>();
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				List<NetworkInterface> list =
+					typeInterfaces.get(ni.getInterfaceType());
+				if (list == null) {
+					list = new ArrayList<NetworkInterface>();
+					typeInterfaces.put(ni.getInterfaceType(), list);
+				}
+				list.add(ni);
+			}
+		}
+
+		this.x0 = new double[n];
+		this.y0 = new double[n];
+		this.vx = new double[n];
+		this.vy = new double[n];
+		this.t0 = new double[n];
+		this.validUntil = new double[n];
+		this.version = new int[n];
+		this.lastNrofWaypoints = new int[n];
+		this.lastMoving = new boolean[n];
+		this.lastActive = new boolean[n];
+		this.dirty = new boolean[n];
+		this.events = new PriorityQueue<ContactEvent>();
+	}
+
+	/**
+	 * Recalculates the trajectories of the hosts whose trajectory has changed
+	 * or run out, and predicts new contact events for them.
+	 */
+	public void refresh() {
+		double now = SimClock.getTime();
+		List<DTNHost> changed = new ArrayList<DTNHost>();
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost h = hosts.get(i);
+			if (!initialized || hasChanged(h, now)) {
+				updateTrajectory(h, now);
+				dirty[i] = true;
+				changed.add(h);
+			}
+		}
+		initialized = true;
+
+		for (DTNHost h : changed) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				for (NetworkInterface other :
+						typeInterfaces.get(ni.getInterfaceType())) {
+					DTNHost oh = other.getHost();
+					if (oh == h || (dirty[oh.getAddress()] &&
+							oh.getAddress() < h.getAddress())) {
+						continue; // pair was already handled
+					}
+					predict(ni, other, now);
+				}
+			}
+		}
+		for (DTNHost h : changed) {
+			dirty[h.getAddress()] = false;
+		}
+	}
+
+	/**
+	 * Returns true if the trajectory of the host has changed (or run out)
+	 * since it was last calculated
+	 */
+	private boolean hasChanged(DTNHost h, double now) {
+		int i = h.getAddress();
+		return now >= validUntil[i] ||
+			h.getNrofWaypoints() != lastNrofWaypoints[i] ||
+			isMoving(h, now) != lastMoving[i] ||
+			h.isActive() != lastActive[i];
+	}
+
+	/**
+	 * Returns true if the host moves during the next update interval
+	 */
+	private boolean isMoving(DTNHost h, double now) {
+		return h.isActive() && h.getNextTimeToMove() <= now;
+	}
+
+	/**
+	 * Calculates the trajectory of a host from its current state
+	 */
+	private void updateTrajectory(DTNHost h, double now) {
+		int i = h.getAddress();
+		Coord loc = h.getLocation();
+		Coord dest = h.getDestination();
+		boolean moving = isMoving(h, now);
+
+		x0[i] = loc.getX();
+		y0[i] = loc.getY();
+		t0[i] = now;
+		vx[i] = 0;
+		vy[i] = 0;
+
+		if (!moving) {
+			validUntil[i] = h.isActive() ? h.getNextTimeToMove() :
+				Double.MAX_VALUE;
+		}
+		else if (dest == null) {
+			validUntil[i] = now; // next waypoint is not known yet
+		}
+		else {
+			double dist = loc.distance(dest);
+			double speed = h.getSpeed();
+			if (dist == 0) {
+				validUntil[i] = now;
+			}
+			else if (speed <= 0) {
+				validUntil[i] = Double.MAX_VALUE;
+			}
+			else {
+				vx[i] = (dest.getX() - loc.getX()) / dist * speed;
+				vy[i] = (dest.getY() - loc.getY()) / dist * speed;
+				validUntil[i] = now + dist / speed;
+			}
+		}
+
+		version[i]++;
+		lastNrofWaypoints[i] = h.getNrofWaypoints();
+		lastMoving[i] = moving;
+		lastActive[i] = h.isActive();
+	}
+
+	/**
+	 * Predicts the next connection state changes of two interfaces based on
+	 * their hosts' trajectories
+	 * @param a The first interface
+	 * @param b The second interface
+	 * @param now Current sim time
+	 */
+	private void predict(NetworkInterface a, NetworkInterface b, double now) {
+		int ia = a.getHost().getAddress();
+		int ib = b.getHost().getAddress();
+		double range = Math.min(a.getTransmitRange(), b.getTransmitRange());
+		double horizon = Math.min(validUntil[ia], validUntil[ib]);
+
+		/* relative location and velocity at the current time */
+		double dx = (x0[ib] + vx[ib] * (now - t0[ib])) -
+			(x0[ia] + vx[ia] * (now - t0[ia]));
+		double dy = (y0[ib] + vy[ib] * (now - t0[ib])) -
+			(y0[ia] + vy[ia] * (now - t0[ia]));
+		double dvx = vx[ib] - vx[ia];
+		double dvy = vy[ib] - vy[ia];
+
+		/* |d + dv*t|^2 = range^2  <=>  qa*t^2 + 2*qb*t + qc = 0 */
+		double qa = dvx * dvx + dvy * dvy;
+		double qb = dx * dvx + dy * dvy;
+		double qc = dx * dx + dy * dy - range * range;
+
+		boolean inRange = qc <= 0;
+		boolean bothActive = a.getHost().isActive() && b.getHost().isActive();
+		boolean connected = isConnected(a, b);
+
+		if (connected && (!inRange || !bothActive)) {
+			addEvent(a, b, false, now);
+			return;
+		}
+		if (!bothActive) {
+			return;
+		}
+		if (!connected && inRange) {
+			addEvent(a, b, true, now);
+		}
+
+		double disc = qb * qb - qa * qc;
+		if (qa == 0 || disc < 0) {
+			return; // relative position doesn't change or never in range
+		}
+		double sqrtDisc = Math.sqrt(disc);
+		double enter = now + (-qb - sqrtDisc) / qa;
+		double leave = now + (-qb + sqrtDisc) / qa;
+
+		if (!inRange && enter >= now && enter < horizon) {
+			addEvent(a, b, true, enter);
+		}
+		if (leave >= now && leave < horizon) {
+			addEvent(a, b, false, leave);
+		}
+	}
+
+	/**
+	 * Returns true if the two interfaces are connected to each other
+	 */
+	private static boolean isConnected(NetworkInterface a,
+			NetworkInterface b) {
+		for (Connection con : a.getConnections()) {
+			if (con.getOtherInterface(a) == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a new contact event for the current trajectories of the hosts
+	 */
+	private void addEvent(NetworkInterface a, NetworkInterface b, boolean up,
+			double time) {
+		events.add(new ContactEvent(a, b, up, time,
+				version[a.getHost().getAddress()],
+				version[b.getHost().getAddress()], nextSeq++));
+	}
+
+	/**
+	 * Removes the events whose hosts' trajectories have changed since the
+	 * event was predicted from the head of the queue
+	 */
+	private void removeStaleEvents() {
+		while (!events.isEmpty() && events.peek().isStale()) {
+			events.poll();
+		}
+	}
+
+	/**
+	 * Returns the next contact event or an event with time of
+	 * Double.MAX_VALUE if there are no events
+	 * @return The next contact event
+	 */
+	public ExternalEvent nextEvent() {
+		removeStaleEvents();
+		if (events.isEmpty()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return events.poll();
+	}
+
+	/**
+	 * Returns the time of the next contact event
+	 * @return The time of the next event or Double.MAX_VALUE if there are
+	 * no events
+	 */
+	public double nextEventsTime() {
+		removeStaleEvents();
+		if (events.isEmpty()) {
+			return Double.MAX_VALUE;
+		}
+		return events.peek().getTime();
+	}
+
+	/**
+	 * Returns the number of predicted events in the queue (including stale
+	 * events not removed yet)
+	 * @return The number of queued events
+	 */
+	public int getNrofQueuedEvents() {
+		return events.size();
+	}
+
+	/**
+	 * Predicted connection up or down event of two interfaces
+	 */
+	private class ContactEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+		private transient NetworkInterface a;
+		private transient NetworkInterface b;
+		private boolean up;
+		private int versionA;
+		private int versionB;
+		private long seq;
+
+		public ContactEvent(NetworkInterface a, NetworkInterface b,
+				boolean up, double time, int versionA, int versionB,
+				long seq) {
+			super(time);
+			this.a = a;
+			this.b = b;
+			this.up = up;
+			this.versionA = versionA;
+			this.versionB = versionB;
+			this.seq = seq;
+		}
+
+		/**
+		 * Returns true if either host's trajectory has changed after this
+		 * event was predicted
+		 */
+		public boolean isStale() {
+			return version[a.getHost().getAddress()] != versionA ||
+				version[b.getHost().getAddress()] != versionB;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			boolean connected = isConnected(a, b);
+			if (up && !connected) {
+				a.createConnection(b);
+			}
+			else if (!up && connected) {
+				a.destroyConnection(b);
+			}
+		}
+
+		@Override
+		public int compareTo(ExternalEvent other) {
+			int c = super.compareTo(other);
+			if (c == 0 && other instanceof ContactEvent) {
+				return Long.compare(seq, ((ContactEvent)other).seq);
+			}
+			return c;
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACT " + (up ? "up" : "down") + " @" + this.time +
+				" " + a.getHost() + "<->" + b.getHost();
+		}
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * <P>Connectivity optimizer for interfaces with different radio ranges. The
+ * interfaces are put in grid levels ({@link SpatialHashGrid}s) by their
+ * current range: the cell size of a level is a power of two and a level
+ * holds the interfaces whose range is larger than half of its cell size
+ * (the smallest level, whose cell count is limited, also the shorter
+ * ranges). Short range interfaces are thus in small cells instead of
+ * sharing the cells sized for the longest range.</P>
+ *
+ * <P>As two interfaces can only be connected within the smaller one of
+ * their ranges, an interface's near interfaces are looked up in each level
+ * only from the cells within its range, or within the level's cell size if
+ * that is smaller. If the range of an interface changes, the interface is
+ * moved to another level on its next location update.</P>
+ *
+ * <P>The levels keep count of the candidate interfaces they return, and
+ * their cell occupancy statistics are available with
+ * {@link #getLevelStats()} (see {@link report.GridOccupancyReport}).</P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class MultiResolutionGrid extends ConnectivityOptimizer {
+	/** value of the "no level" entries */
+	private static final int NONE = -1;
+	/** number of possible levels (cell sizes 2^0 - 2^30) */
+	private static final int MAX_LEVELS = 31;
+	/** largest number of cells in one level (limits the smallest cells) */
+	private static final long MAX_CELLS_PER_LEVEL = 1 << 20;
+	/** initial size of the address indexed array */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static int worldSizeX;
+	private static int worldSizeY;
+	static HashMap<Integer,MultiResolutionGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(MultiResolutionGrid.class.getCanonicalName());
+		reset();
+	}
+
+	/** the levels by the base 2 logarithm of their cell size */
+	private SpatialHashGrid[] levels;
+	/** number of candidate interfaces returned from each level (adders,
+	 * since the queries may be made concurrently by parallel connectivity
+	 * scans) */
+	private LongAdder[] candidates;
+	/** the smallest level whose number of cells isn't too large */
+	private int minLevel;
+	/** level of each interface by address (or NONE if not in the grid) */
+	private int[] levelOf;
+	/** number of near interface queries */
+	private LongAdder nrofQueries;
+	/** type of the interfaces in the grid (or null if it's still empty) */
+	private String interfaceType;
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer,MultiResolutionGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new multi-resolution grid without any levels
+	 */
+	private MultiResolutionGrid() {
+		this.levels = new SpatialHashGrid[MAX_LEVELS];
+		this.candidates = new LongAdder[MAX_LEVELS];
+		for (int i=0; i < MAX_LEVELS; i++) {
+			this.candidates[i] = new LongAdder();
+		}
+		this.nrofQueries = new LongAdder();
+		this.levelOf = new int[INITIAL_CAPACITY];
+		Arrays.fill(levelOf, NONE);
+
+		this.minLevel = 0;
+		while (nrofCells(1 << minLevel) > MAX_CELLS_PER_LEVEL) {
+			minLevel++;
+		}
+	}
+
+	/**
+	 * Returns a multi-resolution grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @return The multi-resolution grid object for a specific interface
+	 */
+	public static MultiResolutionGrid MultiResolutionGridFactory(int key) {
+		MultiResolutionGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new MultiResolutionGrid();
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Returns all multi-resolution grids created since the last reset
+	 * @return The grids
+	 */
+	public static Collection<MultiResolutionGrid> getGrids() {
+		return gridobjects.values();
+	}
+
+	/**
+	 * Returns the number of cells (including the border cells) that a level
+	 * with the given cell size would have
+	 */
+	private static long nrofCells(int cellSize) {
+		return (worldSizeX/cellSize + 3L) * (worldSizeY/cellSize + 3L);
+	}
+
+	/**
+	 * Returns the level for interfaces with the given range: the smallest
+	 * level whose cell size is at least the range
+	 * @param range The radio range
+	 * @return The level
+	 */
+	private int levelFor(double range) {
+		int size = (int)Math.ceil(range);
+		int level = size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+		return Math.min(Math.max(level, minLevel), MAX_LEVELS - 1);
+	}
+
+	/**
+	 * Returns the given level, creating it if it doesn't exist yet
+	 */
+	private SpatialHashGrid getLevel(int level) {
+		if (levels[level] == null) {
+			levels[level] = new SpatialHashGrid(1 << level);
+		}
+		return levels[level];
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int a = ni.getAddress();
+		if (a >= levelOf.length) {
+			int oldLength = levelOf.length;
+			levelOf = Arrays.copyOf(levelOf, Math.max(a + 1, oldLength * 2));
+			Arrays.fill(levelOf, oldLength, levelOf.length, NONE);
+		}
+		if (levelOf[a] != NONE) {
+			return;
+		}
+
+		int level = levelFor(ni.getTransmitRange());
+		getLevel(level).addInterface(ni);
+		levelOf[a] = level;
+		if (interfaceType == null) {
+			interfaceType = ni.getInterfaceType();
+		}
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int a = ni.getAddress();
+		if (a >= levelOf.length || levelOf[a] == NONE) {
+			return;
+		}
+		levels[levelOf[a]].removeInterface(ni);
+		levelOf[a] = NONE;
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's cell in its level, and
+	 * moves the interface to another level if its range has changed so that
+	 * it belongs there
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int a = ni.getAddress();
+		int level = levelFor(ni.getTransmitRange());
+		if (level == levelOf[a]) {
+			levels[level].updateLocation(ni);
+		}
+		else {
+			levels[levelOf[a]].removeInterface(ni);
+			getLevel(level).addInterface(ni);
+			levelOf[a] = level;
+		}
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (SpatialHashGrid level : levels) {
+			if (level != null) {
+				all.addAll(level.getAllInterfaces());
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are
+	 * in the cells within the interface's range in any level
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+		forEachNear(netinterf, near::add);
+		return near;
+	}
+
+	@Override
+	public void forEachNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		visitNear(netinterf, NONE, action);
+	}
+
+	/**
+	 * Performs an action for the near interfaces that have a larger address
+	 * than the interface. All levels' cells within the interface's range
+	 * include all the interfaces that are within range, so every pair of
+	 * interfaces within range is visited from the one with the smaller
+	 * address.
+	 */
+	@Override
+	public void forEachHalfNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		visitNear(netinterf, netinterf.getAddress(), action);
+	}
+
+	/**
+	 * Performs an action for the interfaces with a larger address than the
+	 * given one in each level's cells that are within the interface's range
+	 * (or the level's cell size, which is at least the range of the
+	 * interfaces in the level). Only the statistics adders are updated, so
+	 * the queries can be made concurrently (e.g., by parallel connectivity
+	 * scans).
+	 */
+	private void visitNear(NetworkInterface netinterf, int minAddress,
+			Consumer<NetworkInterface> action) {
+		int a = netinterf.getAddress();
+		if (a >= levelOf.length || levelOf[a] == NONE) {
+			return;
+		}
+
+		nrofQueries.increment();
+		Coord c = netinterf.getLocation();
+		double range = netinterf.getTransmitRange();
+		for (int i=0; i < MAX_LEVELS; i++) {
+			SpatialHashGrid level = levels[i];
+			if (level != null && level.getNrofInterfaces() > 0) {
+				double radius = Math.min(range, level.getCellSize());
+				candidates[i].add(level.forEachInSquare(c, radius, minAddress,
+						action));
+			}
+		}
+	}
+
+	/**
+	 * Returns the type of the interfaces in the grid
+	 * @return The interface type (or null if no interfaces were added)
+	 */
+	public String getInterfaceType() {
+		return this.interfaceType;
+	}
+
+	/**
+	 * Returns the number of near interface queries made to the grid
+	 * @return The number of queries
+	 */
+	public long getNrofQueries() {
+		return this.nrofQueries.sum();
+	}
+
+	/**
+	 * Returns the current occupancy statistics of the levels in use, from
+	 * the smallest cells to the largest
+	 * @return Statistics of the levels
+	 */
+	public List<LevelStats> getLevelStats() {
+		List<LevelStats> stats = new ArrayList<LevelStats>();
+		for (int i=0; i < MAX_LEVELS; i++) {
+			if (levels[i] != null) {
+				stats.add(new LevelStats(levels[i], candidates[i].sum()));
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of " + interfaceType +
+			" with levels " + getLevelStats();
+	}
+
+	/**
+	 * Cell occupancy statistics of one level of the grid
+	 */
+	public static class LevelStats {
+		private int cellSize;
+		private int nrofInterfaces;
+		private int occupiedCells;
+		private int maxPerCell;
+		private long candidates;
+
+		private LevelStats(SpatialHashGrid level, long candidates) {
+			this.cellSize = level.getCellSize();
+			this.nrofInterfaces = level.getNrofInterfaces();
+			this.occupiedCells = level.getNrofOccupiedCells();
+			this.maxPerCell = level.getMaxInterfacesPerCell();
+			this.candidates = candidates;
+		}
+
+		/** @return The length of the level's cells' edges */
+		public int getCellSize() {
+			return cellSize;
+		}
+
+		/** @return The number of interfaces in the level */
+		public int getNrofInterfaces() {
+			return nrofInterfaces;
+		}
+
+		/** @return The number of cells with at least one interface */
+		public int getNrofOccupiedCells() {
+			return occupiedCells;
+		}
+
+		/** @return The largest number of interfaces in a single cell */
+		public int getMaxInterfacesPerCell() {
+			return maxPerCell;
+		}
+
+		/** @return The number of interfaces in the occupied cells on
+		 * average */
+		public double getMeanInterfacesPerCell() {
+			return occupiedCells == 0 ? 0 :
+				(1.0 * nrofInterfaces) / occupiedCells;
+		}
+
+		/** @return How many candidate interfaces the level has returned
+		 * for the near interface queries */
+		public long getNrofCandidates() {
+			return candidates;
+		}
+
+		public String toString() {
+			return "cell size " + cellSize + ": " + nrofInterfaces +
+				" interfaces in " + occupiedCells + " cells";
+		}
+	}
+}
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
@@ -84,11 +82,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		forEachNearInRange(false, connectAction);
 	}
 
 	/** 
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * <P>Overlay grid like {@link ConnectivityGrid}, but stored in flat
+ * primitive arrays indexed by the interfaces' addresses. The cell of each
+ * interface is kept in an int array and the interfaces of each cell form an
+ * intrusive doubly linked list (int arrays of next and previous addresses),
+ * so moving an interface to another cell is a constant time unlink and
+ * append, without hash lookups or list scans.</P>
+ *
+ * <P>The interfaces of a cell are kept in the order they entered the cell,
+ * so the near interfaces are returned in the same order as from
+ * {@link ConnectivityGrid} and the simulation results are the same.</P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class SpatialHashGrid extends ConnectivityOptimizer {
+	/** value of the "no interface/cell" links */
+	private static final int NONE = -1;
+	/** initial size of the address indexed arrays */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static int worldSizeX;
+	private static int worldSizeY;
+	static HashMap<Integer,SpatialHashGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(SpatialHashGrid.class.getCanonicalName());
+		reset();
+	}
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	/** number of columns including the empty border columns */
+	private int stride;
+
+	/** first and last interface (address) of each cell */
+	private int[] head;
+	private int[] tail;
+	/** number of interfaces in each cell */
+	private int[] count;
+
+	/** interfaces by their addresses */
+	private NetworkInterface[] interfaces;
+	/** cell index of each interface (or NONE if not in the grid) */
+	private int[] cellOf;
+	/** next and previous interface (address) in the same cell */
+	private int[] next;
+	private int[] prev;
+	/** number of interfaces in the grid */
+	private int size;
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer,SpatialHashGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new spatial hash grid (that isn't shared with
+	 * {@link #SpatialHashGridFactory(int, double)})
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 */
+	SpatialHashGrid(int cellSize) {
+		this.cellSize = cellSize;
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		// leave empty cells on both sides to make neighbor search easier
+		this.stride = cols + 2;
+		int nrofCells = (rows + 2) * stride;
+
+		this.head = new int[nrofCells];
+		this.tail = new int[nrofCells];
+		this.count = new int[nrofCells];
+		Arrays.fill(head, NONE);
+		Arrays.fill(tail, NONE);
+
+		this.interfaces = new NetworkInterface[INITIAL_CAPACITY];
+		this.cellOf = new int[INITIAL_CAPACITY];
+		this.next = new int[INITIAL_CAPACITY];
+		this.prev = new int[INITIAL_CAPACITY];
+		Arrays.fill(cellOf, NONE);
+	}
+
+	/**
+	 * Returns a spatial hash grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 * @return The spatial hash grid object for a specific interface
+	 */
+	public static SpatialHashGrid SpatialHashGridFactory(int key,
+			double cellSize) {
+		SpatialHashGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new SpatialHashGrid((int)Math.ceil(cellSize));
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Makes sure the address indexed arrays can hold the given address
+	 */
+	private void ensureCapacity(int address) {
+		if (address < interfaces.length) {
+			return;
+		}
+		int newLength = Math.max(address + 1, interfaces.length * 2);
+		int oldLength = interfaces.length;
+		interfaces = Arrays.copyOf(interfaces, newLength);
+		cellOf = Arrays.copyOf(cellOf, newLength);
+		next = Arrays.copyOf(next, newLength);
+		prev = Arrays.copyOf(prev, newLength);
+		Arrays.fill(cellOf, oldLength, newLength, NONE);
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int a = ni.getAddress();
+		ensureCapacity(a);
+		if (cellOf[a] != NONE) {
+			return;
+		}
+		interfaces[a] = ni;
+		link(a, cellIndex(ni.getLocation()));
+		size++;
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int a = ni.getAddress();
+		if (a >= cellOf.length || cellOf[a] == NONE) {
+			return;
+		}
+		unlink(a);
+		interfaces[a] = null;
+		size--;
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's cell in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int a = ni.getAddress();
+		int cell = cellIndex(ni.getLocation());
+		if (cell != cellOf[a]) {
+			unlink(a);
+			link(a, cell);
+		}
+	}
+
+	/**
+	 * Appends an interface to the end of a cell's list
+	 */
+	private void link(int a, int cell) {
+		int last = tail[cell];
+		prev[a] = last;
+		next[a] = NONE;
+		if (last == NONE) {
+			head[cell] = a;
+		}
+		else {
+			next[last] = a;
+		}
+		tail[cell] = a;
+		cellOf[a] = cell;
+		count[cell]++;
+	}
+
+	/**
+	 * Removes an interface from its cell's list
+	 */
+	private void unlink(int a) {
+		int cell = cellOf[a];
+		if (prev[a] == NONE) {
+			head[cell] = next[a];
+		}
+		else {
+			next[prev[a]] = next[a];
+		}
+		if (next[a] == NONE) {
+			tail[cell] = prev[a];
+		}
+		else {
+			prev[next[a]] = prev[a];
+		}
+		cellOf[a] = NONE;
+		count[cell]--;
+	}
+
+	/**
+	 * Returns the index of the cell having the specific coordinates
+	 * @param c Coordinates
+	 * @return The cell index
+	 */
+	private int cellIndex(Coord c) {
+		// +1 due empty cells on both sides of the grid
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
+		c + " is out of world's bounds";
+
+		return row * stride + col;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		ArrayList<NetworkInterface> all = new ArrayList<NetworkInterface>(size);
+		for (int a=0; a < interfaces.length; a++) {
+			if (cellOf[a] != NONE) {
+				all.add(interfaces[a]);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are in
+	 * neighboring cells
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		int a = netinterf.getAddress();
+		if (a >= cellOf.length || cellOf[a] == NONE) {
+			return new ArrayList<NetworkInterface>(0);
+		}
+
+		int center = cellIndex(netinterf.getLocation());
+		int total = 0;
+		for (int r = center - stride; r <= center + stride; r += stride) {
+			total += count[r - 1] + count[r] + count[r + 1];
+		}
+
+		ArrayList<NetworkInterface> near =
+			new ArrayList<NetworkInterface>(total);
+		for (int r = center - stride; r <= center + stride; r += stride) {
+			for (int cell = r - 1; cell <= r + 1; cell++) {
+				for (int i = head[cell]; i != NONE; i = next[i]) {
+					near.add(interfaces[i]);
+				}
+			}
+		}
+		return near;
+	}
+
+	/**
+	 * Performs an action for all interfaces using the same technology and
+	 * channel that are in neighboring cells by walking the cells' lists
+	 */
+	@Override
+	public void forEachNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		int a = netinterf.getAddress();
+		if (a >= cellOf.length || cellOf[a] == NONE) {
+			return;
+		}
+
+		int center = cellIndex(netinterf.getLocation());
+		for (int r = center - stride; r <= center + stride; r += stride) {
+			for (int cell = r - 1; cell <= r + 1; cell++) {
+				for (int i = head[cell]; i != NONE; i = next[i]) {
+					action.accept(interfaces[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Performs an action for the half stencil of an interface's
+	 * neighborhood: the interfaces after it in its own cell and all
+	 * interfaces in the next cell of the same row and in the three cells of
+	 * the next row. Every pair of interfaces in the same or neighboring
+	 * cells is visited from exactly one of the two.
+	 */
+	@Override
+	public void forEachHalfNear(NetworkInterface netinterf,
+			Consumer<NetworkInterface> action) {
+		int a = netinterf.getAddress();
+		if (a >= cellOf.length || cellOf[a] == NONE) {
+			return;
+		}
+
+		int cell = cellOf[a];
+		for (int i = next[a]; i != NONE; i = next[i]) {
+			action.accept(interfaces[i]);
+		}
+		for (int i = head[cell + 1]; i != NONE; i = next[i]) {
+			action.accept(interfaces[i]);
+		}
+		for (int c = cell + stride - 1; c <= cell + stride + 1; c++) {
+			for (int i = head[c]; i != NONE; i = next[i]) {
+				action.accept(interfaces[i]);
+			}
+		}
+	}
+
+	/**
+	 * Performs an action for the interfaces in the cells that overlap a
+	 * square around the given location
+	 * @param c Center of the square
+	 * @param radius Half of the square's edge's length (at most the cell
+	 * size, so that at most 3x3 cells are visited)
+	 * @param minAddress Only interfaces with a larger address are visited
+	 * @param action The action to perform for each interface
+	 * @return How many interfaces were visited
+	 */
+	int forEachInSquare(Coord c, double radius, int minAddress,
+			Consumer<NetworkInterface> action) {
+		assert radius <= cellSize : "Radius " + radius + " > cell size";
+		// cells left or above the world are empty border cells
+		int firstRow = (int)((c.getY() - radius)/cellSize) + 1;
+		int lastRow = (int)((c.getY() + radius)/cellSize) + 1;
+		int firstCol = (int)((c.getX() - radius)/cellSize) + 1;
+		int lastCol = (int)((c.getX() + radius)/cellSize) + 1;
+
+		int visited = 0;
+		for (int r = firstRow * stride; r <= lastRow * stride; r += stride) {
+			for (int cell = r + firstCol; cell <= r + lastCol; cell++) {
+				for (int i = head[cell]; i != NONE; i = next[i]) {
+					if (i > minAddress) {
+						action.accept(interfaces[i]);
+						visited++;
+					}
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Returns the length of the cells' edges
+	 * @return The cell size
+	 */
+	public int getCellSize() {
+		return this.cellSize;
+	}
+
+	/**
+	 * Returns the number of interfaces in the grid
+	 * @return The number of interfaces
+	 */
+	public int getNrofInterfaces() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of cells that have at least one interface
+	 * @return The number of occupied cells
+	 */
+	public int getNrofOccupiedCells() {
+		int occupied = 0;
+		for (int n : count) {
+			if (n > 0) {
+				occupied++;
+			}
+		}
+		return occupied;
+	}
+
+	/**
+	 * Returns the largest number of interfaces in a single cell
+	 * @return The largest cell's interface count
+	 */
+	public int getMaxInterfacesPerCell() {
+		int max = 0;
+		for (int n : count) {
+			max = Math.max(max, n);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
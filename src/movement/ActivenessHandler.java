@@ -70,10 +70,12 @@ public class ActivenessHandler {
 	}
 	
 	/**
-	 * Returns true if node should be active at the moment
+	 * Returns true if node should be active at the moment. Synchronized
+	 * because the handler is shared by all nodes of a group, which may be
+	 * moved concurrently.
 	 * @return true if node should be active at the moment
 	 */
-	public boolean isActive() {
+	public synchronized boolean isActive() {
 		if (this.activeTimes == null) {
 			return true; // no inactive times 
 		}
@@ -94,6 +96,22 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the sim time when the activeness may change next
+	 * @return The time of the next activeness change or
+	 * {@link Double#MAX_VALUE} if activeness doesn't change anymore
+	 */
+	public synchronized double nextChange() {
+		if (this.activeTimes == null || curRange == null) {
+			return Double.MAX_VALUE;
+		}
+
+		if (SimClock.getTime() < curRange.start) {
+			return curRange.start;
+		}
+		return curRange.end;
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
@@ -1,5 +1,7 @@
 package movement;
 
+import java.io.Serializable;
+
 import core.Coord;
 import core.Settings;
 
@@ -127,4 +129,24 @@ public class BrownianMotion extends MovementModel {
 	protected Coord randomCoord() {
 		return new Coord(rng.nextDouble() * getMaxX(), rng.nextDouble() * getMaxY());
 	}
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		return this.location;
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		this.location = (Coord)state;
+	}
 }
@@ -86,4 +86,20 @@ public class BusMovement extends MapRouteMovement {
 		return id;
 	}
 	
+
+	/**
+	 * Returns false; this model shares the bus control system with other nodes.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns false; the bus control system's state isn't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
@@ -354,4 +354,29 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		nextID = 0;
 	}
 	
+
+	/**
+	 * Returns false; this model shares the bus control system with other nodes.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns {@link Double#MAX_VALUE}; travellers move at the speed of
+	 * the bus they are riding.
+	 */
+	@Override
+	public double getMaxSpeed() {
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns false; the bus control system's state isn't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
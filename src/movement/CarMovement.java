@@ -77,4 +77,20 @@ public class CarMovement extends MapBasedMovement implements
 	public boolean isReady() {
 		return true;
 	}
+
+	/**
+	 * Returns false; this model shares the path finder with other instances.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns false; the trip's end points aren't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
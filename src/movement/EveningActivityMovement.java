@@ -296,4 +296,20 @@ public class EveningActivityMovement extends MapBasedMovement
 		this.maxGroupSize = maxGroupSize;
 	}
 	
+
+	/**
+	 * Returns false; this model shares the evening activity control system with other nodes.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns false; the trip and control system states aren't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
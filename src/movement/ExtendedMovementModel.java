@@ -89,4 +89,12 @@ public abstract class ExtendedMovementModel extends MovementModel {
 	 */
 	public abstract boolean newOrders();
 	
+
+	/**
+	 * Returns {@link Double#MAX_VALUE}; the sub-models may use any speed.
+	 */
+	@Override
+	public double getMaxSpeed() {
+		return Double.MAX_VALUE;
+	}
 }
@@ -5,7 +5,9 @@
 package movement;
 
 import input.ExternalMovementReader;
+import input.Prefetcher;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Queue;
 import core.Coord;
 import core.DTNSim;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.Tuple;
 
@@ -28,10 +31,18 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** number of time instances to read ahead in a background thread
+	 * -setting id ({@value}). Default is 0 (no background reading). */
+	public static final String NROF_PREFETCH_S = "nrofPrefetch";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** background reader of the time instances or null */
+	private static Prefetcher<Tuple<Double, List<Tuple<String, Coord>>>>
+		prefetcher;
+	/** time stamp of the latest read time instance */
+	private static double lastReadTime;
 	private static String inputFileName;
 	
 	/** mapping of external id to movement model */
@@ -95,6 +106,16 @@ public class ExternalMovement extends MovementModel {
 					nrofPreload = 1;
 				}
 			}
+			if (s.contains(NROF_PREFETCH_S)) {
+				int nrofPrefetch = s.getInt(NROF_PREFETCH_S);
+				if (nrofPrefetch < 0) {
+					throw new SettingsError("Negative value (" + nrofPrefetch +
+							") for " + s.getFullPropertyName(NROF_PREFETCH_S));
+				}
+				if (nrofPrefetch > 0) {
+					startPrefetching(nrofPrefetch);
+				}
+			}
 		}
 	}
 	
@@ -154,6 +175,22 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	/**
+	 * Returns the current time; activeness is defined by the trace file.
+	 */
+	@Override
+	public double nextActivenessChange() {
+		return SimClock.getTime();
+	}
+
+	/**
+	 * Returns {@link Double#MAX_VALUE}; speeds are defined by the trace file.
+	 */
+	@Override
+	public double getMaxSpeed() {
+		return Double.MAX_VALUE;
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
@@ -237,14 +274,54 @@ public class ExternalMovement extends MovementModel {
 		return new ExternalMovement(this);
 	}
 	
+	/**
+	 * Starts reading the time instances in a background thread
+	 * @param lookahead How many time instances to read ahead
+	 */
+	private static void startPrefetching(int lookahead) {
+		final ExternalMovementReader source = reader;
+		prefetcher = Prefetcher.start("Prefetch " + inputFileName,
+				new Prefetcher.Source<Tuple<Double,
+					List<Tuple<String, Coord>>>>() {
+			public Tuple<Double, List<Tuple<String, Coord>>> read() {
+				List<Tuple<String, Coord>> list = source.readNextMovements();
+				if (list.size() == 0) {
+					return null;
+				}
+				return new Tuple<Double, List<Tuple<String, Coord>>>(
+						source.getLastTimeStamp(), list);
+			}
+		}, lookahead);
+	}
+
+	/**
+	 * Reads the movements of the next time instance, from the background
+	 * reader if prefetching is on
+	 * @return The movements or an empty list if there are no more movements
+	 */
+	private static List<Tuple<String, Coord>> readNextMovements() {
+		if (prefetcher == null) {
+			List<Tuple<String, Coord>> list = reader.readNextMovements();
+			lastReadTime = reader.getLastTimeStamp();
+			return list;
+		}
+
+		Tuple<Double, List<Tuple<String, Coord>>> next = prefetcher.next();
+		if (next == null) {
+			return new ArrayList<Tuple<String, Coord>>(0);
+		}
+		lastReadTime = next.getKey();
+		return next.getValue();
+	}
+
 	/**
 	 * Reads paths for the next time instance from the reader
 	 * @return The time stamp of the reading or Double.NaN if no movements
 	 * were read.
 	 */
 	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		List<Tuple<String, Coord>> list = readNextMovements();
+		double time = lastReadTime;
 		
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -271,6 +348,7 @@ public class ExternalMovement extends MovementModel {
 	 */
 	public static void reset() {
 		idMapping = null;
+		prefetcher = null;
 	}
 
 }
@@ -246,4 +246,19 @@ public class HomeActivityMovement extends MapBasedMovement
 		return homeLocation.clone();
 	}
 
+	/**
+	 * Returns false; this model shares the path finder with other instances.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns false; the activity state isn't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
@@ -1,5 +1,7 @@
 package movement;
 
+import java.io.Serializable;
+
 import core.Coord;
 import core.Settings;
 
@@ -101,4 +103,24 @@ public class LevyFlight extends MovementModel {
 		double u = 1 - rng.nextDouble(); // Ensures u is in (0, 1]
 		return this.xm / Math.pow(u, 1 / this.alpha);
 	}
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		return this.lastWaypoint;
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		this.lastWaypoint = (Coord)state;
+	}
 }
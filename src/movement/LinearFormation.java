@@ -113,4 +113,13 @@ public class LinearFormation extends MovementModel {
 		return new LinearFormation(this);
 	}
 
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
 }
@@ -8,6 +8,7 @@ import input.WKTMapReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -429,4 +430,25 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return true;
 	}
 	
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		return getLastLocation();
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		this.lastMapNode = (state == null ? null :
+			getMap().getNodeByCoord((Coord)state));
+	}
 }
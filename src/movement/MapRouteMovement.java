@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.List;
 
 import core.SettingsError;
@@ -102,6 +103,16 @@ public class MapRouteMovement extends MapBasedMovement implements
 		}
 	}
 
+	/**
+	 * Also gives this instance a path finder of its own so that instances
+	 * with host-specific rngs don't share any mutable state.
+	 */
+	@Override
+	public void setHostRng(int address) {
+		super.setHostRng(address);
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+	}
+	
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -156,4 +167,41 @@ public class MapRouteMovement extends MapBasedMovement implements
 	public List<MapNode> getStops() {
 		return route.getStops();
 	}
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		RouteState state = new RouteState();
+		state.lastLocation = getLastLocation();
+		state.nextIndex = route.getNextIndex();
+		state.comingBack = route.isComingBack();
+		return state;
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		RouteState rs = (RouteState)state;
+		super.restoreSnapshotState(rs.lastLocation);
+		route.setNextIndex(rs.nextIndex);
+		route.setComingBack(rs.comingBack);
+	}
+
+	/**
+	 * Position of a host on its route in a warmup snapshot
+	 */
+	private static class RouteState implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private Coord lastLocation;
+		private int nextIndex;
+		private boolean comingBack;
+	}
 }
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.Coord;
@@ -43,7 +44,13 @@ public abstract class MovementModel {
 	public static final String RNG_SEED = "rngSeed";
 	
 	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	private static Random sharedRng;
+	/** seed of the common rng (also the base of the per-host rngs) */
+	private static long rngSeed;
+	
+	/** rng of this movement model; the common rng unless the model was given
+	 * a per-host stream with {@link #setHostRng(int)} */
+	protected Random rng;
 	
 	private ActivenessHandler ah;
 		
@@ -87,6 +94,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = sharedRng;
 	}
 	
 	/**
@@ -97,6 +105,7 @@ public abstract class MovementModel {
 		double[] speeds;
 		double[] times;
 		
+		this.rng = sharedRng;
 		ah = new ActivenessHandler(settings);
 		
 		if (settings.contains(SPEED)) {
@@ -143,6 +152,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = mm.rng;
 	}
 		
 	/**
@@ -211,6 +221,28 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 		
+	/**
+	 * Returns the sim time when this node's activeness may change next
+	 * (or {@link Double#MAX_VALUE} if it never changes).
+	 * @return The time of the next possible activeness change
+	 */
+	public double nextActivenessChange() {
+		if (ah == null) {
+			return Double.MAX_VALUE;
+		}
+		return ah.nextChange();
+	}
+	
+	/**
+	 * Returns the highest speed the paths of this model can have. Models
+	 * whose paths can be faster than the {@link #SPEED} setting allows must
+	 * override this.
+	 * @return The maximum speed of this model's paths
+	 */
+	public double getMaxSpeed() {
+		return this.maxSpeed;
+	}
+	
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
@@ -220,6 +252,122 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 	
+	/**
+	 * Returns true if {@link #getPath()}, {@link #nextPathAvailable()} and
+	 * {@link #isActive()} of this model only touch the model instance's own
+	 * state (and the model's own rng), i.e., if instances of this model can
+	 * be moved concurrently from different threads. This implementation
+	 * returns false; models that share state between instances (e.g., control
+	 * systems or external traces) must not override it.
+	 * @return true if the model can be moved in parallel with other hosts
+	 */
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+	
+	/**
+	 * Gives this movement model a random number generator of its own. The
+	 * generator is seeded from {@link #RNG_SEED} and the given host address
+	 * so the random stream of a host does not depend on the order in which
+	 * hosts are moved.
+	 * @param address Network address of the host this model moves
+	 */
+	public void setHostRng(int address) {
+		this.rng = new Random(hostSeed(rngSeed, address));
+	}
+	
+	/**
+	 * Mixes a simulation seed and a host address to the seed of the host's
+	 * random stream. Random uses only the low 48 bits of its seed and the
+	 * first values of nearby seeds are nearly the same, so the seed and the
+	 * address are hashed (with the SplitMix64 finalizer) so that every bit
+	 * of them affects every bit of the result.
+	 * @param seed The simulation seed
+	 * @param address The host address
+	 * @return The seed for the host
+	 */
+	private static long hostSeed(long seed, int address) {
+		return mix64(mix64(seed) + (address + 1L) * 0x9E3779B97F4A7C15L);
+	}
+	
+	/**
+	 * Returns the SplitMix64 hash of a value
+	 * @param z The value
+	 * @return The hash
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Returns the random number generator of this model if the model has
+	 * one of its own (see {@link #setHostRng(int)})
+	 * @return The model's own rng or null if the model uses the common rng
+	 */
+	public Random getOwnRng() {
+		return this.rng == sharedRng ? null : this.rng;
+	}
+	
+	/**
+	 * Replaces the random number generator of this model (e.g., with one
+	 * restored from a warmup snapshot)
+	 * @param rng The model's own rng or null to use the common rng
+	 */
+	public void setOwnRng(Random rng) {
+		this.rng = (rng == null ? sharedRng : rng);
+	}
+	
+	/**
+	 * Returns true if the state of this model can be saved to, and restored
+	 * from, a warmup snapshot using {@link #getSnapshotState()} and
+	 * {@link #restoreSnapshotState(Serializable)}. The state of the model's
+	 * host (location, path etc.) and of the rngs is saved separately, as is
+	 * all state the model gets when it is created and placed. This
+	 * implementation returns false.
+	 * @return true if the model supports warmup snapshots
+	 */
+	public boolean supportsSnapshots() {
+		return false;
+	}
+	
+	/**
+	 * Returns the state of this model that affects the paths it gives next
+	 * (e.g., the last waypoint). This implementation returns null (no
+	 * state).
+	 * @return The state of the model
+	 */
+	public Serializable getSnapshotState() {
+		return null;
+	}
+	
+	/**
+	 * Restores the state returned by {@link #getSnapshotState()}. Called after
+	 * the model's rng has been restored. This implementation does nothing.
+	 * @param state The state to restore
+	 */
+	public void restoreSnapshotState(Serializable state) {
+	}
+	
+	/**
+	 * Returns the common random number generator of all movement models
+	 * @return The common rng
+	 */
+	public static Random getSharedRng() {
+		return sharedRng;
+	}
+	
+	/**
+	 * Replaces the common random number generator of all movement models.
+	 * Models already using the common rng must be given the new one with
+	 * {@link #setOwnRng(Random)}.
+	 * @param rng The new common rng
+	 */
+	public static void setSharedRng(Random rng) {
+		sharedRng = rng;
+	}
+	
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -256,12 +404,12 @@ public abstract class MovementModel {
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rngSeed = s.getInt(RNG_SEED);
 		}
 		else {
-			rng = new Random(0);
+			rngSeed = 0;
 		}
+		sharedRng = new Random(rngSeed);
 	}
 	
 }
@@ -282,4 +282,19 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		return officeLocation.clone();
 	}
 
+	/**
+	 * Returns false; this model shares the Pareto RNG with other instances.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+
+	/**
+	 * Returns false; the working day state isn't saved.
+	 */
+	@Override
+	public boolean supportsSnapshots() {
+		return false;
+	}
 }
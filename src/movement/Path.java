@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,11 +13,12 @@ import core.Coord;
 /**
  * A Path between multiple Coordinates.
  */
-public class Path  {
+public class Path implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** coordinates of the path */
-	private List<Coord> coords;
+	private ArrayList<Coord> coords;
 	/** speeds in the path legs */
-	private List<Double> speeds;
+	private ArrayList<Double> speeds;
 	/** Storing the index of the next waypoint coordinate */
 	private int nextWpIndex;
 
@@ -36,8 +38,8 @@ public class Path  {
 	 */
 	public Path(Path path) {
 		this.nextWpIndex = path.nextWpIndex;
-		this.coords = new ArrayList<Coord>((ArrayList<Coord>)path.coords);
-		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
+		this.coords = new ArrayList<Coord>(path.coords);
+		this.speeds = new ArrayList<Double>(path.speeds);
 	}
 	
 	/**
@@ -4,6 +4,8 @@
  */
 package movement;
 
+import java.io.Serializable;
+
 import core.Coord;
 import core.Settings;
 
@@ -92,4 +94,24 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 	public boolean isReady() {
 		return true;
 	}
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		return this.lastWaypoint;
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		this.lastWaypoint = (Coord)state;
+	}
 }
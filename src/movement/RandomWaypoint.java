@@ -4,6 +4,8 @@
  */
 package movement;
 
+import java.io.Serializable;
+
 import core.Coord;
 import core.Settings;
 
@@ -62,4 +64,24 @@ public class RandomWaypoint extends MovementModel {
 		return new Coord(rng.nextDouble() * getMaxX(),
 				rng.nextDouble() * getMaxY());
 	}
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	public Serializable getSnapshotState() {
+		return this.lastWaypoint;
+	}
+
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		this.lastWaypoint = (Coord)state;
+	}
 }
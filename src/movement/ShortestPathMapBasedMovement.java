@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.List;
 
 import movement.map.DijkstraPathFinder;
@@ -45,6 +46,17 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		this.pois = mbm.pois;
 	}
 	
+	/**
+	 * Also gives this instance path finder and POI selector of its own so
+	 * that instances with host-specific rngs don't share any mutable state.
+	 */
+	@Override
+	public void setHostRng(int address) {
+		super.setHostRng(address);
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pois = new PointsOfInterest(this.pois, rng);
+	}
+	
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -70,4 +82,9 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		return new ShortestPathMapBasedMovement(this);
 	}
 
+	@Override
+	public void restoreSnapshotState(Serializable state) {
+		super.restoreSnapshotState(state);
+		this.pois = new PointsOfInterest(this.pois, rng);
+	}
 }
@@ -67,4 +67,13 @@ public class StationaryMovement extends MovementModel {
 		return new StationaryMovement(this);
 	}
 
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
 }
@@ -49,4 +49,14 @@ public abstract class StationaryNodes extends MovementModel {
 	}
 
 	public abstract StationaryNodes replicate();
+
+	@Override
+	public boolean supportsParallelMovement() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsSnapshots() {
+		return true;
+	}
 }
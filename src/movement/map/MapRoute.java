@@ -59,6 +59,30 @@ public class MapRoute {
 		this.index = index;
 	}
 	
+	/**
+	 * Returns the index of the next stop on this route
+	 * @return the index of the next stop
+	 */
+	public int getNextIndex() {
+		return this.index;
+	}
+	
+	/**
+	 * Returns true if a ping-pong route is currently traversed backwards
+	 * @return true if the route is traversed backwards
+	 */
+	public boolean isComingBack() {
+		return this.comingBack;
+	}
+	
+	/**
+	 * Sets the direction a ping-pong route is traversed
+	 * @param comingBack True if the route is traversed backwards
+	 */
+	public void setComingBack(boolean comingBack) {
+		this.comingBack = comingBack;
+	}
+	
 	/**
 	 * Returns the number of stops on this route
 	 * @return the number of stops on this route
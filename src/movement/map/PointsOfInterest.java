@@ -66,6 +66,20 @@ public class PointsOfInterest {
 		readPois(settings);
 	}
 	
+	/**
+	 * Copy constructor. The POI lists and probabilities are shared with the
+	 * prototype but destinations are drawn from the given rng.
+	 * @param proto The PointsOfInterest prototype
+	 * @param rng The random number generator to use
+	 */
+	public PointsOfInterest(PointsOfInterest proto, Random rng) {
+		this.poiLists = proto.poiLists;
+		this.poiProbs = proto.poiProbs;
+		this.map = proto.map;
+		this.okMapNodeTypes = proto.okMapNodeTypes;
+		this.rng = rng;
+	}
+	
 	/**
 	 * Selects a random destination from POIs or all MapNodes. Selecting among
 	 * POI groups is done by their probabilities. If sum of their probabilities
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.ContactTraceQueue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimError;
+
+/**
+ * Records all connection up and down events (time, hosts and interface
+ * type) to a binary contact trace that {@link ContactTraceQueue} can
+ * replay in later simulations. Unlike the text reports, the trace is not
+ * a CSV file: unless an output file is set, the file name ends with
+ * {@value ContactTraceQueue#TRACE_EXT}. The events are buffered and
+ * written one block of columns at a time (see {@link ContactTraceQueue}
+ * for the format). Connections during the warm up period are recorded too,
+ * so that a replay has the same connections as the recorded run.
+ */
+public class ContactTraceReport extends Report implements ConnectionListener {
+	private DataOutputStream traceOut;
+	/** file offset of the next block */
+	private long offset;
+	/** interface types by their index in the trace */
+	private List<String> interfaceTypes;
+	/** the connections whose up event has been recorded and that are up */
+	private Set<Connection> upConnections;
+
+	/** the buffered events of the next block */
+	private double[] times;
+	private int[] froms;
+	private int[] tos;
+	private byte[] flags;
+	private int nrofBuffered;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactTraceReport() {
+		this.interfaceTypes = new ArrayList<String>();
+		this.upConnections = new HashSet<Connection>();
+		this.times = new double[ContactTraceQueue.MAX_BLOCK_SIZE];
+		this.froms = new int[ContactTraceQueue.MAX_BLOCK_SIZE];
+		this.tos = new int[ContactTraceQueue.MAX_BLOCK_SIZE];
+		this.flags = new byte[ContactTraceQueue.MAX_BLOCK_SIZE];
+	}
+
+	public void hostsConnected(DTNHost h1, DTNHost h2) {
+		addEvent(h1, h2, true);
+	}
+
+	public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+		addEvent(h1, h2, false);
+	}
+
+	/**
+	 * Adds an event to the next block and writes the block if it is full
+	 * @param from Host the (dis)connection is from
+	 * @param to Host the (dis)connection is to
+	 * @param up Is this a connection up event
+	 */
+	private void addEvent(DTNHost from, DTNHost to, boolean up) {
+		int flag = interfaceIndex(from, to, up);
+		if (up) {
+			flag |= ContactTraceQueue.UP_FLAG;
+		}
+
+		times[nrofBuffered] = getSimTime();
+		froms[nrofBuffered] = from.getAddress();
+		tos[nrofBuffered] = to.getAddress();
+		flags[nrofBuffered] = (byte)flag;
+		nrofBuffered++;
+
+		if (nrofBuffered == ContactTraceQueue.MAX_BLOCK_SIZE) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Returns the trace's index of the type of the interface whose
+	 * connection between the hosts has just come up or gone down. The
+	 * listeners are informed while the connection is still in the
+	 * interface's connections. The hosts may already be connected through
+	 * other interfaces, so a new connection is the up connection whose up
+	 * event hasn't been recorded yet.
+	 * @return The index or {@link ContactTraceQueue#NO_INTERFACE} if the
+	 * connection wasn't found
+	 */
+	private int interfaceIndex(DTNHost from, DTNHost to, boolean up) {
+		for (NetworkInterface ni : from.getInterfaces()) {
+			for (Connection con : ni.getConnections()) {
+				if (con.isUp() != up || con.getOtherNode(from) != to) {
+					continue;
+				}
+				if (!up) { /* only the connection going down is down */
+					upConnections.remove(con);
+					return typeIndex(ni.getInterfaceType());
+				}
+				if (upConnections.add(con)) {
+					return typeIndex(ni.getInterfaceType());
+				}
+			}
+		}
+		return ContactTraceQueue.NO_INTERFACE;
+	}
+
+	/**
+	 * Returns the index of an interface type, adding the type to the table
+	 * if it is new
+	 */
+	private int typeIndex(String type) {
+		int index = interfaceTypes.indexOf(type);
+		if (index >= 0) {
+			return index;
+		}
+		if (interfaceTypes.size() == ContactTraceQueue.NO_INTERFACE) {
+			throw new SimError("Too many interface types for a contact " +
+					"trace");
+		}
+		interfaceTypes.add(type);
+		return interfaceTypes.size() - 1;
+	}
+
+	/**
+	 * Returns the name of the trace file
+	 */
+	private String traceFileName() {
+		String name = getOutFileName();
+		if (!getSettings().contains(OUTPUT_SETTING) &&
+				name.endsWith(OUT_SUFFIX)) {
+			name = name.substring(0, name.length() - OUT_SUFFIX.length()) +
+				ContactTraceQueue.TRACE_EXT;
+		}
+		return name;
+	}
+
+	/**
+	 * Opens the trace file and writes the header (unless already open)
+	 */
+	private void open() throws IOException {
+		if (traceOut != null) {
+			return;
+		}
+		traceOut = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(traceFileName())));
+		traceOut.writeInt(ContactTraceQueue.MAGIC);
+		traceOut.writeInt(ContactTraceQueue.VERSION);
+		offset = ContactTraceQueue.HEADER_SIZE;
+	}
+
+	/**
+	 * Writes the buffered events as a block
+	 */
+	private void writeBlock() {
+		try {
+			open();
+			int n = nrofBuffered;
+			traceOut.writeInt(n);
+			for (int i=0; i < n; i++) {
+				traceOut.writeDouble(times[i]);
+			}
+			for (int i=0; i < n; i++) {
+				traceOut.writeInt(froms[i]);
+			}
+			for (int i=0; i < n; i++) {
+				traceOut.writeInt(tos[i]);
+			}
+			traceOut.write(flags, 0, n);
+			offset += 4 + n * ContactTraceQueue.EVENT_SIZE;
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace " +
+					traceFileName() + ": " + e.getMessage(), e);
+		}
+		nrofBuffered = 0;
+	}
+
+	@Override
+	public void done() {
+		if (nrofBuffered > 0) {
+			writeBlock();
+		}
+		try {
+			open();
+			traceOut.writeInt(interfaceTypes.size());
+			for (String type : interfaceTypes) {
+				byte[] name = type.getBytes(StandardCharsets.UTF_8);
+				traceOut.writeShort(name.length);
+				traceOut.write(name);
+			}
+			traceOut.writeLong(offset);
+			traceOut.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace " +
+					traceFileName() + ": " + e.getMessage(), e);
+		}
+		super.done();
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import interfaces.MultiResolutionGrid;
+import interfaces.MultiResolutionGrid.LevelStats;
+
+/**
+ * Reports the cell occupancy statistics of the multi-resolution
+ * connectivity grids (see {@link MultiResolutionGrid}) at the end of the
+ * simulation. For each interface type, one line is written for each grid
+ * level: the cell size, the number of interfaces in the level, the number
+ * of occupied cells, the mean and maximum number of interfaces in an
+ * occupied cell, and the number of candidate interfaces the level has
+ * returned for near interface queries (in total and per query). Nothing
+ * is reported if the multi-resolution grids are not in use.
+ */
+public class GridOccupancyReport extends Report {
+	/** The header of the report's sections */
+	public static final String HEADER = "# cell_size interfaces " +
+		"occupied_cells mean_per_cell max_per_cell candidates " +
+		"candidates_per_query";
+
+	/**
+	 * Constructor.
+	 */
+	public GridOccupancyReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		write("Grid occupancy for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+
+		for (MultiResolutionGrid grid : MultiResolutionGrid.getGrids()) {
+			long queries = grid.getNrofQueries();
+			write("\n[" + grid.getInterfaceType() + "]\nqueries: " + queries +
+					"\n" + HEADER);
+			for (LevelStats s : grid.getLevelStats()) {
+				write(s.getCellSize() + " " + s.getNrofInterfaces() + " " +
+						s.getNrofOccupiedCells() + " " +
+						format(s.getMeanInterfacesPerCell()) + " " +
+						s.getMaxInterfacesPerCell() + " " +
+						s.getNrofCandidates() + " " +
+						format(queries == 0 ? 0 :
+							(1.0 * s.getNrofCandidates()) / queries));
+			}
+		}
+
+		super.done();
+	}
+}
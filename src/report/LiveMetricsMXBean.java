@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Map;
+
+/**
+ * Management interface of the live metrics of a running simulation. The
+ * values are sampled by {@link LiveMetricsReport} at a regular (real time)
+ * interval, so they can be a bit behind the simulation.
+ */
+public interface LiveMetricsMXBean {
+
+	/** @return Name of the scenario */
+	public String getScenarioName();
+
+	/** @return Current simulation time (seconds) */
+	public double getSimulationTime();
+
+	/** @return Simulated seconds per (real) second since the last sample */
+	public double getSimSecondsPerSecond();
+
+	/** @return Number of connections that are currently up */
+	public long getConnections();
+
+	/** @return Number of messages in the hosts' buffers */
+	public long getMessagesInBuffers();
+
+	/** @return Number of created messages */
+	public long getMessagesCreated();
+
+	/** @return Number of started message transfers */
+	public long getTransfersStarted();
+
+	/** @return Number of aborted message transfers */
+	public long getTransfersAborted();
+
+	/** @return Number of completed message transfers */
+	public long getTransfersRelayed();
+
+	/** @return Number of messages delivered to their final recipient */
+	public long getMessagesDelivered();
+
+	/** @return Number of messages dropped from the buffers */
+	public long getMessagesDropped();
+
+	/** @return Number of events waiting in the world's event queues */
+	public long getEventQueueDepth();
+
+	/** @return Number of events the world has processed */
+	public long getEventsProcessed();
+
+	/** @return Used heap memory (bytes) */
+	public long getHeapUsed();
+
+	/**
+	 * Returns the wall time spent in each phase of the world updates (see
+	 * {@link core.SimProfiler}). Empty if profiling isn't enabled.
+	 * @return Map of phase names to seconds
+	 */
+	public Map<String, Double> getPhaseSeconds();
+}
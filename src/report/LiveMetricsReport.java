@@ -0,0 +1,319 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import core.SimProfiler;
+import core.SimProfiler.Phase;
+import core.SimScenario;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * <P>Live metrics of a running simulation. The metrics (simulation time and
+ * speed, connections, messages in buffers, transfer counts, event queue
+ * depth, heap use and, when profiling is enabled, per-phase wall times) are
+ * sampled at a regular real-time interval and published as a
+ * {@link LiveMetricsMXBean} (JMX object name
+ * <CODE>one.simulator:type=LiveMetrics,scenario=&lt;scenario name&gt;</CODE>,
+ * with an <CODE>instance</CODE> number added if a run of a scenario with
+ * the same name is already registered) for the duration of the run. If the
+ * {@link #HTTP_PORT_S} setting is given, the metrics of all running
+ * simulations are also served in the Prometheus text format at
+ * <CODE>http://localhost:port/metrics</CODE> (see
+ * {@link LiveMetricsServer}).</P>
+ *
+ * <P>When the simulation is done, the final values are written to the
+ * report in the Prometheus text format. The metrics include warmup
+ * messages and events.</P>
+ */
+public class LiveMetricsReport extends Report implements MessageListener,
+	ConnectionListener, UpdateListener, LiveMetricsMXBean {
+	/**
+	 * Sample interval -setting id ({@value}). Real time (milliseconds)
+	 * between metric samples. Default is {@link #DEF_SAMPLE_INTERVAL}.
+	 */
+	public static final String SAMPLE_INTERVAL_S = "sampleInterval";
+	/** Default sample interval (milliseconds) ({@value}) */
+	public static final int DEF_SAMPLE_INTERVAL = 1000;
+	/**
+	 * HTTP port -setting id ({@value}). If set, the metrics are served at
+	 * this localhost port. Value 0 picks a free port (printed to stdout).
+	 */
+	public static final String HTTP_PORT_S = "httpPort";
+	/**
+	 * Profile phases -setting id ({@value}). Boolean (true/false). If true,
+	 * {@link SimProfiler} is enabled so that per-phase timings are
+	 * available. Default is false.
+	 */
+	public static final String PROFILE_PHASES_S = "profilePhases";
+
+	private long sampleInterval;
+	private World world;
+	private ObjectName name;
+	private boolean serverAcquired;
+
+	private long connections;
+	private long created;
+	private long started;
+	private long aborted;
+	private long relayed;
+	private long delivered;
+	private long dropped;
+
+	/** the latest sample; read by the JMX and HTTP threads */
+	private volatile Sample sample;
+	private long lastSampleNanos;
+	private double lastSampleSimTime;
+
+	/**
+	 * Values of the metrics at one point of time
+	 */
+	private static class Sample {
+		private double simTime;
+		private double ssps;
+		private long connections;
+		private long messagesInBuffers;
+		private long created;
+		private long started;
+		private long aborted;
+		private long relayed;
+		private long delivered;
+		private long dropped;
+		private long queueDepth;
+		private long eventsProcessed;
+		private long heapUsed;
+		private Map<String, Double> phaseSeconds;
+	}
+
+	/**
+	 * Constructor.
+	 */
+	public LiveMetricsReport() {
+		init();
+		Settings s = getSettings();
+		this.sampleInterval = s.getInt(SAMPLE_INTERVAL_S,
+				DEF_SAMPLE_INTERVAL) * 1000000L;
+		if (s.getBoolean(PROFILE_PHASES_S, false)) {
+			SimProfiler.enable();
+		}
+
+		this.lastSampleNanos = System.nanoTime();
+		this.lastSampleSimTime = SimClock.getTime();
+		this.sample = sample(null);
+		register();
+
+		if (s.contains(HTTP_PORT_S)) {
+			LiveMetricsServer.acquire(s.getInt(HTTP_PORT_S));
+			this.serverAcquired = true;
+		}
+	}
+
+	/**
+	 * Registers the metrics to the platform MBean server with a name that
+	 * isn't in use yet
+	 */
+	private void register() {
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		String base = LiveMetricsServer.DOMAIN +
+			":type=LiveMetrics,scenario=" + ObjectName.quote(getScenarioName());
+		try {
+			synchronized (mbs) {
+				ObjectName on = new ObjectName(base);
+				for (int i=2; mbs.isRegistered(on); i++) {
+					on = new ObjectName(base + ",instance=" + i);
+				}
+				mbs.registerMBean(this, on);
+				this.name = on;
+			}
+		} catch (JMException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Samples the current values of the metrics
+	 * @param hosts All hosts (or null if not known yet)
+	 */
+	private Sample sample(List<DTNHost> hosts) {
+		Sample s = new Sample();
+		long now = System.nanoTime();
+		s.simTime = SimClock.getTime();
+		if (now > lastSampleNanos) {
+			s.ssps = (s.simTime - lastSampleSimTime) * 1e9 /
+				(now - lastSampleNanos);
+		}
+		this.lastSampleNanos = now;
+		this.lastSampleSimTime = s.simTime;
+
+		s.connections = this.connections;
+		s.created = this.created;
+		s.started = this.started;
+		s.aborted = this.aborted;
+		s.relayed = this.relayed;
+		s.delivered = this.delivered;
+		s.dropped = this.dropped;
+		if (hosts != null) {
+			for (DTNHost h : hosts) {
+				s.messagesInBuffers += h.getNrofMessages();
+			}
+		}
+		if (world != null) {
+			s.queueDepth = world.getNrofQueuedEvents();
+			s.eventsProcessed = world.getNrofProcessedEvents();
+		}
+		Runtime rt = Runtime.getRuntime();
+		s.heapUsed = rt.totalMemory() - rt.freeMemory();
+
+		Map<String, Double> phases = new LinkedHashMap<String, Double>();
+		if (SimProfiler.isEnabled()) {
+			for (Phase p : Phase.values()) {
+				phases.put(p.getLabel(),
+						SimProfiler.getPhase(p).getNanos() / 1e9);
+			}
+		}
+		s.phaseSeconds = Collections.unmodifiableMap(phases);
+		return s;
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		if (System.nanoTime() - lastSampleNanos < sampleInterval) {
+			return;
+		}
+		if (world == null) {
+			this.world = SimScenario.getInstance().getWorld();
+		}
+		this.sample = sample(hosts);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		this.connections++;
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		this.connections--;
+	}
+
+	public void newMessage(Message m) {
+		this.created++;
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		this.started++;
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		if (dropped) {
+			this.dropped++;
+		}
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		this.aborted++;
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		this.relayed++;
+		if (firstDelivery) {
+			this.delivered++;
+		}
+	}
+
+	public String getScenarioName() {
+		return super.getScenarioName();
+	}
+
+	public double getSimulationTime() {
+		return sample.simTime;
+	}
+
+	public double getSimSecondsPerSecond() {
+		return sample.ssps;
+	}
+
+	public long getConnections() {
+		return sample.connections;
+	}
+
+	public long getMessagesInBuffers() {
+		return sample.messagesInBuffers;
+	}
+
+	public long getMessagesCreated() {
+		return sample.created;
+	}
+
+	public long getTransfersStarted() {
+		return sample.started;
+	}
+
+	public long getTransfersAborted() {
+		return sample.aborted;
+	}
+
+	public long getTransfersRelayed() {
+		return sample.relayed;
+	}
+
+	public long getMessagesDelivered() {
+		return sample.delivered;
+	}
+
+	public long getMessagesDropped() {
+		return sample.dropped;
+	}
+
+	public long getEventQueueDepth() {
+		return sample.queueDepth;
+	}
+
+	public long getEventsProcessed() {
+		return sample.eventsProcessed;
+	}
+
+	public long getHeapUsed() {
+		return sample.heapUsed;
+	}
+
+	public Map<String, Double> getPhaseSeconds() {
+		return sample.phaseSeconds;
+	}
+
+	@Override
+	public void done() {
+		if (world != null) {
+			this.sample = sample(world.getHosts());
+		}
+		write(LiveMetricsServer.render(Collections.singleton(this.name)));
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					this.name);
+		} catch (JMException e) {
+			throw new SimError(e);
+		}
+		if (serverAcquired) {
+			LiveMetricsServer.release();
+		}
+		super.done();
+	}
+}
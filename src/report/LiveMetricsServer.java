@@ -0,0 +1,270 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import core.SimError;
+
+/**
+ * <P>Localhost HTTP server that serves the live metrics of all the running
+ * simulations of the JVM in the Prometheus text format at path
+ * {@value #METRICS_PATH}. The metrics are read from the
+ * {@link LiveMetricsMXBean}s registered to the platform MBean server, so a
+ * single server covers also the concurrent runs of other simulation
+ * contexts (see {@link core.SimContext}).</P>
+ *
+ * <P>The server is started when the first live metrics report asks for it
+ * and stopped when no live metrics are registered anymore. If the runs
+ * ask for different ports, the first one is used.</P>
+ */
+public class LiveMetricsServer implements LiveMetricsServerMBean {
+	/** path of the metrics ({@value}) */
+	public static final String METRICS_PATH = "/metrics";
+	/** domain of the simulator's MBeans ({@value}) */
+	public static final String DOMAIN = "one.simulator";
+	/** content type of the Prometheus text format */
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+	/** MBean attributes and the corresponding metrics' names, types and
+	 * descriptions */
+	private static final String[][] METRICS = {
+		{"SimulationTime", "one_sim_time_seconds", "gauge",
+			"Current simulation time"},
+		{"SimSecondsPerSecond", "one_sim_seconds_per_second", "gauge",
+			"Simulated seconds per real second"},
+		{"Connections", "one_connections", "gauge",
+			"Connections that are up"},
+		{"MessagesInBuffers", "one_messages_in_buffers", "gauge",
+			"Messages in the hosts' buffers"},
+		{"MessagesCreated", "one_messages_created_total", "counter",
+			"Created messages"},
+		{"TransfersStarted", "one_transfers_started_total", "counter",
+			"Started message transfers"},
+		{"TransfersAborted", "one_transfers_aborted_total", "counter",
+			"Aborted message transfers"},
+		{"TransfersRelayed", "one_transfers_relayed_total", "counter",
+			"Completed message transfers"},
+		{"MessagesDelivered", "one_messages_delivered_total", "counter",
+			"Messages delivered to their final recipient"},
+		{"MessagesDropped", "one_messages_dropped_total", "counter",
+			"Messages dropped from buffers"},
+		{"EventQueueDepth", "one_event_queue_depth", "gauge",
+			"Events waiting in the event queues"},
+		{"EventsProcessed", "one_events_processed_total", "counter",
+			"Processed events"},
+		{"HeapUsed", "one_heap_used_bytes", "gauge",
+			"Used heap memory"}};
+	/** MBean attribute of the phase times */
+	private static final String PHASES_ATTRIBUTE = "PhaseSeconds";
+	/** metric name of the phase times */
+	private static final String PHASES_METRIC = "one_phase_seconds_total";
+
+	/** name of the live metrics MBeans */
+	public static final ObjectName METRICS_PATTERN =
+		objectName(DOMAIN + ":type=LiveMetrics,*");
+	/** name of the server MBean */
+	private static final ObjectName SERVER_NAME =
+		objectName(DOMAIN + ":type=LiveMetricsServer");
+
+	private HttpServer server;
+	private int port;
+
+	/**
+	 * Creates and starts a new server
+	 * @param port The localhost port to listen to
+	 * @throws IOException if the server can't be started
+	 */
+	private LiveMetricsServer(int port) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		this.server.createContext(METRICS_PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = render(getMBeanServer().queryNames(
+						METRICS_PATTERN, null)).getBytes(
+								StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type",
+						CONTENT_TYPE);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(body);
+				}
+			}
+		});
+		this.server.start();
+		this.port = this.server.getAddress().getPort();
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	public void stop() {
+		this.server.stop(0);
+		try {
+			getMBeanServer().unregisterMBean(SERVER_NAME);
+		} catch (JMException e) {
+			// already unregistered
+		}
+	}
+
+	/**
+	 * Starts the server, unless it's already running
+	 * @param port The localhost port to listen to
+	 * @throws SimError if the server can't be started
+	 */
+	public static void acquire(int port) {
+		MBeanServer mbs = getMBeanServer();
+		synchronized (mbs) { // the same object for all simulation contexts
+			if (mbs.isRegistered(SERVER_NAME)) {
+				return;
+			}
+			try {
+				LiveMetricsServer server = new LiveMetricsServer(port);
+				mbs.registerMBean(server, SERVER_NAME);
+				System.out.println("Live metrics at http://localhost:" +
+						server.getPort() + METRICS_PATH);
+			} catch (IOException e) {
+				throw new SimError("Can't start live metrics server at port " +
+						port + ": " + e.getMessage(), e);
+			} catch (JMException e) {
+				throw new SimError(e);
+			}
+		}
+	}
+
+	/**
+	 * Stops the server if it's running and no live metrics are registered
+	 */
+	public static void release() {
+		MBeanServer mbs = getMBeanServer();
+		synchronized (mbs) {
+			if (!mbs.isRegistered(SERVER_NAME) ||
+					!mbs.queryNames(METRICS_PATTERN, null).isEmpty()) {
+				return;
+			}
+			try { /* may be a server of another context: stop it via JMX */
+				mbs.invoke(SERVER_NAME, "stop", null, null);
+			} catch (JMException e) {
+				throw new SimError(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the live metrics of the given MBeans in the Prometheus text
+	 * format
+	 * @param names Names of the live metrics MBeans
+	 * @return The metrics
+	 */
+	public static String render(Set<ObjectName> names) {
+		MBeanServer mbs = getMBeanServer();
+		Set<ObjectName> sorted = new TreeSet<ObjectName>(names);
+		StringBuilder sb = new StringBuilder();
+
+		for (String[] metric : METRICS) {
+			sb.append("# HELP ").append(metric[1]).append(' ');
+			sb.append(metric[3]).append('\n');
+			sb.append("# TYPE ").append(metric[1]).append(' ');
+			sb.append(metric[2]).append('\n');
+			for (ObjectName name : sorted) {
+				Object value = getAttribute(mbs, name, metric[0]);
+				if (value != null) {
+					sb.append(metric[1]).append(labels(name, null));
+					sb.append(' ').append(value).append('\n');
+				}
+			}
+		}
+
+		sb.append("# HELP ").append(PHASES_METRIC);
+		sb.append(" Wall time spent in simulation phases\n");
+		sb.append("# TYPE ").append(PHASES_METRIC).append(" counter\n");
+		for (ObjectName name : sorted) {
+			Object phases = getAttribute(mbs, name, PHASES_ATTRIBUTE);
+			if (!(phases instanceof TabularData)) {
+				continue;
+			}
+			for (Object row : ((TabularData)phases).values()) {
+				CompositeData cd = (CompositeData)row;
+				sb.append(PHASES_METRIC);
+				sb.append(labels(name, (String)cd.get("key")));
+				sb.append(' ').append(cd.get("value")).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the label set of a run's metric. Runs of scenarios with the
+	 * same name are told apart by the instance number of their object name.
+	 */
+	private static String labels(ObjectName name, String phase) {
+		String s = "{scenario=\"" + escape(name.getKeyProperty("scenario"));
+		String instance = name.getKeyProperty("instance");
+		if (instance != null) {
+			s += "\",instance=\"" + escape(instance);
+		}
+		if (phase != null) {
+			s += "\",phase=\"" + escape(phase);
+		}
+		return s + "\"}";
+	}
+
+	/**
+	 * Escapes a label value (the scenario part of an object name is quoted)
+	 */
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.startsWith("\"")) {
+			value = ObjectName.unquote(value);
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").
+			replace("\n", "\\n");
+	}
+
+	/**
+	 * Returns an attribute of an MBean or null if the MBean has been
+	 * unregistered
+	 */
+	private static Object getAttribute(MBeanServer mbs, ObjectName name,
+			String attribute) {
+		try {
+			return mbs.getAttribute(name, attribute);
+		} catch (JMException e) {
+			return null; // the run ended while rendering
+		}
+	}
+
+	private static MBeanServer getMBeanServer() {
+		return ManagementFactory.getPlatformMBeanServer();
+	}
+
+	private static ObjectName objectName(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (MalformedObjectNameException e) {
+			throw new SimError(e);
+		}
+	}
+}
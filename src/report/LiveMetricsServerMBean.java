@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * Management interface of the live metrics HTTP server
+ * (see {@link LiveMetricsServer}).
+ */
+public interface LiveMetricsServerMBean {
+
+	/** @return The (localhost) port the server listens to */
+	public int getPort();
+
+	/**
+	 * Stops the server and removes it from the MBean server
+	 */
+	public void stop();
+}
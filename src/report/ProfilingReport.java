@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.List;
+
+import core.SimProfiler;
+import core.SimProfiler.Counter;
+import core.SimProfiler.Phase;
+
+/**
+ * Report of where the wall time of the simulation goes. Loading this report
+ * enables the {@link SimProfiler}. Reports the wall time, number of calls
+ * and allocated memory of each phase of the world updates, of each router
+ * class' updates and of each listener class' (e.g., report's) callbacks.
+ * The "other" phase is the part of the world updates that isn't included in
+ * any phase. Listener callbacks made during other phases (e.g., message
+ * listener calls during routing) are included in those phases too.
+ */
+public class ProfilingReport extends Report {
+	/** The header of the report's sections */
+	public static final String HEADER =
+		"# name calls time_ms time_share alloc_MB";
+
+	/**
+	 * Constructor.
+	 */
+	public ProfilingReport() {
+		init();
+		SimProfiler.enable();
+	}
+
+	@Override
+	public void done() {
+		Counter total = SimProfiler.getTotal();
+		write("Profile for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()) +
+				"\nupdates: " + total.getCalls() +
+				"\nupdate_time_ms: " + format(total.getNanos() / 1e6) +
+				"\nupdate_alloc_MB: " + format(total.getBytes() / 1e6));
+
+		write("\n[phases]\n" + HEADER);
+		long phaseNanos = 0;
+		long phaseBytes = 0;
+		for (Phase p : Phase.values()) {
+			Counter c = SimProfiler.getPhase(p);
+			writeCounter(c, total);
+			phaseNanos += c.getNanos();
+			phaseBytes += c.getBytes();
+		}
+		write("other - " + format((total.getNanos() - phaseNanos) / 1e6) +
+				" " + format(share(total.getNanos() - phaseNanos, total)) +
+				" " + format((total.getBytes() - phaseBytes) / 1e6));
+
+		write("\n[routers]\n" + HEADER);
+		writeCounters(SimProfiler.getRouters(), total);
+		write("\n[listeners]\n" + HEADER);
+		writeCounters(SimProfiler.getListeners(), total);
+
+		super.done();
+	}
+
+	/**
+	 * Writes the lines of the given counters
+	 */
+	private void writeCounters(List<Counter> counters, Counter total) {
+		for (Counter c : counters) {
+			writeCounter(c, total);
+		}
+	}
+
+	/**
+	 * Writes the line of a counter
+	 */
+	private void writeCounter(Counter c, Counter total) {
+		write(c.getName() + " " + c.getCalls() + " " +
+				format(c.getNanos() / 1e6) + " " + format(share(c.getNanos(),
+						total)) + " " + format(c.getBytes() / 1e6));
+	}
+
+	/**
+	 * Returns the share of the given time of all world updates' time
+	 */
+	private double share(long nanos, Counter total) {
+		if (total.getNanos() == 0) {
+			return 0;
+		}
+		return (1.0 * nanos) / total.getNanos();
+	}
+}
@@ -258,6 +258,15 @@ public abstract class Report {
 		this.prefix = txt;
 	}
 	
+	/**
+	 * Returns the name (and path) of the report's output file (or the
+	 * prefix of the files if the report is intervalled)
+	 * @return the name of the output file
+	 */
+	protected String getOutFileName() {
+		return this.outFileName;
+	}
+
 	/**
 	 * Returns the name of the scenario as read from the settings
 	 * @return the name of the scenario as read from the settings
@@ -7,14 +7,19 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ReceiveTimeOrder;
+import routing.util.SendQueue;
+
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.Tuple;
 
@@ -32,14 +37,25 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 	
+	/** Message drop order -setting id ({@value}). Name of a 
+	 * Comparator&lt;Message&gt; class in the routing.util package that orders
+	 * the messages from the first to drop when there's no room for a new
+	 * message, e.g., LargestFirstOrder, ExpiryOrder (shortest remaining TTL
+	 * first) or UtilityOrder (lowest utility first).
+	 * Default = ReceiveTimeOrder (oldest first). */
+	public static final String DROP_ORDER_S = "dropOrder";
+	/** order of dropping messages */
+	private Comparator<Message> dropOrder;
+	/** the messages of the buffer in the drop order (null if the sending
+	 * queue has the same order and is used instead) */
+	private SendQueue dropQueue;
+	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** IDs of expired messages that are dropped when their transfer ends */
+	private List<String> expiredInTransfer;
 	
 
 	/**
@@ -47,6 +63,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * the given Settings object.
 	 * @param s The settings object
 	 */
+	@SuppressWarnings("unchecked")
 	public ActiveRouter(Settings s) {
 		super(s);
 		
@@ -56,6 +73,20 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		if (s.contains(DROP_ORDER_S)) {
+			Object order = s.createObject("routing.util." +
+					s.getSetting(DROP_ORDER_S));
+			if (!(order instanceof Comparator)) {
+				throw new SettingsError("Invalid value for " + 
+						s.getFullPropertyName(DROP_ORDER_S) +
+						" (not a Comparator)");
+			}
+			this.dropOrder = (Comparator<Message>)order;
+		}
+		else {
+			this.dropOrder = new ReceiveTimeOrder();
+		}
 	}
 	
 	/**
@@ -65,13 +96,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.dropOrder = r.dropOrder;
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiredInTransfer = new ArrayList<String>(1);
+		/* the orders have no settings, so orders of the same class order the
+		 * messages the same way and the sending queue can be used */
+		Comparator<Message> sendOrder = getSendQueueOrder();
+		if (sendOrder != null && sendOrder.getClass() == dropOrder.getClass()) {
+			this.dropQueue = null;
+		}
+		else {
+			this.dropQueue = new SendQueue(dropOrder);
+		}
 	}
 	
 	/**
@@ -102,6 +143,23 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		if (this.dropQueue != null) {
+			this.dropQueue.add(m);
+		}
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.dropQueue != null) {
+			this.dropQueue.remove(id);
+		}
+		return m;
+	}
+	
 	@Override 
 	public boolean createNewMessage(Message m) {
 		makeRoomForNewMessage(m.getSize());
@@ -227,8 +285,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/** 
-	 * Removes messages from the buffer (oldest first) until
-	 * there's enough space for the new message.
+	 * Removes messages from the buffer (oldest first, or in the order of
+	 * {@link #DROP_ORDER_S} setting) until there's enough space for the new
+	 * message.
 	 * @param size Size of the new message 
 	 * transferred, the transfer is aborted before message is removed
 	 * @return True if enough space could be freed, false if not
@@ -256,14 +315,31 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL has expired. Messages that are being sent are
+	 * dropped only after their transfer has ended: they are set aside
+	 * (so they aren't looked up again on every update) and checked again
+	 * only while there are such messages.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		for (int i=0; i < expiredInTransfer.size(); ) {
+			String id = expiredInTransfer.get(i);
+			if (isSending(id)) {
+				i++;
+				continue;
+			}
+			expiredInTransfer.remove(i);
+			if (hasMessage(id)) { /* not delivered or deleted meanwhile */
+				deleteMessage(id, true);
+			}
+		}
+
+		for (Message m : getExpiredMessages()) {
+			if (isSending(m.getId())) {
+				ignoreExpiry(m.getId());
+				expiredInTransfer.add(m.getId());
+			}
+			else {
+				deleteMessage(m.getId(), true);
 			}
 		}
 	}
@@ -282,7 +358,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true), or if 
+	 * {@link #DROP_ORDER_S} is set, the first message in that order. This is 
+	 * the message that is dropped next when there's no room for a new 
+	 * message. The messages are kept in the drop order as they come and go,
+	 * so only the first messages in the order (and the ones being sent) are
+	 * looked at.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -291,28 +372,25 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
+		Collection<Message> queue = (this.dropQueue != null ?
+				this.dropQueue : getQueuedMessages());
+		for (Message m : queue) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
+	 * recipient is some host that we're connected to at the moment. The
+	 * messages are looked up by their final recipients (see
+	 * {@link MessageRouter#getMessagesFor(DTNHost)}), so the list is in the
+	 * order of the connections, and should be sorted with
+	 * {@link MessageRouter#sortByQueueMode(List)} for sending.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
@@ -323,12 +401,10 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+		for (Connection con : getConnections()) {
+			DTNHost to = con.getOtherNode(getHost());
+			for (Message m : getMessagesFor(to)) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 		
@@ -337,14 +413,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to send messages for the connections that are mentioned
-	 * in the Tuples in the order they are in the list until one of
+	 * in the Tuples in the order they are in the collection until one of
 	 * the connections starts transferring or all tuples have been tried.
 	 * @param tuples The tuples to try
 	 * @return The tuple whose connection accepted the message or null if
 	 * none of the connections accepted the message that was meant for them.
 	 */
 	protected Tuple<Message, Connection> tryMessagesForConnected(
-			List<Tuple<Message, Connection>> tuples) {
+			Collection<Tuple<Message, Connection>> tuples) {
 		if (tuples.size() == 0) {
 			return null;
 		}
@@ -365,11 +441,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * for receiving (or doesn't accept any). If a transfer is started, the
 	  * connection is included in the list of sending connections.
 	  * @param con Connection trough which the messages are sent
-	  * @param messages A list of messages to try
+	  * @param messages The messages to try
 	  * @return The message whose transfer was started or null if no 
 	  * transfer was started. 
 	  */
-	protected Message tryAllMessages(Connection con, List<Message> messages) {
+	protected Message tryAllMessages(Connection con,
+			Collection<Message> messages) {
 		for (Message m : messages) {
 			int retVal = startTransfer(m, con); 
 			if (retVal == RCV_OK) {
@@ -389,12 +466,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * connection, the messages are tried in the order they are in the list.
 	 * Once an accepting connection is found, no other connections or messages
 	 * are tried.
-	 * @param messages The list of Messages to try
+	 * @param messages The Messages to try
 	 * @param connections The list of Connections to try
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
-	protected Connection tryMessagesToConnections(List<Message> messages,
+	protected Connection tryMessagesToConnections(Collection<Message> messages,
 			List<Connection> connections) {
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
@@ -409,9 +486,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
-	 * {@link #tryMessagesToConnections(List, List)} for sending details.
+	 * connections this node has. Messages are tried in the sending queue
+	 * order (see {@link MessageRouter#getQueuedMessages()} and
+	 * {@link MessageRouter#sortByQueueMode(List)}). See 
+	 * {@link #tryMessagesToConnections(Collection, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
@@ -423,9 +501,12 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
+		Collection<Message> messages = this.getQueuedMessages();
+		if (!isSendQueueOrdered()) {
+			List<Message> shuffled = new ArrayList<Message>(messages);
+			this.sortByQueueMode(shuffled);
+			messages = shuffled;
+		}
 
 		return tryMessagesToConnections(messages, connections);
 	}
@@ -534,7 +615,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL has expired (see {@link #dropExpiredMessages()}).
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
@@ -578,12 +659,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		/* drop the messages whose TTL has expired */
+		dropExpiredMessages();
 	}
 	
 	/**
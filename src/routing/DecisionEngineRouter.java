@@ -3,6 +3,7 @@ package routing;
 import java.util.*;
 
 import core.*;
+import routing.util.OutgoingQueue;
 
 /**
  * This class overrides ActiveRouter in order to inject calls to a
@@ -11,7 +12,8 @@ import core.*;
  *
  * <strong>Forwarding Logic:</strong>
  *
- * A DecisionEngineRouter maintains a List of Tuple<Message, Connection> in
+ * A DecisionEngineRouter maintains a queue of Tuple<Message, Connection> (an
+ * {@link routing.util.OutgoingQueue}) in
  * support of a call to ActiveRouter.tryMessagesForConnected() in
  * DecisionEngineRouter.update(). Since update() is called so frequently, we'd
  * like as little computation done in it as possible; hence the List that gets
@@ -23,7 +25,9 @@ import core.*;
  * List. When a connection goes up, the collection of messages is examined to
  * determine to determine if any should be sent to this new peer, adding a Tuple
  * to the list if so. When a connection goes down, any Tuple in the list
- * associated with that connection is removed from the List.
+ * associated with that connection is removed from the List. The queue is
+ * indexed by connection and by message, so these removals, and removing the
+ * Tuples of a sent or deleted message, don't search the whole List.
  *
  * <strong>Decision Engines</strong>
  *
@@ -89,7 +93,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
     protected boolean tombstoning;
     protected RoutingDecisionEngine decider;
-    protected List<Tuple<Message, Connection>> outgoingMessages;
+    protected OutgoingQueue outgoingMessages;
 
     protected Set<String> tombstones;
 
@@ -104,7 +108,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
         Settings routeSettings = new Settings(PUBSUB_NS);
 
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueue();
 
         decider = (RoutingDecisionEngine) routeSettings.createIntializedObject(
                 "routing." + routeSettings.getSetting(ENGINE_SETTING));
@@ -123,7 +127,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
     public DecisionEngineRouter(DecisionEngineRouter r) {
         super(r);
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueue();
         decider = r.decider.replicate();
         tombstoning = r.tombstoning;
 
@@ -260,7 +264,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             Collection<Message> msgs = getMessageCollection();
             for (Message m : msgs) {
                 if (decider.shouldSendMessageToHost(m, otherNode, this.getHost())) {
-                    outgoingMessages.add(new Tuple<Message, Connection>(m, con));
+                    outgoingMessages.add(m, con);
                 }
             }
         } else {
@@ -272,13 +276,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 * If we  were trying to send message to this peer, we need to remove them
 * from the outgoing List.
              */
-            for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                    i.hasNext();) {
-                Tuple<Message, Connection> t = i.next();
-                if (t.getValue() == con) {
-                    i.remove();
-                }
-            }
+            outgoingMessages.removeConnection(con);
         }
     }
 
@@ -384,15 +382,7 @@ public class DecisionEngineRouter extends ActiveRouter {
     protected void transferDone(Connection con) {
         Message transferred = this.getMessage(con.getMessage().getId());
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(transferred.getId())
-                    && t.getValue().equals(con)) {
-                i.remove();
-                break;
-            }
-        }
+        outgoingMessages.remove(transferred.getId(), con);
 
         if (decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost()))) {
 // if(transferred.getId().equals("M14"))
@@ -412,16 +402,10 @@ public class DecisionEngineRouter extends ActiveRouter {
     }
 
     @Override
-    public void deleteMessage(String id, boolean drop) {
-        super.deleteMessage(id, drop);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(id)) {
-                i.remove();
-            }
-        }
+    protected Message removeFromMessages(String id) {
+        Message m = super.removeFromMessages(id);
+        outgoingMessages.removeMessage(id);
+        return m;
     }
 
     @Override
@@ -435,14 +419,6 @@ public class DecisionEngineRouter extends ActiveRouter {
         }
 
         tryMessagesForConnected(outgoingMessages);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (!this.hasMessage(t.getKey().getId())) {
-                i.remove();
-            }
-        }
     }
 
     public RoutingDecisionEngine getDecisionEngine() {
@@ -461,7 +437,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             if (other != from && decider.shouldSendMessageToHost(m, other, this.getHost())) {
 // if(m.getId().equals("M14"))
 // System.out.println("Adding attempt for M14 from: " + getHost() + " to: " + other);
-                outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+                outgoingMessages.add(m, c);
             }
         }
     }
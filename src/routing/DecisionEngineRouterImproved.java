@@ -8,6 +8,7 @@ package routing;
 import java.util.*;
 
 import core.*;
+import routing.util.OutgoingQueue;
 import static routing.MessageRouter.DENIED_DELIVERED;
 import static routing.MessageRouter.DENIED_OLD;
 import static routing.MessageRouter.RCV_OK;
@@ -26,7 +27,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
     protected boolean tombstoning;
     protected RoutingDecisionEngineImproved decider;
-    protected List<Tuple<Message, Connection>> outgoingMessages;
+    protected OutgoingQueue outgoingMessages;
 
     protected Set<String> tombstones;
 
@@ -37,7 +38,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
         Settings routeSettings = new Settings(PUBSUB_NS);
 
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueue();
 
         decider = (RoutingDecisionEngineImproved) routeSettings.createIntializedObject(
                 "routing." + routeSettings.getSetting(ENGINE_SETTING));
@@ -56,7 +57,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
     public DecisionEngineRouterImproved(DecisionEngineRouterImproved r) {
         super(r);
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new OutgoingQueue();
         decider = r.decider.replicate();
         tombstoning = r.tombstoning;
 
@@ -100,7 +101,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
             Collection<Message> msgs = getMessageCollection();
             for (Message m : msgs) {
                 if (decider.shouldSendMessageToHost(m, otherNode)) {
-                    outgoingMessages.add(new Tuple<Message, Connection>(m, con));
+                    outgoingMessages.add(m, con);
                 }
             }
         } else {
@@ -108,13 +109,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
 
             conStates.remove(con);
 
-            for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                    i.hasNext();) {
-                Tuple<Message, Connection> t = i.next();
-                if (t.getValue() == con) {
-                    i.remove();
-                }
-            }
+            outgoingMessages.removeConnection(con);
         }
     }
 
@@ -209,15 +204,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
     protected void transferDone(Connection con) {
         Message transferred = this.getMessage(con.getMessage().getId());
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(transferred.getId())
-                    && t.getValue().equals(con)) {
-                i.remove();
-                break;
-            }
-        }
+        outgoingMessages.remove(transferred.getId(), con);
 
         if (decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost()))) {
             this.deleteMessage(transferred.getId(), false);
@@ -226,16 +213,10 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
     }
 
     @Override
-    public void deleteMessage(String id, boolean drop) {
-        super.deleteMessage(id, drop);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(id)) {
-                i.remove();
-            }
-        }
+    protected Message removeFromMessages(String id) {
+        Message m = super.removeFromMessages(id);
+        outgoingMessages.removeMessage(id);
+        return m;
     }
 
     @Override
@@ -248,14 +229,6 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
 
         tryMessagesForConnected(outgoingMessages);
-
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (!this.hasMessage(t.getKey().getId())) {
-                i.remove();
-            }
-        }
     }
 
     public RoutingDecisionEngineImproved getDecisionEngine() {
@@ -271,7 +244,7 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         for (Connection c : getConnections()) {
             DTNHost other = c.getOtherNode(getHost());
             if (other != from && decider.shouldSendMessageToHost(m, other)) {
-                outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+                outgoingMessages.add(m, c);
             }
         }
     }
@@ -445,8 +445,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 			/* calculate paths only to nodes we have messages to 
 			 * (optimization) */
 			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
+			for (DTNHost dest : getMessageDestinations()) {
+				toSet.add(dest.getAddress());
 			}
 						
 			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
@@ -465,7 +465,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * hop counts and their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * @return The return value of {@link #tryMessagesForConnected(Collection)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
 		List<Tuple<Message, Connection>> messages = 
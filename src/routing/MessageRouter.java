@@ -8,9 +8,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import core.Application;
 import core.Connection;
@@ -22,6 +26,9 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.Tuple;
+import routing.util.ExpiryQueue;
+import routing.util.ReceiveTimeOrder;
+import routing.util.SendQueue;
 
 /**
  * Superclass for message routers.
@@ -47,8 +54,19 @@ public abstract class MessageRouter {
      * <LI/> 1 : random (message order is randomized every time; default option)
      * <LI/> 2 : FIFO (most recently received messages are sent last)
      * </UL>
+     * The order of the FIFO mode is kept up to date as messages are added to
+     * and removed from the buffer, so the buffer doesn't need to be sorted
+     * for sending.
      */
     public static final String SEND_QUEUE_MODE_S = "sendQueue";
+    /**
+     * Custom sending queue order -setting id ({@value}). Name of a class in
+     * the routing.util package that implements Comparator&lt;Message&gt; and
+     * has a constructor without parameters (e.g., SizeOrder or ExpiryOrder).
+     * Overrides the {@link #SEND_QUEUE_MODE_S} setting. The values the order
+     * compares must not change while a message is in the buffer.
+     */
+    public static final String SEND_QUEUE_ORDER_S = "sendQueueOrder";
 
     /**
      *
@@ -64,6 +82,10 @@ public abstract class MessageRouter {
      * Setting value for FIFO queue mode
      */
     public static final int Q_MODE_FIFO = 2;
+    /**
+     * Queue mode of the custom sending queue orders
+     */
+    public static final int Q_MODE_CUSTOM = 3;
 
     /**
      * Receive return value for OK
@@ -99,6 +121,14 @@ public abstract class MessageRouter {
      * The messages this router is carrying
      */
     private HashMap<String, Message> messages;
+    /**
+     * The messages this router is carrying by their final recipients
+     */
+    private HashMap<DTNHost, Map<String, Message>> messagesByDestination;
+    /**
+     * The messages this router is carrying by their expiry times
+     */
+    private ExpiryQueue expiryQueue;
     /**
      * The messages this router has received as the final recipient
      */
@@ -119,6 +149,15 @@ public abstract class MessageRouter {
      * Queue mode for sending messages
      */
     private int sendQueueMode;
+    /**
+     * Order of the sending queue (null in the random queue mode)
+     */
+    private Comparator<Message> sendQueueOrder;
+    /**
+     * The messages of the buffer in the sending queue order (null in the
+     * random queue mode)
+     */
+    private SendQueue sendQueue;
 
     /**
      * applications attached to the host
@@ -136,6 +175,7 @@ public abstract class MessageRouter {
      *
      * @param s The settings object
      */
+    @SuppressWarnings("unchecked")
     public MessageRouter(Settings s) {
         this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer	
         this.msgTtl = Message.INFINITE_TTL;
@@ -159,6 +199,19 @@ public abstract class MessageRouter {
         } else {
             sendQueueMode = Q_MODE_RANDOM;
         }
+        if (s.contains(SEND_QUEUE_ORDER_S)) {
+            Object order = s.createObject("routing.util."
+                    + s.getSetting(SEND_QUEUE_ORDER_S));
+            if (!(order instanceof Comparator)) {
+                throw new SettingsError("Invalid value for "
+                        + s.getFullPropertyName(SEND_QUEUE_ORDER_S)
+                        + " (not a Comparator)");
+            }
+            this.sendQueueMode = Q_MODE_CUSTOM;
+            this.sendQueueOrder = (Comparator<Message>) order;
+        } else if (sendQueueMode == Q_MODE_FIFO) {
+            this.sendQueueOrder = new ReceiveTimeOrder();
+        }
 
     }
 
@@ -172,7 +225,12 @@ public abstract class MessageRouter {
     public void init(DTNHost host, List<MessageListener> mListeners) {
         this.incomingMessages = new HashMap<String, Message>();
         this.messages = new HashMap<String, Message>();
+        this.messagesByDestination = new HashMap<DTNHost, Map<String, Message>>();
+        this.expiryQueue = new ExpiryQueue();
         this.deliveredMessages = new HashMap<String, Message>();
+        if (sendQueueOrder != null) {
+            this.sendQueue = new SendQueue(sendQueueOrder);
+        }
         this.mListeners = mListeners;
         this.host = host;
 //        Random rnd = new Random();
@@ -195,6 +253,7 @@ public abstract class MessageRouter {
         this.bufferSize = r.bufferSize;
         this.msgTtl = r.msgTtl;
         this.sendQueueMode = r.sendQueueMode;
+        this.sendQueueOrder = r.sendQueueOrder;
         this.nodeSelfish = r.nodeSelfish;
         this.nodeList = r.nodeList;
         this.applications = new HashMap<String, Collection<Application>>();
@@ -270,6 +329,110 @@ public abstract class MessageRouter {
         return this.messages.values();
     }
 
+    /**
+     * Returns the messages this router is carrying for the given final
+     * recipient, in the order they were added to the buffer. The collection
+     * is a read-only view: see the copying note of
+     * {@link #getMessageCollection()}.
+     *
+     * @param to The final recipient
+     * @return The messages for the host (an empty collection if there are
+     * none)
+     */
+    protected Collection<Message> getMessagesFor(DTNHost to) {
+        Map<String, Message> forHost = this.messagesByDestination.get(to);
+        if (forHost == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(forHost.values());
+    }
+
+    /**
+     * Returns the final recipients of the messages this router is carrying.
+     * The set is a read-only view: see the copying note of
+     * {@link #getMessageCollection()}.
+     *
+     * @return The hosts that the buffered messages are for
+     */
+    protected Set<DTNHost> getMessageDestinations() {
+        return Collections.unmodifiableSet(this.messagesByDestination.keySet());
+    }
+
+    /**
+     * Returns the messages this router is carrying whose TTL has expired
+     * (i.e., {@link Message#getTtl()} is zero or less) at the current
+     * simulation time, in the order of their expiry times. Only the messages
+     * that are about to expire are visited, so the call is cheap when no
+     * message has expired.
+     *
+     * @return The expired messages (an empty list if there are none)
+     */
+    protected List<Message> getExpiredMessages() {
+        /* TTL is in whole minutes, so it is zero already a minute before
+         * the expiry time */
+        List<Message> expired = this.expiryQueue.getExpired(
+                SimClock.getTime() + 60);
+        for (Iterator<Message> i = expired.iterator(); i.hasNext();) {
+            if (i.next().getTtl() > 0) {
+                i.remove();
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Stops returning a message from {@link #getExpiredMessages()}, e.g.,
+     * when an expired message can't be dropped yet and the caller keeps
+     * track of it itself. The message is returned again only if it is
+     * removed from the buffer and added back.
+     *
+     * @param id Identifier of the message
+     */
+    protected void ignoreExpiry(String id) {
+        this.expiryQueue.remove(id);
+    }
+
+    /**
+     * Returns the messages of this router in the sending queue order, or in
+     * the random queue mode, in the (unspecified) order of
+     * {@link #getMessageCollection()}. In the ordered queue modes, the
+     * messages are iterated in order without copying or sorting them, and
+     * messages can be added to and removed from the buffer while iterating.
+     * In the random mode, the same copying rules apply as for
+     * {@link #getMessageCollection()}.
+     *
+     * @return The messages in the queue order
+     * @see #isSendQueueOrdered()
+     */
+    protected Collection<Message> getQueuedMessages() {
+        if (this.sendQueue == null) {
+            return this.messages.values();
+        }
+        return this.sendQueue;
+    }
+
+    /**
+     * Returns the order of the sending queue
+     *
+     * @return The order of {@link #getQueuedMessages()}, or null in the
+     * random queue mode
+     */
+    protected Comparator<Message> getSendQueueOrder() {
+        return this.sendQueueOrder;
+    }
+
+    /**
+     * Returns true if {@link #getQueuedMessages()} returns the messages in
+     * the sending queue order, i.e., if the messages, and lists made by
+     * iterating them, don't need to be sorted with
+     * {@link #sortByQueueMode(List)}.
+     *
+     * @return True in the ordered queue modes, false in the random mode
+     */
+    protected boolean isSendQueueOrdered() {
+        return this.sendQueue != null;
+    }
+
     /**
      * Returns the number of messages this router has
      *
@@ -468,7 +631,20 @@ public abstract class MessageRouter {
      * message, if false, nothing is informed.
      */
     protected void addToMessages(Message m, boolean newMessage) {
-        this.messages.put(m.getId(), m);
+        Message old = this.messages.put(m.getId(), m);
+        if (old != null) {
+            removeFromDestinationIndex(old);
+        }
+        Map<String, Message> forHost = this.messagesByDestination.get(m.getTo());
+        if (forHost == null) {
+            forHost = new LinkedHashMap<String, Message>();
+            this.messagesByDestination.put(m.getTo(), forHost);
+        }
+        forHost.put(m.getId(), m);
+        this.expiryQueue.add(m);
+        if (this.sendQueue != null) {
+            this.sendQueue.add(m);
+        }
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -485,9 +661,29 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        if (m != null) {
+            removeFromDestinationIndex(m);
+            this.expiryQueue.remove(id);
+            if (this.sendQueue != null) {
+                this.sendQueue.remove(id);
+            }
+        }
         return m;
     }
 
+    /**
+     * Removes a message from the messages-by-final-recipient index
+     *
+     * @param m The message to remove
+     */
+    private void removeFromDestinationIndex(Message m) {
+        Map<String, Message> forHost = this.messagesByDestination.get(m.getTo());
+        forHost.remove(m.getId());
+        if (forHost.isEmpty()) {
+            this.messagesByDestination.remove(m.getTo());
+        }
+    }
+
     /**
      * This method should be called (on the receiving host) when a message
      * transfer was aborted.
@@ -546,7 +742,9 @@ public abstract class MessageRouter {
     /**
      * Sorts/shuffles the given list according to the current sending queue
      * mode. The list can contain either Message or Tuple<Message, Connection>
-     * objects. Other objects cause error.
+     * objects. Other objects cause error. Lists made by iterating
+     * {@link #getQueuedMessages()} are already in the order of the ordered
+     * queue modes.
      *
      * @param list The list to sort or shuffle
      * @return The sorted/shuffled list
@@ -559,13 +757,14 @@ public abstract class MessageRouter {
                 Collections.shuffle(list, new Random(SimClock.getIntTime()));
                 break;
             case Q_MODE_FIFO:
+            case Q_MODE_CUSTOM:
+                final Comparator<Message> queueOrder = sendQueue.order();
                 Collections.sort(list,
                         new Comparator() {
                     /**
-                     * Compares two tuples by their messages' receiving time
+                     * Compares two tuples by their messages' queue order
                      */
                     public int compare(Object o1, Object o2) {
-                        double diff;
                         Message m1, m2;
 
                         if (o1 instanceof Tuple) {
@@ -579,15 +778,10 @@ public abstract class MessageRouter {
                                     + "the list");
                         }
 
-                        diff = m1.getReceiveTime() - m2.getReceiveTime();
-                        if (diff == 0) {
-                            return 0;
-                        }
-                        return (diff < 0 ? -1 : 1);
+                        return queueOrder.compare(m1, m2);
                     }
                 });
                 break;
-            /* add more queue modes here */
             default:
                 throw new SimError("Unknown queue mode " + sendQueueMode);
         }
@@ -610,12 +804,8 @@ public abstract class MessageRouter {
                 /* return randomly (enough) but consistently -1, 0 or 1 */
                 return (m1.hashCode() / 2 + m2.hashCode() / 2) % 3 - 1;
             case Q_MODE_FIFO:
-                double diff = m1.getReceiveTime() - m2.getReceiveTime();
-                if (diff == 0) {
-                    return 0;
-                }
-                return (diff < 0 ? -1 : 1);
-            /* add more queue modes here */
+            case Q_MODE_CUSTOM:
+                return Integer.signum(sendQueueOrder.compare(m1, m2));
             default:
                 throw new SimError("Unknown queue mode " + sendQueueMode);
         }
@@ -204,7 +204,7 @@ public class ProphetRouter extends ActiveRouter {
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * @return The return value of {@link #tryMessagesForConnected(Collection)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
 		List<Tuple<Message, Connection>> messages = 
@@ -415,7 +415,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * @return The return value of {@link #tryMessagesForConnected(Collection)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
 		List<Tuple<Message, Connection>> messages = 
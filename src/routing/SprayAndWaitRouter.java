@@ -98,8 +98,10 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<Message> copiesLeft = sortByQueueMode(getMessagesWithCopiesLeft());
+		List<Message> copiesLeft = getMessagesWithCopiesLeft();
+		if (!isSendQueueOrdered()) {
+			sortByQueueMode(copiesLeft);
+		}
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -110,12 +112,13 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The list is in the order of {@link #getQueuedMessages()}.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<Message> getMessagesWithCopiesLeft() {
 		List<Message> list = new ArrayList<Message>();
 
-		for (Message m : getMessageCollection()) {
+		for (Message m : getQueuedMessages()) {
 			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
 			assert nrofCopies != null : "SnW message " + m + " didn't have " + 
 				"nrof copies property!";
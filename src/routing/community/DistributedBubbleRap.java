@@ -12,6 +12,7 @@ import core.*;
 import routing.DecisionEngineRouter;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
+import routing.util.UtilityOrder;
 
 /**
  * <p>Implements the Distributed BubbleRap Routing Algorithm from Hui et al. 
@@ -162,6 +163,7 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 
 	public boolean newMessage(Message m)
 	{
+		setUtility(m);
 		return true; // Always keep and attempt to forward a created message
 	}
 
@@ -172,7 +174,22 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 
 	public boolean shouldSaveReceivedMessage(Message m, DTNHost thisHost)
 	{
-		return m.getTo() != thisHost;
+		if(m.getTo() == thisHost) return false;
+		setUtility(m);
+		return true;
+	}
+	
+	/**
+	 * Sets the utility of a message that is about to be buffered (see
+	 * {@link UtilityOrder}): messages destined to this node's local community
+	 * are worth more than the ones that are still bubbling up, so with the
+	 * UtilityOrder drop order the latter are dropped first.
+	 * @param m The message
+	 */
+	private void setUtility(Message m)
+	{
+		m.updateProperty(UtilityOrder.UTILITY_PROPERTY,
+				commumesWithHost(m.getTo()) ? 1 : 0);
 	}
 
 	public boolean shouldSendMessageToHost(Message m, DTNHost otherHost, DTNHost thisHost)
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Message order where the messages with the shortest remaining TTL are
+ * first. As a sending queue order, they are sent first; as a drop order,
+ * they are dropped first.
+ */
+public class ExpiryOrder implements Comparator<Message> {
+	public int compare(Message m1, Message m2) {
+		return Double.compare(m1.getExpiryTime(), m2.getExpiryTime());
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import core.Message;
+
+/**
+ * The messages of a router's buffer by their expiry times (see
+ * {@link Message#getExpiryTime()}). The messages are kept in a binary
+ * min-heap, so adding and removing a message takes logarithmic time and
+ * finding the expired messages takes time only in proportion to the number
+ * of expired messages. Messages with infinite TTL never expire and are not
+ * kept in the heap. The TTL of a message must not change while the message
+ * is in the queue.
+ */
+public class ExpiryQueue {
+	/** the heap of the entries; the root has the earliest expiry time */
+	private ArrayList<Entry> heap;
+	/** entries by message IDs */
+	private HashMap<String, Entry> byId;
+	/** insertion sequence number of the next message */
+	private long nextSeq;
+
+	/** order of the entries: expiry time, then insertion order */
+	private static final Comparator<Entry> ENTRY_ORDER =
+		new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				int c = Double.compare(e1.expiry, e2.expiry);
+				if (c != 0) {
+					return c;
+				}
+				return Long.compare(e1.seq, e2.seq);
+			}
+		};
+
+	/**
+	 * A queued message and its place in the heap
+	 */
+	private static class Entry {
+		private Message message;
+		private double expiry;
+		private long seq;
+		private int index;
+
+		private Entry(Message message, long seq) {
+			this.message = message;
+			this.expiry = message.getExpiryTime();
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Creates an empty queue
+	 */
+	public ExpiryQueue() {
+		this.heap = new ArrayList<Entry>();
+		this.byId = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Adds a message to the queue. A message with the same ID is replaced.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		remove(m.getId());
+		if (m.getExpiryTime() == Double.MAX_VALUE) {
+			return; // infinite TTL; never expires
+		}
+
+		Entry e = new Entry(m, nextSeq++);
+		e.index = heap.size();
+		heap.add(e);
+		byId.put(m.getId(), e);
+		siftUp(e);
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param id ID of the message to remove
+	 * @return True if the message was in the queue, false if not
+	 */
+	public boolean remove(String id) {
+		Entry e = byId.remove(id);
+		if (e == null) {
+			return false;
+		}
+
+		Entry last = heap.remove(heap.size() - 1);
+		if (last != e) {
+			last.index = e.index;
+			heap.set(e.index, last);
+			if (ENTRY_ORDER.compare(last, e) < 0) {
+				siftUp(last);
+			}
+			else {
+				siftDown(last);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the earliest expiry time of the queued messages
+	 * @return The expiry time or Double.MAX_VALUE if the queue is empty
+	 */
+	public double getNextExpiryTime() {
+		return heap.isEmpty() ? Double.MAX_VALUE : heap.get(0).expiry;
+	}
+
+	/**
+	 * Returns the messages that have expired at the given time, i.e., whose
+	 * expiry time is the given time or earlier. The messages are not removed
+	 * from the queue.
+	 * @param time The time
+	 * @return The expired messages in the order of their expiry times
+	 * (messages with the same expiry time in the order they were added)
+	 */
+	public List<Message> getExpired(double time) {
+		if (getNextExpiryTime() > time) {
+			return Collections.emptyList(); // the usual case
+		}
+
+		/* the expired entries form a subtree at the root of the heap */
+		List<Entry> expired = new ArrayList<Entry>();
+		collectExpired(0, time, expired);
+		Collections.sort(expired, ENTRY_ORDER);
+
+		List<Message> messages = new ArrayList<Message>(expired.size());
+		for (Entry e : expired) {
+			messages.add(e.message);
+		}
+		return messages;
+	}
+
+	/**
+	 * Collects the expired entries of a subtree of the heap
+	 * @param index Index of the root of the subtree
+	 * @param time The time
+	 * @param expired The list where the entries are collected
+	 */
+	private void collectExpired(int index, double time, List<Entry> expired) {
+		if (index >= heap.size() || heap.get(index).expiry > time) {
+			return;
+		}
+		expired.add(heap.get(index));
+		collectExpired(2 * index + 1, time, expired);
+		collectExpired(2 * index + 2, time, expired);
+	}
+
+	/**
+	 * Returns the number of messages in the queue
+	 * @return The number of messages
+	 */
+	public int size() {
+		return heap.size();
+	}
+
+	/**
+	 * Removes all messages from the queue
+	 */
+	public void clear() {
+		heap.clear();
+		byId.clear();
+	}
+
+	/**
+	 * Moves an entry towards the root until its parent is before it
+	 * @param e The entry to move
+	 */
+	private void siftUp(Entry e) {
+		int i = e.index;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			Entry p = heap.get(parent);
+			if (ENTRY_ORDER.compare(p, e) <= 0) {
+				break;
+			}
+			p.index = i;
+			heap.set(i, p);
+			i = parent;
+		}
+		e.index = i;
+		heap.set(i, e);
+	}
+
+	/**
+	 * Moves an entry away from the root until its children are after it
+	 * @param e The entry to move
+	 */
+	private void siftDown(Entry e) {
+		int i = e.index;
+		int size = heap.size();
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && ENTRY_ORDER.compare(heap.get(child + 1),
+					heap.get(child)) < 0) {
+				child++;
+			}
+			Entry c = heap.get(child);
+			if (ENTRY_ORDER.compare(e, c) <= 0) {
+				break;
+			}
+			c.index = i;
+			heap.set(i, c);
+			i = child;
+		}
+		e.index = i;
+		heap.set(i, e);
+	}
+}
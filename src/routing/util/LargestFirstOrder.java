@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Message order where the largest messages are first. As a drop order, the
+ * largest messages are dropped first, so a new message needs to drop as few
+ * messages as possible.
+ */
+public class LargestFirstOrder implements Comparator<Message> {
+	public int compare(Message m1, Message m2) {
+		return Integer.compare(m2.getSize(), m1.getSize());
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.AbstractCollection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import core.Connection;
+import core.Message;
+import core.Tuple;
+
+/**
+ * Queue of message-connection tuples that a router is going to try to send
+ * (e.g., the messages that a routing decision engine wants to forward to the
+ * peers of the connections). The tuples are iterated in the order they were
+ * added. The tuples are indexed both by connection (a queue per connection)
+ * and by message ID, so removing the tuple of a sent message, all tuples of
+ * a deleted message, or all tuples of a connection that went down doesn't
+ * require searching the whole queue.
+ *
+ * <P>Each message is queued at most once per connection. The iterators
+ * don't fail if the queue is modified while iterating (e.g., when a
+ * message is deleted while trying to send it): the removed tuples are
+ * skipped, but tuples added while iterating may be skipped too.</P>
+ */
+public class OutgoingQueue
+		extends AbstractCollection<Tuple<Message, Connection>> {
+	/** the first and the last entry of the linked list of the entries */
+	private Entry head;
+	private Entry tail;
+	/** the entries of each connection by message IDs, in the queue order */
+	private HashMap<Connection, Map<String, Entry>> byConnection;
+	/** the entries of each message by connections */
+	private HashMap<String, Map<Connection, Entry>> byId;
+	private int size;
+
+	/**
+	 * A queued tuple. The entries are linked in the queue order. A removed
+	 * entry keeps its link to the next entry, so iterators can continue from
+	 * it.
+	 */
+	private static class Entry {
+		private Tuple<Message, Connection> tuple;
+		private Entry prev;
+		private Entry next;
+		private boolean removed;
+
+		private Entry(Message m, Connection con) {
+			this.tuple = new Tuple<Message, Connection>(m, con);
+		}
+
+		private String getId() {
+			return tuple.getKey().getId();
+		}
+
+		private Connection getConnection() {
+			return tuple.getValue();
+		}
+	}
+
+	/**
+	 * Creates an empty queue
+	 */
+	public OutgoingQueue() {
+		this.byConnection = new HashMap<Connection, Map<String, Entry>>();
+		this.byId = new HashMap<String, Map<Connection, Entry>>();
+	}
+
+	/**
+	 * Adds a message to the end of the queue of a connection
+	 * @param m The message
+	 * @param con The connection to send the message over
+	 * @return True if the message was added, false if it was already queued
+	 * for the connection
+	 */
+	public boolean add(Message m, Connection con) {
+		Map<String, Entry> forCon = byConnection.get(con);
+		if (forCon == null) {
+			forCon = new LinkedHashMap<String, Entry>();
+			byConnection.put(con, forCon);
+		}
+		else if (forCon.containsKey(m.getId())) {
+			return false;
+		}
+
+		Entry e = new Entry(m, con);
+		forCon.put(m.getId(), e);
+		Map<Connection, Entry> forId = byId.get(m.getId());
+		if (forId == null) {
+			forId = new HashMap<Connection, Entry>(4);
+			byId.put(m.getId(), forId);
+		}
+		forId.put(con, e);
+
+		e.prev = tail;
+		if (tail == null) {
+			head = e;
+		}
+		else {
+			tail.next = e;
+		}
+		tail = e;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds a message-connection tuple to the end of the queue
+	 * @see #add(Message, Connection)
+	 */
+	@Override
+	public boolean add(Tuple<Message, Connection> t) {
+		return add(t.getKey(), t.getValue());
+	}
+
+	/**
+	 * Removes a message from the queue of a connection
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return True if the message was queued for the connection, false if
+	 * not
+	 */
+	public boolean remove(String id, Connection con) {
+		Map<Connection, Entry> forId = byId.get(id);
+		if (forId == null) {
+			return false;
+		}
+		Entry e = forId.remove(con);
+		if (e == null) {
+			return false;
+		}
+		if (forId.isEmpty()) {
+			byId.remove(id);
+		}
+		removeFromConnection(e);
+		unlink(e);
+		return true;
+	}
+
+	/**
+	 * Removes a message from the queues of all connections
+	 * @param id ID of the message
+	 * @return The number of removed tuples
+	 */
+	public int removeMessage(String id) {
+		Map<Connection, Entry> forId = byId.remove(id);
+		if (forId == null) {
+			return 0;
+		}
+		for (Entry e : forId.values()) {
+			removeFromConnection(e);
+			unlink(e);
+		}
+		return forId.size();
+	}
+
+	/**
+	 * Removes the queue of a connection (i.e., all tuples of the connection)
+	 * @param con The connection
+	 * @return The number of removed tuples
+	 */
+	public int removeConnection(Connection con) {
+		Map<String, Entry> forCon = byConnection.remove(con);
+		if (forCon == null) {
+			return 0;
+		}
+		for (Entry e : forCon.values()) {
+			Map<Connection, Entry> forId = byId.get(e.getId());
+			forId.remove(con);
+			if (forId.isEmpty()) {
+				byId.remove(e.getId());
+			}
+			unlink(e);
+		}
+		return forCon.size();
+	}
+
+	/**
+	 * Removes an entry from the queue of its connection
+	 */
+	private void removeFromConnection(Entry e) {
+		Map<String, Entry> forCon = byConnection.get(e.getConnection());
+		forCon.remove(e.getId());
+		if (forCon.isEmpty()) {
+			byConnection.remove(e.getConnection());
+		}
+	}
+
+	/**
+	 * Removes an entry from the linked list
+	 */
+	private void unlink(Entry e) {
+		if (e.prev == null) {
+			head = e.next;
+		}
+		else {
+			e.prev.next = e.next;
+		}
+		if (e.next == null) {
+			tail = e.prev;
+		}
+		else {
+			e.next.prev = e.prev;
+		}
+		e.prev = null;
+		e.removed = true;
+		size--;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (Entry e = head; e != null; e = e.next) {
+			e.removed = true;
+		}
+		byConnection.clear();
+		byId.clear();
+		head = tail = null;
+		size = 0;
+	}
+
+	@Override
+	public Iterator<Tuple<Message, Connection>> iterator() {
+		return new Iterator<Tuple<Message, Connection>>() {
+			/** the last returned entry or null if none is returned yet */
+			private Entry current;
+
+			/**
+			 * Returns the first entry after the current one that is still
+			 * in the queue
+			 */
+			private Entry lookupNext() {
+				Entry e = (current == null ? head : current.next);
+				while (e != null && e.removed) {
+					e = e.next;
+				}
+				return e;
+			}
+
+			public boolean hasNext() {
+				return lookupNext() != null;
+			}
+
+			public Tuple<Message, Connection> next() {
+				Entry e = lookupNext();
+				if (e == null) {
+					throw new NoSuchElementException();
+				}
+				current = e;
+				return e.tuple;
+			}
+
+			public void remove() {
+				if (current == null || current.removed) {
+					throw new IllegalStateException();
+				}
+				OutgoingQueue.this.remove(current.getId(),
+						current.getConnection());
+			}
+		};
+	}
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Message order by receive time. As a sending queue order, the messages are
+ * sent in the order they were received (FIFO); as a drop order, the oldest
+ * messages are dropped first.
+ */
+public class ReceiveTimeOrder implements Comparator<Message> {
+	public int compare(Message m1, Message m2) {
+		return Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+import core.Message;
+
+/**
+ * The messages of a router's buffer in the order of a sending queue (or in
+ * another order, e.g., the order of dropping messages). The order is kept
+ * up to date when messages are added and removed, so the queue can be
+ * iterated in order without copying or sorting the buffer.
+ * Messages that are equal by the order are in the order they were added.
+ * The values that the order compares (e.g., receive time or size) must not
+ * change while the message is in the queue.
+ *
+ * <P>The messages are kept in a linked list, so iterating is as cheap as
+ * iterating a list, and new messages that go last in the order (e.g., in
+ * the FIFO order) are appended without searching. The iterators don't fail
+ * if the queue is modified while iterating: the removed messages are
+ * skipped, but messages added while iterating may be skipped too.</P>
+ */
+public class SendQueue extends AbstractCollection<Message> {
+	/** the queued messages in the queue order (for finding the place of
+	 * new messages) */
+	private TreeSet<Entry> entries;
+	/** entries by message IDs */
+	private HashMap<String, Entry> byId;
+	/** the first and the last entry of the linked list of the entries */
+	private Entry head;
+	private Entry tail;
+	/** the order of the messages */
+	private Comparator<Message> order;
+	/** the order of the messages, including the insertion order */
+	private Comparator<Message> queueOrder;
+	/** insertion sequence number of the next message */
+	private long nextSeq;
+
+	/**
+	 * A queued message. The entries are linked in the queue order. A removed
+	 * entry keeps its link to the next entry, so iterators can continue from
+	 * it.
+	 */
+	private static class Entry {
+		private Message message;
+		private long seq;
+		private Entry prev;
+		private Entry next;
+		private boolean removed;
+
+		private Entry(Message message, long seq) {
+			this.message = message;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Creates an empty queue
+	 * @param order The order of the messages in the queue
+	 */
+	public SendQueue(final Comparator<Message> order) {
+		this.order = order;
+		this.queueOrder = createQueueOrder();
+		this.entries = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				int c = order.compare(e1.message, e2.message);
+				if (c != 0) {
+					return c;
+				}
+				return Long.compare(e1.seq, e2.seq);
+			}
+		});
+		this.byId = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Adds a message to the queue. A message with the same ID is replaced.
+	 * @param m The message to add
+	 * @return true
+	 */
+	@Override
+	public boolean add(Message m) {
+		remove(m.getId());
+		Entry e = new Entry(m, nextSeq++);
+
+		Entry next;
+		if (tail == null || order.compare(tail.message, m) <= 0) {
+			next = null; // the usual case: new message goes last
+		}
+		else {
+			next = entries.higher(e);
+		}
+		entries.add(e);
+		byId.put(m.getId(), e);
+
+		e.next = next;
+		e.prev = (next == null ? tail : next.prev);
+		if (e.prev == null) {
+			head = e;
+		}
+		else {
+			e.prev.next = e;
+		}
+		if (next == null) {
+			tail = e;
+		}
+		else {
+			next.prev = e;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with
+	 * the ID
+	 */
+	public Message remove(String id) {
+		Entry e = byId.remove(id);
+		if (e == null) {
+			return null;
+		}
+		entries.remove(e);
+		unlink(e);
+		return e.message;
+	}
+
+	/**
+	 * Removes an entry from the linked list
+	 */
+	private void unlink(Entry e) {
+		if (e.prev == null) {
+			head = e.next;
+		}
+		else {
+			e.prev.next = e.next;
+		}
+		if (e.next == null) {
+			tail = e.prev;
+		}
+		else {
+			e.next.prev = e.prev;
+		}
+		e.prev = null;
+		e.removed = true;
+	}
+
+	/**
+	 * Returns the order of this queue. Unlike the order given to the
+	 * constructor, the returned order compares the queued messages that are
+	 * equal by that order by the order they were added to the queue.
+	 * @return The order of the queue
+	 */
+	public Comparator<Message> order() {
+		return queueOrder;
+	}
+
+	/**
+	 * Creates the order of this queue
+	 * @see #order()
+	 */
+	private Comparator<Message> createQueueOrder() {
+		return new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				int c = order.compare(m1, m2);
+				if (c != 0) {
+					return c;
+				}
+				Entry e1 = byId.get(m1.getId());
+				Entry e2 = byId.get(m2.getId());
+				if (e1 == null || e2 == null || e1.message != m1 ||
+						e2.message != m2) {
+					return 0; // not in the queue
+				}
+				return Long.compare(e1.seq, e2.seq);
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return byId.size();
+	}
+
+	@Override
+	public void clear() {
+		for (Entry e = head; e != null; e = e.next) {
+			e.removed = true;
+		}
+		entries.clear();
+		byId.clear();
+		head = tail = null;
+	}
+
+	/**
+	 * Returns the first message of the queue
+	 * @return The first message or null if the queue is empty
+	 */
+	public Message first() {
+		return head == null ? null : head.message;
+	}
+
+	@Override
+	public Iterator<Message> iterator() {
+		return new Iterator<Message>() {
+			/** the last returned entry or null if none is returned yet */
+			private Entry current;
+
+			/**
+			 * Returns the first entry after the current one that is still
+			 * in the queue
+			 */
+			private Entry lookupNext() {
+				Entry e = (current == null ? head : current.next);
+				while (e != null && e.removed) {
+					e = e.next;
+				}
+				return e;
+			}
+
+			public boolean hasNext() {
+				return lookupNext() != null;
+			}
+
+			public Message next() {
+				Entry e = lookupNext();
+				if (e == null) {
+					throw new NoSuchElementException();
+				}
+				current = e;
+				return e.message;
+			}
+
+			public void remove() {
+				if (current == null || current.removed) {
+					throw new IllegalStateException();
+				}
+				SendQueue.this.remove(current.message.getId());
+			}
+		};
+	}
+}
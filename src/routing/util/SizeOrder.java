@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Message order where the smallest messages are first. As a sending queue
+ * order, the smallest messages are sent first; as a drop order, they are
+ * dropped first.
+ */
+public class SizeOrder implements Comparator<Message> {
+	public int compare(Message m1, Message m2) {
+		return Integer.compare(m1.getSize(), m2.getSize());
+	}
+}
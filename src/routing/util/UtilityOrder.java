@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Message order where the messages with the lowest utility are first (e.g.,
+ * dropped first as a drop order). The utility of a message is its
+ * {@link #UTILITY_PROPERTY} property (a Number); messages without the
+ * property have zero utility. The property is set by a routing decision
+ * engine when a message is created or received (e.g., by
+ * {@link routing.community.DistributedBubbleRap}), and it must not change
+ * while the message is in the buffer (see {@link SendQueue}).
+ */
+public class UtilityOrder implements Comparator<Message> {
+	/** Name of the message property that holds the utility ({@value}) */
+	public static final String UTILITY_PROPERTY = "UtilityOrder.utility";
+
+	public int compare(Message m1, Message m2) {
+		return Double.compare(getUtility(m1), getUtility(m2));
+	}
+
+	/**
+	 * Returns the utility of a message
+	 * @param m The message
+	 * @return The value of the utility property or 0 if it is not set
+	 */
+	public static double getUtility(Message m) {
+		Object utility = m.getProperty(UTILITY_PROPERTY);
+		if (utility == null) {
+			return 0;
+		}
+		return ((Number)utility).doubleValue();
+	}
+}
@@ -24,6 +24,7 @@ public class AllTests {
 		
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
+		suite.addTestSuite(MovementModelTest.class);
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
@@ -49,6 +50,18 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(SpatialHashGridTest.class);
+		suite.addTestSuite(MultiResolutionGridTest.class);
+		suite.addTestSuite(PositionStoreTest.class);
+		suite.addTestSuite(ContactTraceTest.class);
+		suite.addTestSuite(MappedEventsReaderTest.class);
+		suite.addTestSuite(BinaryEventsTest.class);
+		suite.addTestSuite(PrefetcherTest.class);
+		suite.addTestSuite(SendQueueTest.class);
+		suite.addTestSuite(ExpiryQueueTest.class);
+		suite.addTestSuite(OutgoingQueueTest.class);
+		suite.addTestSuite(SimContextTest.class);
+		suite.addTestSuite(LiveMetricsReportTest.class);
 		//$JUnit-END$
 		return suite;
 	}
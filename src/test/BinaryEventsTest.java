@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryEventsReader;
+import input.BinaryEventsWriter;
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests writing and reading binary external events files.
+ */
+public class BinaryEventsTest extends TestCase {
+	private File tempFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempFile = File.createTempFile("binaryEeTest",
+				BinaryEventsReader.BINARY_EXT);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		tempFile.delete();
+	}
+
+	private List<ExternalEvent> createEvents() {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new MessageCreateEvent(1, 2, "M1", 1000, 50, 0.5));
+		events.add(new MessageRelayEvent(1, 3, "M1", 1.0,
+				MessageRelayEvent.SENDING));
+		events.add(new MessageRelayEvent(1, 3, "M1", 2.0,
+				MessageRelayEvent.TRANSFERRED));
+		events.add(new ConnectionEvent(3, 4, null, true, 2.5));
+		events.add(new ConnectionEvent(3, 4, "btInterface", false, 3.0));
+		events.add(new ExternalEvent(3.5));
+		events.add(new MessageDeleteEvent(3, "M1", 4.0, true));
+		events.add(new MessageDeleteEvent(2, "*", 4.0, false));
+		events.add(new MessageCreateEvent(2, 1, "M\u00e4", 10, 0, 5.0));
+		return events;
+	}
+
+	private void assertSameEvents(List<ExternalEvent> expected,
+			List<ExternalEvent> events) {
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i < expected.size(); i++) {
+			ExternalEvent e = expected.get(i);
+			ExternalEvent ee = events.get(i);
+			assertEquals(e.getClass(), ee.getClass());
+			assertEquals(e.toString(), ee.toString());
+		}
+	}
+
+	public void testWriteAndRead() throws Exception {
+		List<ExternalEvent> events = createEvents();
+		BinaryEventsReader.storeToBinaryFile(tempFile.getPath(), events);
+		assertTrue(BinaryEventsReader.isBinaryEeFile(tempFile));
+
+		BinaryEventsReader r = new BinaryEventsReader(tempFile);
+		List<ExternalEvent> read = new ArrayList<ExternalEvent>();
+		read.addAll(r.readEvents(4));
+		read.addAll(r.readEvents(100));
+		assertSameEvents(events, read);
+		assertEquals(0, r.readEvents(10).size());
+
+		MessageCreateEvent ce = (MessageCreateEvent)read.get(0);
+		assertEquals(1000, ce.getSize());
+		assertEquals(50, ce.getResponseSize());
+		assertEquals(MessageRelayEvent.TRANSFERRED,
+				((MessageRelayEvent)read.get(2)).getStage());
+		assertTrue(((MessageDeleteEvent)read.get(6)).isDrop());
+		assertFalse(((MessageDeleteEvent)read.get(7)).isDrop());
+	}
+
+	public void testReadsSerializedEvents() throws Exception {
+		List<ExternalEvent> events = createEvents();
+		ObjectOutputStream out = new ObjectOutputStream(
+				new FileOutputStream(tempFile));
+		out.writeObject(Integer.valueOf(events.size()));
+		for (ExternalEvent ee : events) {
+			out.writeObject(ee);
+		}
+		out.close();
+		assertTrue(BinaryEventsReader.isBinaryEeFile(tempFile));
+
+		BinaryEventsReader r = new BinaryEventsReader(tempFile);
+		assertSameEvents(events, r.readEvents(100));
+	}
+
+	private void writeTimes(int blockSize, double[] times)
+			throws IOException {
+		BinaryEventsWriter w = new BinaryEventsWriter(tempFile.getPath(),
+				blockSize);
+		for (int i=0; i < times.length; i++) {
+			w.write(new MessageRelayEvent(0, 1, "M" + i, times[i],
+					MessageRelayEvent.SENDING));
+		}
+		w.close();
+	}
+
+	private void checkSeek(double time, double expectedTime,
+			int expectedLeft) {
+		BinaryEventsReader r = new BinaryEventsReader(tempFile);
+		r.seek(time);
+		List<ExternalEvent> events = r.readEvents(100);
+		assertEquals(expectedLeft, events.size());
+		if (expectedLeft > 0) {
+			assertEquals(expectedTime, events.get(0).getTime());
+		}
+		r.close();
+	}
+
+	public void testSeek() throws Exception {
+		double[] times = {1, 2, 2, 2, 3, 5, 5, 8, 9, 9, 10};
+		for (int blockSize : new int[] {0, 1, 2, 3, 100}) {
+			writeTimes(blockSize, times);
+			checkSeek(0, 1, 11);
+			checkSeek(1, 1, 11);
+			checkSeek(2, 2, 10);
+			checkSeek(2.5, 3, 7);
+			checkSeek(5, 5, 6);
+			checkSeek(9, 9, 3);
+			checkSeek(10, 10, 1);
+			checkSeek(11, 0, 0);
+		}
+	}
+
+	public void testSeekOnlyForward() throws Exception {
+		writeTimes(2, new double[] {1, 2, 3, 4, 5, 6});
+		BinaryEventsReader r = new BinaryEventsReader(tempFile);
+		assertEquals(3, r.readEvents(3).size());
+		r.seek(1);
+		List<ExternalEvent> events = r.readEvents(100);
+		assertEquals(3, events.size());
+		assertEquals(4.0, events.get(0).getTime());
+	}
+
+	public void testInvalidFile() throws Exception {
+		FileOutputStream out = new FileOutputStream(tempFile);
+		out.write("0 C M1 1 2 100".getBytes());
+		out.close();
+		assertFalse(BinaryEventsReader.isBinaryEeFile(tempFile));
+
+		try {
+			new BinaryEventsReader(tempFile);
+			fail("Invalid file should not be read");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
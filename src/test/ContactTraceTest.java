@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SimpleBroadcastInterface;
+import input.ConnectionEvent;
+import input.ContactTraceQueue;
+import input.ExternalEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.ContactTraceReport;
+import report.Report;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Tests for recording contact traces with ContactTraceReport and replaying
+ * them with ContactTraceQueue.
+ */
+public class ContactTraceTest extends TestCase {
+	private static final String SET_PREFIX = "ContactTraceReport.";
+
+	private File traceFile;
+	private ContactTraceReport report;
+	private TestUtils utils;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		traceFile = File.createTempFile("cttrace",
+				ContactTraceQueue.TRACE_EXT);
+		traceFile.deleteOnExit();
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(SET_PREFIX + Report.OUTPUT_SETTING,
+				traceFile.getAbsolutePath());
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		DTNHost.reset();
+
+		report = new ContactTraceReport();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(report);
+		utils = new TestUtils(cl, null, ts);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		traceFile.delete();
+	}
+
+	public void testReplaysRecordedEvents() {
+		DTNHost h0 = utils.createHost(new Coord(0,0));
+		DTNHost h1 = utils.createHost(new Coord(0,0));
+		DTNHost h2 = utils.createHost(new Coord(0,0));
+
+		/* more events than fit in one block */
+		int nrofEvents = ContactTraceQueue.MAX_BLOCK_SIZE * 2 + 10;
+		for (int i=0; i < nrofEvents / 2; i++) {
+			clock.setTime(i * 1.5);
+			DTNHost from = (i % 2 == 0 ? h1 : h2);
+			from.forceConnection(h0, null, true);
+			clock.setTime(i * 1.5 + 0.25);
+			h0.forceConnection(from, null, false);
+		}
+		report.done();
+
+		ContactTraceQueue q = new ContactTraceQueue(traceFile);
+		for (int i=0; i < nrofEvents / 2; i++) {
+			int from = (i % 2 == 0 ? 1 : 2);
+			assertEquals(i * 1.5, q.nextEventsTime());
+			assertEvent(q.nextEvent(), i * 1.5, from, 0, true);
+			assertEquals(i * 1.5 + 0.25, q.nextEventsTime());
+			assertEvent(q.nextEvent(), i * 1.5 + 0.25, 0, from, false);
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, q.nextEvent().getTime());
+	}
+
+	private void assertEvent(ExternalEvent ee, double time, int from, int to,
+			boolean up) {
+		assertTrue(ee instanceof ConnectionEvent);
+		assertEquals(time, ee.getTime());
+		String expected = "CONN " + (up ? "up" : "down") + " @" + time + " " +
+			from + "<->" + to;
+		assertEquals(expected, ee.toString());
+	}
+
+	public void testInterfacesOfAlreadyConnectedHosts() {
+		TestSettings ts = new TestSettings();
+		String[] types = {"btIf", "wlanIf"};
+		for (String type : types) {
+			ts.putSetting(type + ".transmitRange", "10");
+			ts.putSetting(type + ".transmitSpeed", "1");
+		}
+		DTNHost[] hosts = new DTNHost[2];
+		for (int i=0; i < hosts.length; i++) {
+			List<NetworkInterface> interfaces =
+				new ArrayList<NetworkInterface>();
+			for (String type : types) {
+				interfaces.add(new SimpleBroadcastInterface(
+						new Settings(type)));
+			}
+			hosts[i] = utils.createHost(interfaces, new Coord(0,0));
+		}
+
+		/* the second interface comes up while the first one is up */
+		clock.setTime(1);
+		hosts[0].forceConnection(hosts[1], "btIf", true);
+		clock.setTime(2);
+		hosts[0].forceConnection(hosts[1], "wlanIf", true);
+		clock.setTime(3);
+		hosts[0].forceConnection(hosts[1], "btIf", false);
+		clock.setTime(4);
+		hosts[0].forceConnection(hosts[1], "wlanIf", false);
+		report.done();
+
+		ContactTraceQueue q = new ContactTraceQueue(traceFile);
+		String[] expected = {"btIf", "wlanIf", "btIf", "wlanIf"};
+		for (int i=0; i < expected.length; i++) {
+			ConnectionEvent ce = (ConnectionEvent)q.nextEvent();
+			assertEquals(i + 1.0, ce.getTime());
+			assertEquals(expected[i], ce.getInterfaceId());
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+	}
+
+	public void testEmptyTrace() {
+		report.done();
+		ContactTraceQueue q = new ContactTraceQueue(traceFile);
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+	}
+
+	public void testInvalidFileIsRejected() throws IOException {
+		java.io.PrintWriter out = new java.io.PrintWriter(traceFile);
+		out.println("0.0 CONN 0 1 up");
+		out.close();
+		try {
+			new ContactTraceQueue(traceFile);
+			fail("Text file accepted as a contact trace");
+		} catch (core.SimError e) {
+			// expected
+		}
+	}
+}
@@ -4,8 +4,10 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import routing.util.UtilityOrder;
 import core.DTNHost;
 import core.Message;
 
@@ -375,6 +377,51 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	/**
+	 * Fills h1's buffer with messages of sizes 20, 20 and 50 (created in 
+	 * that order), lets h2 start sending a message of size 40 to h1, and 
+	 * returns the IDs of the messages that h1 dropped to make room for it
+	 */
+	private String runDropOrder(String dropOrder) throws Exception {
+		ts.putSetting(ActiveRouter.DROP_ORDER_S, dropOrder);
+		try {
+			this.setUp();
+		} finally {
+			ts.removeSetting(ActiveRouter.DROP_ORDER_S);
+		}
+		
+		int[] sizes = {20, 20, 50};
+		double[] utilities = {2, 1, 3};
+		for (int i=0; i < sizes.length; i++) {
+			Message m = new Message(h1, h3, "M" + i, sizes[i]);
+			m.addProperty(UtilityOrder.UTILITY_PROPERTY, utilities[i]);
+			h1.createNewMessage(m);
+			clock.advance(10);
+		}
+		h2.createNewMessage(new Message(h2, h3, "fromH2", 40));
+		checkCreates(4);
+		
+		h2.connect(h1);
+		h2.update(true);
+		String dropped = "";
+		while (mc.next() && mc.getLastType() == mc.TYPE_DELETE) {
+			assertEquals(h1, mc.getLastFrom());
+			assertTrue(mc.getLastDropped());
+			dropped += mc.getLastMsg().getId() + " ";
+		}
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		return dropped;
+	}
+	
+	/**
+	 * Tests the drop order setting
+	 */
+	public void testDropOrder() throws Exception {
+		assertEquals("M0 M1 ", runDropOrder("ReceiveTimeOrder"));
+		assertEquals("M2 ", runDropOrder("LargestFirstOrder"));
+		assertEquals("M1 M0 ", runDropOrder("UtilityOrder"));
+	}
+	
 	/**
 	 * Tests creating a new message when the message buffer is full and the
 	 * message that should be removed is the message being sent 
@@ -498,6 +545,53 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 	
 		assertFalse(mc.next());
 	}
+
+	/**
+	 * Tests that messages are dropped as soon as their TTL expires, also
+	 * while the host is transferring, but not while they're being sent
+	 */
+	public void testTtlExpiryWhileTransferring() {
+		Message m2 = new Message(h1, h3, msgId2, 1);
+		h1.createNewMessage(m2);
+		Message m1 = new Message(h1, h2, msgId1, 50);
+		h1.createNewMessage(m1);
+		checkCreates(2);
+
+		// start the transfer of msg1 (takes 5 s) just before both expire
+		clock.advance((TTL-1)*60 - 1);
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId1);
+		assertFalse(mc.next());
+
+		clock.advance(1);
+		updateAllNodes();
+		assertFalse(mc.next()); // not expired yet
+
+		// msg2 expires while transferring; msg1 is being sent and is kept
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertTrue(mc.getLastDropped());
+		assertFalse(mc.next());
+		assertEquals(1, h1.getNrofMessages());
+
+		// msg1 is dropped right after its transfer is done
+		clock.advance(3);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+		assertEquals(0, h1.getNrofMessages());
+	}
 	
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
@@ -539,11 +633,23 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	/** sizes of the messages of the message exchange test */
+	private int[] exchangeSizes = {1, 1, 1, 1, 1};
+
 	private void newMessage(String id, DTNHost from, DTNHost to) {
 		Message m = new Message(from, to, id, 1);
 		from.createNewMessage(m);
 	}
 
+	/**
+	 * Creates a message of the message exchange test. The size of message
+	 * "N" is exchangeSizes[N-1].
+	 */
+	private void newExchangeMessage(String id, DTNHost from, DTNHost to) {
+		int size = exchangeSizes[Integer.parseInt(id) - 1];
+		from.createNewMessage(new Message(from, to, id, size));
+	}
+
 	/**
 	 * Runs a message exchange between node h1 and another node
 	 * @param withDestination If true, the other node is the final destination
@@ -557,17 +663,17 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		DTNHost other = h2;
 		
 		clock.setTime(0.0);
-		newMessage("1", h1, dst);
+		newExchangeMessage("1", h1, dst);
 		clock.advance(2.5);
-		newMessage("2", h1, dst);
+		newExchangeMessage("2", h1, dst);
 		clock.advance(3.5);
-		newMessage("3", h1, dst);
+		newExchangeMessage("3", h1, dst);
 		clock.advance(1.5);
-		newMessage("3", h1, dst);
+		newExchangeMessage("3", h1, dst);
 		clock.advance(2.0);
-		newMessage("4", h1, dst);		
+		newExchangeMessage("4", h1, dst);		
 		clock.advance(2.5);;
-		newMessage("5", h1, dst);		
+		newExchangeMessage("5", h1, dst);		
 		
 		if (withDestination) {
 			h1.connect(dst);
@@ -609,6 +715,23 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertEquals(expectedIds, runMessageExchange(false));
 	}
 	
+	public void testCustomSendingQ() throws Exception {
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				""+MessageRouter.Q_MODE_FIFO);
+		ts.putSetting(MessageRouter.SEND_QUEUE_ORDER_S, "SizeOrder");
+		this.setUp();
+		exchangeSizes = new int[] {5, 4, 1, 2, 3};
+
+		String expectedIds = "3 4 5 2 1 ";
+
+		try {
+			assertEquals(expectedIds, runMessageExchange(true));
+			assertEquals(expectedIds, runMessageExchange(false));
+		} finally {
+			ts.removeSetting(MessageRouter.SEND_QUEUE_ORDER_S);
+		}
+	}
+
 	public void testRandomSendingQ() throws Exception {
 		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S, 
 				""+MessageRouter.Q_MODE_RANDOM);
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.ExpiryQueue;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the message expiry queue.
+ */
+public class ExpiryQueueTest extends TestCase {
+	private DTNHost from;
+	private DTNHost to;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		from = utils.createHost();
+		to = utils.createHost();
+	}
+
+	/**
+	 * Creates a message at the given time
+	 */
+	private Message msg(String id, double created, int ttl) {
+		clock.setTime(created);
+		Message m = new Message(from, to, id, 1);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	private String ids(List<Message> messages) {
+		StringBuilder sb = new StringBuilder();
+		for (Message m : messages) {
+			sb.append(m.getId()).append(' ');
+		}
+		return sb.toString();
+	}
+
+	public void testExpired() {
+		ExpiryQueue q = new ExpiryQueue();
+		q.add(msg("a", 0, 10));
+		q.add(msg("b", 30, 5));
+		q.add(msg("c", 60, 2));
+		q.add(msg("d", 0, 3));
+		q.add(msg("e", 120, 1));
+		q.add(msg("f", 0, Message.INFINITE_TTL));
+		assertEquals(5, q.size()); // infinite TTL is not queued
+
+		assertEquals(180.0, q.getNextExpiryTime());
+		assertEquals("", ids(q.getExpired(179.9)));
+		// equal expiry times in insertion order
+		assertEquals("c d e ", ids(q.getExpired(180)));
+		assertEquals("c d e b ", ids(q.getExpired(330)));
+		assertEquals("c d e b a ", ids(q.getExpired(1e9)));
+		assertEquals(5, q.size()); // nothing is removed
+	}
+
+	public void testReplaceAndRemove() {
+		ExpiryQueue q = new ExpiryQueue();
+		for (int i=0; i < 20; i++) {
+			q.add(msg("m" + i, 0, 20 - i));
+		}
+		q.add(msg("m5", 0, 100)); // replaces the old m5
+		assertEquals(20, q.size());
+		assertTrue(q.remove("m19"));
+		assertTrue(q.remove("m10"));
+		assertFalse(q.remove("m10"));
+		assertFalse(q.remove("x"));
+		assertEquals(18, q.size());
+
+		assertEquals(120.0, q.getNextExpiryTime());
+		assertEquals("m18 m17 m16 ", ids(q.getExpired(240)));
+		assertEquals("m18 m17 m16 m15 m14 m13 m12 m11 m9 m8 m7 m6 m4 m3 " +
+				"m2 m1 m0 m5 ", ids(q.getExpired(6000)));
+
+		q.clear();
+		assertEquals(0, q.size());
+		assertEquals(Double.MAX_VALUE, q.getNextExpiryTime());
+		assertEquals("", ids(q.getExpired(6000)));
+	}
+}
@@ -66,6 +66,16 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 	
+	public void testPrefetchingEEQ() {
+		for (int prefetch = 1; prefetch <= 3; prefetch++) {
+			int preload = 3;
+			eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+					prefetch);
+			checkEeq(eeq, preload);
+			assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		}
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest", 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import report.LiveMetricsReport;
+import report.LiveMetricsServer;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests the JMX registration and the Prometheus rendering of the live
+ * metrics of runs that have the same scenario name.
+ */
+public class LiveMetricsReportTest extends TestCase {
+	private static final String NS = "LiveMetricsReport.";
+	private static final String SCENARIO = "live metrics test";
+
+	private TestSettings ts;
+	private MBeanServer mbs;
+	private String base;
+	private File outFile1;
+	private File outFile2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		this.ts = new TestSettings();
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.NAME_S,
+				SCENARIO);
+		this.outFile1 = File.createTempFile("lmrtest", ".tmp");
+		this.outFile2 = File.createTempFile("lmrtest", ".tmp");
+		outFile1.deleteOnExit();
+		outFile2.deleteOnExit();
+
+		this.mbs = ManagementFactory.getPlatformMBeanServer();
+		this.base = LiveMetricsServer.DOMAIN + ":type=LiveMetrics,scenario=" +
+			ObjectName.quote(SCENARIO);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		/* don't leave the metrics of failed tests registered */
+		for (ObjectName on : registered()) {
+			mbs.unregisterMBean(on);
+		}
+		super.tearDown();
+	}
+
+	private Set<ObjectName> registered() throws Exception {
+		return mbs.queryNames(new ObjectName(base + ",*"), null);
+	}
+
+	private LiveMetricsReport newReport(File outFile) {
+		ts.putSetting(NS + "output", outFile.getAbsolutePath());
+		return new LiveMetricsReport();
+	}
+
+	public void testDuplicateScenarioNames() throws Exception {
+		LiveMetricsReport r1 = newReport(outFile1);
+		LiveMetricsReport r2 = newReport(outFile2);
+
+		ObjectName first = new ObjectName(base);
+		ObjectName second = new ObjectName(base + ",instance=2");
+		Set<ObjectName> names = registered();
+		assertEquals(2, names.size());
+		assertTrue(names.contains(first));
+		assertTrue(names.contains(second));
+		assertEquals(SCENARIO, mbs.getAttribute(first, "ScenarioName"));
+		assertEquals(SCENARIO, mbs.getAttribute(second, "ScenarioName"));
+		assertEquals(0L, mbs.getAttribute(second, "MessagesCreated"));
+
+		String text = LiveMetricsServer.render(names);
+		assertTrue(text.contains("one_sim_time_seconds{scenario=\"" +
+				SCENARIO + "\"} 0.0\n"));
+		assertTrue(text.contains("one_sim_time_seconds{scenario=\"" +
+				SCENARIO + "\",instance=\"2\"} 0.0\n"));
+
+		r1.done();
+		r2.done();
+		assertTrue(registered().isEmpty());
+
+		/* the final report of a run has only the run's own metrics */
+		String report1 = new String(Files.readAllBytes(outFile1.toPath()));
+		String report2 = new String(Files.readAllBytes(outFile2.toPath()));
+		assertTrue(report1.contains("one_messages_created_total{scenario=\"" +
+				SCENARIO + "\"} 0\n"));
+		assertFalse(report1.contains("instance="));
+		assertTrue(report2.contains("one_messages_created_total{scenario=\"" +
+				SCENARIO + "\",instance=\"2\"} 0\n"));
+	}
+}
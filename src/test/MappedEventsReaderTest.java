@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.MappedEventsReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests that the memory-mapped external events reader reads the same events
+ * as the standard events reader.
+ */
+public class MappedEventsReaderTest extends TestCase {
+	private static final String[] LINES = {
+		"# comment line",
+		"1000.000\tC\tMSG_1\tp1\tp2\t100000",
+		"1000.1 C MSG_2 p1 p2 5000 200",
+		"1000.25 C MSG_3 12 c3 5000 notAnInt",
+		"",
+		"   \t ",
+		"1533.405\tS\tMSG_1\tp1\tp0",
+		"1542\tA\tMSG_1\tp1\tp0",
+		"1543.5  DE  MSG_2  p1  p0  extra fields",
+		"2000.123456789012345678 DR MSG_1 p10",
+		"2001.5e1 R * c70",
+		"-0.5 CONN p1 p2 up",
+		"3000 CONN 1 2 DOWN btInterface",
+		"3000.0000001 CONN w0 t128 Up",
+		"0.1 CONN p1 p2 down"
+	};
+
+	private File tempFile;
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		if (tempFile != null) {
+			tempFile.delete();
+		}
+	}
+
+	private void writeFile(String[] lines, String newline) throws IOException {
+		tempFile = File.createTempFile("mappedEeTest", ".txt");
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append(newline);
+		}
+		FileOutputStream out = new FileOutputStream(tempFile);
+		out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+		out.close();
+	}
+
+	private List<String> readAll(boolean mapped, int preload) {
+		List<String> events = new ArrayList<String>();
+		List<ExternalEvent> read;
+		if (mapped) {
+			MappedEventsReader r = new MappedEventsReader(tempFile);
+			while ((read = r.readEvents(preload)).size() > 0) {
+				addAll(events, read);
+			}
+			r.close();
+		}
+		else {
+			StandardEventsReader r = new StandardEventsReader(tempFile);
+			while ((read = r.readEvents(preload)).size() > 0) {
+				addAll(events, read);
+			}
+			r.close();
+		}
+		return events;
+	}
+
+	private void addAll(List<String> events, List<ExternalEvent> read) {
+		for (ExternalEvent ee : read) {
+			events.add(ee.getClass().getSimpleName() + " " +
+					Double.doubleToLongBits(ee.getTime()) + " " + ee);
+		}
+	}
+
+	public void testSameEventsAsStandardReader() throws IOException {
+		writeFile(LINES, "\n");
+		List<String> standard = readAll(false, 100);
+		assertEquals(12, standard.size());
+		assertEquals(standard, readAll(true, 100));
+		assertEquals(standard, readAll(true, 1));
+	}
+
+	public void testWindowsLineEndings() throws IOException {
+		writeFile(LINES, "\r\n");
+		assertEquals(readAll(false, 5), readAll(true, 5));
+	}
+
+	public void testDecimalTimesAreExact() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		java.util.Random rng = new java.util.Random(1);
+		for (int i=0; i < 1000; i++) {
+			lines.add(rng.nextInt(100000) + "." + rng.nextInt(1000000) +
+					" CONN " + i + " " + (i+1) + " up");
+			lines.add(rng.nextDouble() * 1e6 + " CONN p" + i + " p1 down");
+		}
+		writeFile(lines.toArray(new String[0]), "\n");
+		assertEquals(readAll(false, 100), readAll(true, 100));
+	}
+
+	public void testInvalidEvents() throws IOException {
+		String[][] invalid = {{"1.0 X MSG p1 p2"}, {"1.0 C MSG p1 p2"},
+				{"1.0 CONN p1 p2 sideways"}, {"1.0 S MSG p1 p2p"},
+				{"x S MSG p1 p2"}, {" # not a comment"}};
+		for (String[] lines : invalid) {
+			writeFile(lines, "\n");
+			try {
+				new MappedEventsReader(tempFile).readEvents(10);
+				fail("Invalid line '" + lines[0] + "' accepted");
+			} catch (SimError e) {
+				// expected
+			}
+			tempFile.delete();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.Coord;
+
+/**
+ * Tests for the per-host random streams of movement models.
+ */
+public class MovementModelTest extends TestCase {
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		new TestSettings();
+		MovementModel.reset(); // back to the default seed
+	}
+
+	/**
+	 * Returns the first value of the random stream of a host
+	 */
+	private double firstValue(int seed, int address) {
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "" + seed);
+		MovementModel.reset();
+		MovementModel mm = new StationaryMovement(new Coord(0,0));
+		mm.setHostRng(address);
+		return mm.getOwnRng().nextDouble();
+	}
+
+	public void testSameSeedAndAddressGiveSameStream() {
+		assertEquals(firstValue(3, 5), firstValue(3, 5));
+	}
+
+	public void testHighSeedBitsAreUsed() {
+		assertFalse(firstValue(1, 0) == firstValue(65537, 0));
+		assertFalse(firstValue(1, 0) == firstValue(1 | (1 << 30), 0));
+	}
+
+	public void testNearbyAddressesAreUncorrelated() {
+		double min = 1;
+		double max = 0;
+		for (int address = 0; address < 10; address++) {
+			double v = firstValue(0, address);
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		assertTrue("first values spread only " + (max - min),
+				max - min > 0.3);
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.MultiResolutionGrid;
+import interfaces.MultiResolutionGrid.LevelStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * Tests for the multi-resolution connectivity grid with interfaces of two
+ * different radio ranges
+ */
+public class MultiResolutionGridTest extends TestCase {
+	private static final int WORLD_SIZE = 1000;
+	private static final double LONG_RANGE = 50;
+	private static final double SHORT_RANGE = 5;
+	private static final int NROF_HOSTS = 400;
+
+	private TestSettings ts;
+	private Random rng;
+	private List<NetworkInterface> interfaces;
+	private MultiResolutionGrid grid;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ConnectivityGrid.reset();
+		MultiResolutionGrid.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setTransmitRange(LONG_RANGE);
+		rng = new Random(1);
+		interfaces = new ArrayList<NetworkInterface>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			// hosts close to each other so that also short ranges connect
+			DTNHost h = utils.createHost(new Coord(
+					rng.nextDouble() * WORLD_SIZE / 4,
+					rng.nextDouble() * WORLD_SIZE / 4));
+			interfaces.add(h.getInterfaces().get(0));
+		}
+		for (int i=1; i<NROF_HOSTS; i+=2) {
+			setRange(interfaces.get(i), SHORT_RANGE);
+		}
+
+		grid = MultiResolutionGrid.MultiResolutionGridFactory(1);
+		grid.addInterfaces(interfaces);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		ConnectivityGrid.reset();
+		MultiResolutionGrid.reset();
+		TestSettings.init(null);
+		ConnectivityOptimizer.reset();
+	}
+
+	private void setRange(NetworkInterface ni, double range) {
+		ni.moduleValueChanged(NetworkInterface.RANGE_ID, range);
+	}
+
+	private boolean inRange(NetworkInterface a, NetworkInterface b) {
+		return a.getLocation().distance(b.getLocation()) <=
+			Math.min(a.getTransmitRange(), b.getTransmitRange());
+	}
+
+	public void testFindsAllInterfacesWithinRange() {
+		ConnectivityGrid single = ConnectivityGrid.ConnectivityGridFactory(1,
+				LONG_RANGE);
+		single.addInterfaces(interfaces);
+
+		int nrofInRange = 0;
+		long multiCandidates = 0;
+		long singleCandidates = 0;
+		for (NetworkInterface a : interfaces) {
+			Collection<NetworkInterface> near = grid.getNearInterfaces(a);
+			for (NetworkInterface b : interfaces) {
+				if (a != b && inRange(a, b)) {
+					assertTrue(near.contains(b));
+					nrofInRange++;
+				}
+			}
+			multiCandidates += near.size();
+			singleCandidates += single.getNearInterfaces(a).size();
+		}
+
+		assertTrue(nrofInRange > NROF_HOSTS);
+		assertTrue(multiCandidates * 2 < singleCandidates);
+	}
+
+	public void testHalfNearVisitsEveryPairWithinRangeOnce() {
+		Set<String> pairs = new HashSet<String>();
+		final List<String> visited = new ArrayList<String>();
+		for (final NetworkInterface a : interfaces) {
+			for (NetworkInterface b : interfaces) {
+				if (a.getAddress() < b.getAddress() && inRange(a, b)) {
+					pairs.add(a.getAddress() + "-" + b.getAddress());
+				}
+			}
+			grid.forEachHalfNear(a, b -> {
+				if (inRange(a, b)) {
+					visited.add(Math.min(a.getAddress(), b.getAddress()) +
+							"-" + Math.max(a.getAddress(), b.getAddress()));
+				}
+			});
+		}
+
+		assertEquals(pairs.size(), visited.size());
+		assertEquals(pairs, new HashSet<String>(visited));
+	}
+
+	public void testLevelsFollowRangeChanges() {
+		List<LevelStats> stats = grid.getLevelStats();
+		assertEquals(2, stats.size());
+		assertEquals(8, stats.get(0).getCellSize());
+		assertEquals(NROF_HOSTS / 2, stats.get(0).getNrofInterfaces());
+		assertEquals(64, stats.get(1).getCellSize());
+		assertEquals(NROF_HOSTS / 2, stats.get(1).getNrofInterfaces());
+		assertTrue(stats.get(0).getNrofOccupiedCells() > 0);
+		assertTrue(stats.get(0).getMaxInterfacesPerCell() >= 1);
+
+		NetworkInterface changed = interfaces.get(1);
+		setRange(changed, LONG_RANGE);
+		grid.updateLocation(changed);
+		stats = grid.getLevelStats();
+		assertEquals(NROF_HOSTS / 2 - 1, stats.get(0).getNrofInterfaces());
+		assertEquals(NROF_HOSTS / 2 + 1, stats.get(1).getNrofInterfaces());
+		assertEquals(NROF_HOSTS, grid.getAllInterfaces().size());
+
+		for (NetworkInterface b : interfaces) {
+			if (b != changed && inRange(changed, b)) {
+				assertTrue(grid.getNearInterfaces(changed).contains(b));
+			}
+		}
+
+		grid.getNearInterfaces(changed);
+		assertTrue(grid.getNrofQueries() > 0);
+		long candidates = 0;
+		for (LevelStats s : grid.getLevelStats()) {
+			candidates += s.getNrofCandidates();
+		}
+		assertTrue(candidates > 0);
+	}
+
+	public void testSelectedWithSetting() {
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.CONNECTIVITY_OPTIMIZER_S,
+				World.MULTI_RESOLUTION_OPTIMIZER);
+		ConnectivityOptimizer.reset();
+		assertTrue(ConnectivityOptimizer.getOptimizer(2, LONG_RANGE)
+				instanceof MultiResolutionGrid);
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import routing.util.OutgoingQueue;
+import core.CBRConnection;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Tuple;
+
+/**
+ * Tests for the queue of outgoing message-connection tuples.
+ */
+public class OutgoingQueueTest extends TestCase {
+	private DTNHost h0;
+	private Connection c1;
+	private Connection c2;
+	private Message m1;
+	private Message m2;
+	private Message m3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		h0 = utils.createHost();
+		c1 = connect(utils.createHost(), "c1");
+		c2 = connect(utils.createHost(), "c2");
+		m1 = new Message(h0, h0, "m1", 1);
+		m2 = new Message(h0, h0, "m2", 1);
+		m3 = new Message(h0, h0, "m3", 1);
+	}
+
+	private Connection connect(final DTNHost to, final String name) {
+		return new CBRConnection(h0, h0.getInterfaces().get(0), to,
+				to.getInterfaces().get(0), 1) {
+			public String toString() {
+				return name;
+			}
+		};
+	}
+
+	private String tuples(OutgoingQueue q) {
+		StringBuilder sb = new StringBuilder();
+		for (Tuple<Message, Connection> t : q) {
+			sb.append(t.getKey().getId()).append('-').append(t.getValue());
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
+
+	private OutgoingQueue fill() {
+		OutgoingQueue q = new OutgoingQueue();
+		assertTrue(q.add(m1, c1));
+		assertTrue(q.add(m2, c2));
+		assertTrue(q.add(m2, c1));
+		assertTrue(q.add(m3, c2));
+		assertTrue(q.add(m1, c2));
+		assertFalse(q.add(m2, c1)); // already queued
+		return q;
+	}
+
+	public void testOrder() {
+		OutgoingQueue q = fill();
+		assertEquals(5, q.size());
+		assertEquals("m1-c1 m2-c2 m2-c1 m3-c2 m1-c2 ", tuples(q));
+	}
+
+	public void testRemove() {
+		OutgoingQueue q = fill();
+		assertTrue(q.remove("m2", c1));
+		assertFalse(q.remove("m2", c1));
+		assertFalse(q.remove("m3", c1));
+		assertEquals("m1-c1 m2-c2 m3-c2 m1-c2 ", tuples(q));
+
+		assertEquals(2, q.removeMessage("m1"));
+		assertEquals(0, q.removeMessage("m1"));
+		assertEquals("m2-c2 m3-c2 ", tuples(q));
+
+		assertTrue(q.add(m1, c1));
+		assertEquals(2, q.removeConnection(c2));
+		assertEquals(0, q.removeConnection(c2));
+		assertEquals("m1-c1 ", tuples(q));
+		assertEquals(1, q.size());
+
+		q.clear();
+		assertEquals(0, q.size());
+		assertEquals("", tuples(q));
+		assertTrue(q.add(m1, c1)); // indexes are cleared too
+	}
+
+	public void testModifyWhileIterating() {
+		OutgoingQueue q = fill();
+		Iterator<Tuple<Message, Connection>> i = q.iterator();
+		assertEquals("m1", i.next().getKey().getId());
+		q.removeMessage("m2"); // removes the next two tuples
+		assertEquals("m3", i.next().getKey().getId());
+		i.remove();
+		q.removeConnection(c1);
+		assertEquals("m1", i.next().getKey().getId());
+		assertFalse(i.hasNext());
+		assertEquals("m1-c2 ", tuples(q));
+	}
+}
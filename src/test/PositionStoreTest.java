@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.PositionStore;
+
+/**
+ * Tests for the host position store
+ */
+public class PositionStoreTest extends TestCase {
+	private TestUtils utils;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		PositionStore.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	public void testFollowsHostLocation() {
+		DTNHost h = utils.createHost(new Coord(10, 20));
+		int a = h.getAddress();
+		assertEquals(10.0, PositionStore.getX(a));
+		assertEquals(20.0, PositionStore.getY(a));
+
+		h.setLocation(new Coord(30, 40));
+		assertEquals(30.0, PositionStore.getX(a));
+		assertEquals(40.0, PositionStore.getY(a));
+	}
+
+	public void testGrowsForLargeAddresses() {
+		PositionStore.setLocation(1000, new Coord(3, 4));
+		PositionStore.setLocation(0, new Coord(0, 0));
+		assertEquals(25.0, PositionStore.distanceSquared(0, 1000));
+	}
+
+	public void testFilterWithinRangeKeepsOrder() {
+		PositionStore.setLocation(0, new Coord(0, 0));
+		PositionStore.setLocation(1, new Coord(5, 0));
+		PositionStore.setLocation(2, new Coord(20, 0));
+		PositionStore.setLocation(3, new Coord(0, 10));
+		PositionStore.setLocation(4, new Coord(8, 8));
+
+		int[] addresses = {4, 2, 3, 1};
+		String[] items = {"d", "b", "c", "a"};
+		int n = PositionStore.filterWithinRange(0, 10, addresses, items, 4);
+
+		assertEquals(2, n);
+		assertEquals(3, addresses[0]);
+		assertEquals("c", items[0]);
+		assertEquals(1, addresses[1]);
+		assertEquals("a", items[1]);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.Prefetcher;
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests for the background batch reader.
+ */
+public class PrefetcherTest extends TestCase {
+
+	/**
+	 * Source of the numbers 0..(n-1) that fails after the given number
+	 */
+	private static class Numbers implements Prefetcher.Source<Integer> {
+		private int next;
+		private int n;
+		private int failAt;
+
+		private Numbers(int n, int failAt) {
+			this.n = n;
+			this.failAt = failAt;
+		}
+
+		public Integer read() {
+			if (next == failAt) {
+				throw new SimError("Failed at " + next);
+			}
+			return next < n ? next++ : null;
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		Prefetcher.reset();
+	}
+
+	public void testOrder() {
+		for (int lookahead = 1; lookahead <= 4; lookahead++) {
+			Prefetcher<Integer> p = Prefetcher.start("test",
+					new Numbers(100, -1), lookahead);
+			for (int i=0; i < 100; i++) {
+				assertEquals(Integer.valueOf(i), p.next());
+			}
+			assertNull(p.next());
+			assertNull(p.next());
+		}
+	}
+
+	public void testFailure() {
+		Prefetcher<Integer> p = Prefetcher.start("test",
+				new Numbers(10, 3), 2);
+		for (int i=0; i < 3; i++) {
+			assertEquals(Integer.valueOf(i), p.next());
+		}
+		try {
+			p.next();
+			fail("Reading error should be thrown");
+		} catch (SimError e) {
+			assertEquals("Failed at 3", e.getMessage());
+		}
+		assertNull(p.next());
+	}
+
+	public void testStop() {
+		Prefetcher<Integer> p = Prefetcher.start("test",
+				new Numbers(Integer.MAX_VALUE, -1), 2);
+		assertEquals(Integer.valueOf(0), p.next());
+		Prefetcher.reset();
+		assertNull(p.next());
+	}
+
+	public void testInvalidLookahead() {
+		try {
+			Prefetcher.start("test", new Numbers(1, -1), 0);
+			fail("Lookahead 0 should not be accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
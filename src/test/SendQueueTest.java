@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import routing.util.ReceiveTimeOrder;
+import routing.util.SendQueue;
+import routing.util.SizeOrder;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the incrementally ordered sending queue.
+ */
+public class SendQueueTest extends TestCase {
+	private DTNHost from;
+	private DTNHost to;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		from = utils.createHost();
+		to = utils.createHost();
+	}
+
+	private Message msg(String id, int size, double receiveTime) {
+		Message m = new Message(from, to, id, size);
+		m.setReceiveTime(receiveTime);
+		return m;
+	}
+
+	private String ids(SendQueue q) {
+		StringBuilder sb = new StringBuilder();
+		for (Message m : q) {
+			sb.append(m.getId()).append(' ');
+		}
+		return sb.toString();
+	}
+
+	public void testOrder() {
+		SendQueue q = new SendQueue(new ReceiveTimeOrder());
+		q.add(msg("a", 1, 5));
+		q.add(msg("b", 1, 1));
+		q.add(msg("c", 1, 5));
+		q.add(msg("d", 1, 3));
+		q.add(msg("e", 1, 1));
+		assertEquals(5, q.size());
+		// equal receive times in insertion order
+		assertEquals("b e d a c ", ids(q));
+		assertEquals("b", q.first().getId());
+	}
+
+	public void testReplaceAndRemove() {
+		SendQueue q = new SendQueue(new SizeOrder());
+		q.add(msg("a", 30, 0));
+		q.add(msg("b", 20, 0));
+		q.add(msg("c", 10, 0));
+		q.add(msg("b", 40, 0));
+		assertEquals(3, q.size());
+		assertEquals("c a b ", ids(q));
+
+		assertEquals("a", q.remove("a").getId());
+		assertNull(q.remove("a"));
+		assertEquals("c b ", ids(q));
+		q.clear();
+		assertEquals(0, q.size());
+		assertNull(q.first());
+		assertFalse(q.iterator().hasNext());
+	}
+
+	public void testModificationWhileIterating() {
+		SendQueue q = new SendQueue(new SizeOrder());
+		for (int i=1; i <= 5; i++) {
+			q.add(msg("m" + i, i, 0));
+		}
+
+		Iterator<Message> it = q.iterator();
+		assertEquals("m1", it.next().getId());
+		q.remove("m1"); // the current one
+		q.remove("m2"); // the next one
+		assertEquals("m3", it.next().getId());
+		q.add(msg("m6", 6, 0)); // after the current one
+		q.add(msg("m0", 0, 0)); // before the current one
+		it.remove();
+		assertEquals("m4", it.next().getId());
+		assertEquals("m5", it.next().getId());
+		assertEquals("m6", it.next().getId());
+		assertFalse(it.hasNext());
+		assertEquals("m0 m4 m5 m6 ", ids(q));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import report.Report;
+import core.SimContext;
+
+/**
+ * Tests for the isolated simulation contexts used by the concurrent batch
+ * runs. Runs small scenarios (using the default settings file) with
+ * different settings concurrently and checks that they don't see each
+ * other's static state.
+ */
+public class SimContextTest extends TestCase {
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.dir = Files.createTempDirectory("simcontext").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Writes the settings file of a small scenario
+	 * @param name Name of the scenario (and of the file)
+	 * @param nrofHosts Number of hosts in the scenario
+	 * @param endTime End time of the scenario
+	 * @return The file name
+	 */
+	private String writeConfig(String name, int nrofHosts, int endTime)
+			throws IOException {
+		File f = new File(dir, name + ".cfg");
+		FileWriter out = new FileWriter(f);
+		out.write("Scenario.name = " + name + "\n" +
+				"Scenario.endTime = " + endTime + "\n" +
+				"Scenario.nrofHostGroups = 1\n" +
+				"Group.movementModel = RandomWaypoint\n" +
+				"Group.nrofHosts = " + nrofHosts + "\n" +
+				"Events1.hosts = 0," + nrofHosts + "\n" +
+				"Events1.interval = 1,2\n" +
+				"Events1.size = 1k,2k\n" +
+				"MovementModel.worldSize = 200, 200\n" +
+				"btInterface.transmitRange = 50\n" +
+				"MovementModel.warmup = 0\n" +
+				"Report.nrofReports = 1\n" +
+				"Report.report1 = MessageStatsReport\n" +
+				"Report.reportDir = " + dir.getAbsolutePath() + "/\n");
+		out.close();
+		return f.getAbsolutePath();
+	}
+
+	private SimContext newContext(String confFile) {
+		return new SimContext(new String[] {confFile}, 0, null);
+	}
+
+	private String readReport(String name) throws IOException {
+		File f = new File(dir, name + "_MessageStatsReport" +
+				Report.OUT_SUFFIX);
+		return new String(Files.readAllBytes(f.toPath()));
+	}
+
+	/**
+	 * Runs a context's run in a new thread
+	 */
+	private Thread runInThread(final SimContext context,
+			final Throwable[] error) {
+		Thread t = new Thread() {
+			public void run() {
+				try {
+					context.run(0);
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		};
+		t.start();
+		return t;
+	}
+
+	public void testConcurrentRunsAreIsolated() throws Exception {
+		String confA = writeConfig("ctxA", 4, 100);
+		String confB = writeConfig("ctxB", 7, 200);
+
+		/* reference result of A when it runs alone */
+		SimContext alone = newContext(confA);
+		alone.run(0);
+		alone.close();
+		String reportAlone = readReport("ctxA");
+
+		SimContext a = newContext(confA);
+		SimContext b = newContext(confB);
+		Throwable[] errorA = new Throwable[1];
+		Throwable[] errorB = new Throwable[1];
+		Thread ta = runInThread(a, errorA);
+		Thread tb = runInThread(b, errorB);
+		ta.join();
+		tb.join();
+		a.close();
+		b.close();
+
+		assertNull("Run A failed: " + errorA[0], errorA[0]);
+		assertNull("Run B failed: " + errorB[0], errorB[0]);
+		/* each run sees only its own settings, clock and counters */
+		assertEquals(reportAlone, readReport("ctxA"));
+		assertTrue(readReport("ctxA").contains("sim_time: 100."));
+		assertTrue(readReport("ctxB").contains("sim_time: 200."));
+	}
+}
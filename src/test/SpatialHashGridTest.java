@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SpatialHashGrid;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * Tests for the spatial hash grid connectivity optimizer. The grid must
+ * find the same near interfaces, in the same order, as the connectivity
+ * grid.
+ */
+public class SpatialHashGridTest extends TestCase {
+	private static final int WORLD_SIZE = 1000;
+	private static final double RANGE = 50;
+	private static final int NROF_HOSTS = 200;
+
+	private TestSettings ts;
+	private TestUtils utils;
+	private Random rng;
+	private List<NetworkInterface> interfaces;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ConnectivityGrid.reset();
+		SpatialHashGrid.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+
+		utils = new TestUtils(null, null, ts);
+		utils.setTransmitRange(RANGE);
+		rng = new Random(1);
+		interfaces = new ArrayList<NetworkInterface>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			DTNHost h = utils.createHost(randomCoord());
+			interfaces.add(h.getInterfaces().get(0));
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		ConnectivityGrid.reset();
+		SpatialHashGrid.reset();
+		TestSettings.init(null);
+		ConnectivityOptimizer.reset();
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * WORLD_SIZE,
+				rng.nextDouble() * WORLD_SIZE);
+	}
+
+	public void testSameNearInterfacesAsConnectivityGrid() {
+		ConnectivityGrid grid = ConnectivityGrid.ConnectivityGridFactory(1,
+				RANGE);
+		SpatialHashGrid hash = SpatialHashGrid.SpatialHashGridFactory(1,
+				RANGE);
+		grid.addInterfaces(interfaces);
+		hash.addInterfaces(interfaces);
+		hash.addInterfaces(interfaces); // already present -> no effect
+		assertEquals(NROF_HOSTS, hash.getAllInterfaces().size());
+
+		for (int round=0; round<20; round++) {
+			for (NetworkInterface ni : interfaces) {
+				if (rng.nextBoolean()) {
+					ni.getHost().setLocation(randomCoord());
+				}
+				grid.updateLocation(ni);
+				hash.updateLocation(ni);
+			}
+			for (NetworkInterface ni : interfaces) {
+				assertEquals(grid.getNearInterfaces(ni),
+						hash.getNearInterfaces(ni));
+			}
+		}
+
+		NetworkInterface removed = interfaces.get(0);
+		grid.removeInterface(removed);
+		hash.removeInterface(removed);
+		assertEquals(NROF_HOSTS - 1, hash.getAllInterfaces().size());
+		assertEquals(0, hash.getNearInterfaces(removed).size());
+		for (NetworkInterface ni : interfaces.subList(1, NROF_HOSTS)) {
+			assertFalse(hash.getNearInterfaces(ni).contains(removed));
+			assertEquals(grid.getNearInterfaces(ni),
+					hash.getNearInterfaces(ni));
+		}
+	}
+
+	public void testForEachNearSameAsGetNearInterfaces() {
+		ConnectivityOptimizer[] optimizers = {
+			ConnectivityGrid.ConnectivityGridFactory(1, RANGE),
+			SpatialHashGrid.SpatialHashGridFactory(1, RANGE)};
+		final List<NetworkInterface> visited =
+			new ArrayList<NetworkInterface>();
+
+		for (ConnectivityOptimizer opt : optimizers) {
+			opt.addInterfaces(interfaces);
+			for (NetworkInterface ni : interfaces) {
+				ni.getHost().setLocation(randomCoord());
+				opt.updateLocation(ni);
+			}
+			for (NetworkInterface ni : interfaces) {
+				visited.clear();
+				opt.forEachNear(ni, visited::add);
+				assertEquals(opt.getNearInterfaces(ni), visited);
+			}
+
+			NetworkInterface removed = interfaces.get(0);
+			if (opt instanceof ConnectivityGrid) {
+				((ConnectivityGrid)opt).removeInterface(removed);
+			}
+			else {
+				((SpatialHashGrid)opt).removeInterface(removed);
+			}
+			visited.clear();
+			opt.forEachNear(removed, visited::add);
+			assertEquals(0, visited.size());
+		}
+	}
+
+	public void testForEachHalfNearVisitsEveryPairOnce() {
+		ConnectivityOptimizer[] optimizers = {
+			ConnectivityGrid.ConnectivityGridFactory(1, RANGE),
+			SpatialHashGrid.SpatialHashGridFactory(1, RANGE)};
+
+		for (ConnectivityOptimizer opt : optimizers) {
+			opt.addInterfaces(interfaces);
+			Set<String> nearPairs = new HashSet<String>();
+			final List<String> halfPairs = new ArrayList<String>();
+			for (final NetworkInterface ni : interfaces) {
+				for (NetworkInterface near : opt.getNearInterfaces(ni)) {
+					if (near != ni) {
+						nearPairs.add(pair(ni, near));
+					}
+				}
+				opt.forEachHalfNear(ni,
+						near -> halfPairs.add(pair(ni, near)));
+			}
+
+			assertTrue(nearPairs.size() > 0);
+			assertEquals(nearPairs.size(), halfPairs.size());
+			assertEquals(nearPairs, new HashSet<String>(halfPairs));
+		}
+	}
+
+	/**
+	 * Returns a string presentation of an unordered pair of interfaces
+	 */
+	private String pair(NetworkInterface a, NetworkInterface b) {
+		return Math.min(a.getAddress(), b.getAddress()) + "-" +
+			Math.max(a.getAddress(), b.getAddress());
+	}
+
+	public void testSelectedWithSetting() {
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.CONNECTIVITY_OPTIMIZER_S, World.SPATIAL_HASH_OPTIMIZER);
+		ConnectivityOptimizer.reset();
+		assertTrue(ConnectivityOptimizer.getOptimizer(2, RANGE)
+				instanceof SpatialHashGrid);
+
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.CONNECTIVITY_OPTIMIZER_S, World.GRID_OPTIMIZER);
+		ConnectivityOptimizer.reset();
+		assertTrue(ConnectivityOptimizer.getOptimizer(2, RANGE)
+				instanceof ConnectivityGrid);
+	}
+}
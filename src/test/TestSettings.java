@@ -63,4 +63,14 @@ public class TestSettings extends core.Settings {
 		props.put(key, value);
 	}	
 
+	/**
+	 * Removes a setting (e.g., one that a test has put)
+	 * @param key The key of the setting
+	 */
+	public void removeSetting(String key) {
+		if (props != null) {
+			props.remove(key);
+		}
+	}
+
 }
\ No newline at end of file
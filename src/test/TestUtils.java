@@ -28,6 +28,8 @@ public class TestUtils {
 	private String groupId = "h";
 	private List<DTNHost> allHosts;
 	private MessageRouter mr;
+	/** prototype of the hosts' interfaces (or null for test interfaces) */
+	private NetworkInterface niProto;
 	
 	private ModuleCommunicationBus comBus;
 
@@ -53,6 +55,15 @@ public class TestUtils {
 		this.mr = mr;
 	}
 	
+	/**
+	 * Sets the prototype of the network interfaces of the hosts created
+	 * after this call
+	 * @param niProto The prototype (or null for {@link TestInterface}s)
+	 */
+	public void setInterfaceProto(NetworkInterface niProto) {
+		this.niProto = niProto;
+	}
+
 	/**
 	 * @param conListeners the ConnectionListeners to set
 	 */
@@ -107,9 +118,12 @@ public class TestUtils {
 	 * @return the host
 	 */
 	public DTNHost createHost(MovementModel mmProto, String name) {		
-		NetworkInterface ni = new TestInterface(
-				comBus.getDouble(NetworkInterface.RANGE_ID, -1),
-				comBus.getInt(NetworkInterface.SPEED_ID, -1));
+		NetworkInterface ni = this.niProto;
+		if (ni == null) {
+			ni = new TestInterface(
+					comBus.getDouble(NetworkInterface.RANGE_ID, -1),
+					comBus.getInt(NetworkInterface.SPEED_ID, -1));
+		}
 		ni.setClisteners(conListeners);
 		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
 		li.add(ni);
@@ -123,6 +137,23 @@ public class TestUtils {
 		return host;		
 	}
 		
+	/**
+	 * Creates a host with the given interfaces to a location with stationary
+	 * movement model and default name.
+	 * @param niProtos Prototypes of the host's interfaces
+	 * @param loc The location of the host
+	 * @return The new host
+	 */
+	public DTNHost createHost(List<NetworkInterface> niProtos, Coord loc) {
+		for (NetworkInterface ni : niProtos) {
+			ni.setClisteners(conListeners);
+		}
+		DTNHost host = new DTNHost(msgListeners, null, groupId,
+				niProtos, comBus, new StationaryMovement(loc), mr);
+		this.allHosts.add(host);
+		return host;
+	}
+	
 	/**
 	 * Creates a host to a location with stationary movement model and
 	 * default name.
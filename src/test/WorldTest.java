@@ -5,16 +5,30 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import movement.RandomWaypoint;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
 import core.UpdateListener;
+import core.WarmupSnapshot;
 import core.World;
 
 /**
@@ -49,8 +63,15 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus));
 		}
 		
+		this.world = createWorld();
+	}
+
+	/**
+	 * Creates a world of the test hosts and event queues
+	 */
+	private World createWorld() {
 		TestScenario ts = new TestScenario();
-		this.world = new World(ts.getHosts(),ts.getWorldSizeX(), 
+		return new World(ts.getHosts(),ts.getWorldSizeX(), 
 				ts.getWorldSizeY(),ts.getUpdateInterval(), 
 				ts.getUpdateListeners(), ts.simulateConnections(), 
 				ts.getExternalEvents() );
@@ -99,6 +120,472 @@ public class WorldTest extends TestCase {
 	}
 	
 
+	public void testEventQueuesAreMergedInTimeOrder() {
+		List<String> processed = new ArrayList<String>();
+		eQueues.add(new TimesQueue("a", processed, 0.01, 0.03, 0.05));
+		eQueues.add(new TimesQueue("b", processed, 0.02, 0.03, 0.04));
+		World w = createWorld();
+		w.update();
+
+		assertEquals("[a0.01, b0.02, a0.03, b0.03, b0.04, a0.05]",
+				processed.toString());
+		assertEquals(6, w.getNrofProcessedEvents());
+		assertEquals(6, w.getNrofEventUpdates());
+		assertNrofUpdates(7);
+	}
+
+	public void testEventsAddedAfterConstructionAreProcessed() {
+		List<String> processed = new ArrayList<String>();
+		LateQueue late = new LateQueue("l", processed);
+		eQueues.add(new TimesQueue("a", processed, 0.02, 0.15));
+		eQueues.add(late);
+		World w = createWorld();
+		assertFalse(late.hasStableTime());
+
+		w.update();
+		late.add(0.13);
+		late.add(0.15);
+		w.update();
+
+		assertEquals("[a0.02, l0.13, a0.15, l0.15]", processed.toString());
+		assertEquals(4, w.getNrofProcessedEvents());
+	}
+
+	public void testCoalescedEventsShareHostUpdates() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.COALESCE_EVENTS_S,
+				"true");
+		List<String> processed = new ArrayList<String>();
+		eQueues.add(new TimesQueue("a", processed, 0.05, 0.05, 0.15));
+		eQueues.add(new TimesQueue("b", processed, 0.05, 0.15));
+		World w = createWorld();
+		w.update();
+		w.update();
+		TestSettings.init(null);
+
+		assertEquals(5, w.getNrofProcessedEvents());
+		assertEquals(2, w.getNrofEventUpdates());
+		assertNrofUpdates(4); // two event times and two intervals
+	}
+
+	public void testParallelMovementIsDeterministic() {
+		List<Coord> oneThread = new ArrayList<Coord>();
+		List<Coord> fourThreads = new ArrayList<Coord>();
+		runParallelWorld(1, false, false, oneThread, null);
+		runParallelWorld(4, false, false, fourThreads, null);
+
+		assertEquals(oneThread.size(), fourThreads.size());
+		for (int i=0; i<oneThread.size(); i++) {
+			assertEquals(oneThread.get(i), fourThreads.get(i));
+		}
+	}
+
+	public void testParallelConnectivityIsDeterministic() {
+		List<String> oneThread = new ArrayList<String>();
+		List<String> fourThreads = new ArrayList<String>();
+		runParallelWorld(1, true, false, new ArrayList<Coord>(),
+				oneThread);
+		runParallelWorld(4, true, false, new ArrayList<Coord>(),
+				fourThreads);
+
+		assertTrue(oneThread.size() > 0);
+		assertEquals(oneThread, fourThreads);
+	}
+
+	public void testSymmetricConnectivityFindsSameConnections() {
+		List<String> phased = new ArrayList<String>();
+		List<String> symmetric = new ArrayList<String>();
+		runParallelWorld(1, true, false, new ArrayList<Coord>(), phased);
+		runParallelWorld(1, true, true, new ArrayList<Coord>(), symmetric);
+
+		assertTrue(phased.size() > 0);
+		// connections may come up in a different order and direction
+		assertEquals(sortedPairs(phased), sortedPairs(symmetric));
+	}
+
+	public void testIncrementalConnectivityFindsSameConnections() {
+		List<String> all = new ArrayList<String>();
+		List<String> incremental = new ArrayList<String>();
+		int nrofIdle = runStationaryWorld(false, all);
+		int nrofIncrementalIdle = runStationaryWorld(true, incremental);
+
+		assertTrue(all.size() > 0);
+		// connections with idle hosts may be created by the other end
+		assertEquals(sortedPairs(all), sortedPairs(incremental));
+		assertEquals(0, nrofIdle);
+		assertTrue(nrofIncrementalIdle >= 100);
+	}
+
+	/**
+	 * Returns connection events with the hosts of each event in name order,
+	 * sorted
+	 */
+	private List<String> sortedPairs(List<String> conEvents) {
+		List<String> sorted = new ArrayList<String>();
+		for (String e : conEvents) {
+			String[] parts = e.split(" ");
+			if (parts[2].compareTo(parts[3]) > 0) {
+				e = parts[0] + " " + parts[1] + " " + parts[3] + " " +
+					parts[2];
+			}
+			sorted.add(e);
+		}
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	public void testAdaptiveStepSkipsQuiescentIntervals() {
+		TestSettings ts = new TestSettings(); // end time is 100
+		ts.putSetting(World.SETTINGS_NS + "." + World.ADAPTIVE_STEP_S,
+				"true");
+		SimClock.reset();
+		DTNHost.reset();
+		ConnectivityGrid.reset();
+
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.createHost(new Coord(0,0));
+		utils.createHost(new Coord(500,0));
+		final int[] listenerCalls = {0};
+		List<UpdateListener> uls = new ArrayList<UpdateListener>();
+		uls.add(new UpdateListener() {
+			public void updated(List<DTNHost> hosts) {
+				listenerCalls[0]++;
+			}
+		});
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, upInterval, uls,
+				true, new ArrayList<EventQueue>());
+		w.scheduleUpdate(50);
+
+		int nrofUpdates = 0;
+		while (SimClock.getTime() < 100 - TIME_DELTA) {
+			w.update();
+			nrofUpdates++;
+		}
+
+		ConnectivityGrid.reset();
+		TestSettings.init(null);
+
+		assertEquals(100, SimClock.getTime(), TIME_DELTA);
+		assertTrue(nrofUpdates < 10);
+		assertTrue(w.getNrofSkippedIntervals() > 900);
+		/* listeners are still informed once per update interval */
+		assertEquals(1000, listenerCalls[0]);
+	}
+
+	public void testKineticConnectivityPredictsExactContactTimes() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.KINETIC_CONNECTIVITY_S, "true");
+		SimClock.reset();
+		DTNHost.reset();
+		ConnectivityGrid.reset();
+
+		final List<Double> upTimes = new ArrayList<Double>();
+		final List<Double> downTimes = new ArrayList<Double>();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost h1, DTNHost h2) {
+				upTimes.add(SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+				downTimes.add(SimClock.getTime());
+			}
+		});
+
+		TestUtils utils = new TestUtils(cl, null, ts);
+		utils.setTransmitRange(10);
+		utils.createHost(new Coord(0,0));
+		/* passes the first host along the x-axis with speed 7 */
+		utils.createHost(new StationaryMovement(new Coord(100,0)) {
+			@Override
+			public Path getPath() {
+				Path p = new Path(7);
+				p.addWaypoint(new Coord(100,0));
+				p.addWaypoint(new Coord(-100,0));
+				return p;
+			}
+			@Override
+			public double nextPathAvailable() {
+				return 0;
+			}
+			@Override
+			public StationaryMovement replicate() {
+				return this;
+			}
+		}, null);
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, 1.0,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<25; i++) {
+			w.update();
+		}
+
+		ConnectivityGrid.reset();
+		TestSettings.init(null);
+
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(90.0 / 7, upTimes.get(0), TIME_DELTA);
+		assertEquals(110.0 / 7, downTimes.get(0), TIME_DELTA);
+	}
+
+	public void testWarmupSnapshotRestoresPostWarmupState() throws Exception {
+		File dir = Files.createTempDirectory("warmup").toFile();
+		List<Coord> simulated = new ArrayList<Coord>();
+		List<Coord> stored = new ArrayList<Coord>();
+		List<Coord> restored = new ArrayList<Coord>();
+
+		runWarmupWorld(null, simulated);
+		runWarmupWorld(dir.getPath(), stored);
+		assertEquals(1, dir.listFiles().length);
+		runWarmupWorld(dir.getPath(), restored);
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+
+		assertEquals(simulated, stored);
+		assertEquals(simulated, restored);
+	}
+
+	/**
+	 * Moves a set of random waypoint hosts with parallel movement (and
+	 * optionally parallel connectivity) enabled
+	 * @param threads Number of threads to use
+	 * @param connectivity Should connectivity be simulated in parallel
+	 * @param symmetric Should connectivity be checked once per pair
+	 * @param locations List where the final locations of the hosts are put
+	 * @param conEvents List where connection events are logged (or null)
+	 */
+	private void runParallelWorld(int threads, boolean connectivity,
+			boolean symmetric, List<Coord> locations,
+			final List<String> conEvents) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.PARALLEL_MOVEMENT_S,
+				"true");
+		ts.putSetting(World.SETTINGS_NS + "." + 
+				World.PARALLEL_CONNECTIVITY_S, "" + connectivity);
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.SYMMETRIC_CONNECTIVITY_S, "" + symmetric);
+		ts.putSetting(World.SETTINGS_NS + "." + World.THREADS_S,
+				"" + threads);
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		if (conEvents != null) {
+			cl.add(new ConnectionListener() {
+				public void hostsConnected(DTNHost h1, DTNHost h2) {
+					conEvents.add(SimClock.getTime() + " up " + h1 + " " + h2);
+				}
+				public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+					conEvents.add(SimClock.getTime() + " down " + h1 + " " +
+							h2);
+				}
+			});
+		}
+
+		TestUtils utils = new TestUtils(cl, null, ts);
+		utils.setTransmitRange(20);
+		MovementModel proto = new RandomWaypoint(ts);
+		for (int i=0; i<200; i++) {
+			utils.createHost(proto, null);
+		}
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, 1.0,
+				new ArrayList<UpdateListener>(), connectivity,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<500; i++) {
+			w.update();
+		}
+
+		for (DTNHost h : utils.getAllHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+		ConnectivityGrid.reset();
+		TestSettings.init(null);
+		MovementModel.reset(); // don't leave the shared rng state to others
+	}
+
+	/**
+	 * Runs a world of stationary and random waypoint hosts with simple
+	 * broadcast interfaces and records the connection events
+	 * @param incremental Should the incremental connectivity be on
+	 * @param conEvents List where the connection events are put
+	 * @return Number of idle hosts at the end
+	 */
+	private int runStationaryWorld(boolean incremental,
+			final List<String> conEvents) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.INCREMENTAL_CONNECTIVITY_S, "" + incremental);
+		ts.putSetting("stationaryTest." + NetworkInterface.TRANSMIT_RANGE_S,
+				"50");
+		ts.putSetting("stationaryTest." + NetworkInterface.TRANSMIT_SPEED_S,
+				"10");
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost h1, DTNHost h2) {
+				conEvents.add(SimClock.getTime() + " up " + h1 + " " + h2);
+			}
+			public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+				conEvents.add(SimClock.getTime() + " down " + h1 + " " + h2);
+			}
+		});
+
+		TestUtils utils = new TestUtils(cl, null, ts);
+		NetworkInterface proto = new SimpleBroadcastInterface(
+				new Settings("stationaryTest"));
+		proto.setClisteners(cl);
+		utils.setInterfaceProto(proto);
+		Random rng = new Random(1);
+		for (int i=0; i<100; i++) {
+			utils.createHost(new Coord(rng.nextDouble() * 1000,
+					rng.nextDouble() * 1000));
+		}
+		MovementModel mmProto = new RandomWaypoint(ts);
+		for (int i=0; i<50; i++) {
+			utils.createHost(mmProto, null);
+		}
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, 1.0,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<500; i++) {
+			w.update();
+		}
+
+		int nrofIdle = 0;
+		for (DTNHost h : utils.getAllHosts()) {
+			if (h.isConnectivityIdle()) {
+				nrofIdle++;
+			}
+		}
+		ConnectivityGrid.reset();
+		TestSettings.init(null);
+		MovementModel.reset(); // don't leave the shared rng state to others
+		return nrofIdle;
+	}
+
+	/**
+	 * Warms up a set of random waypoint hosts and moves them for a while
+	 * @param cacheDir Warmup cache directory (or null for no cache)
+	 * @param locations List where the hosts' locations after the warmup and
+	 * at the end are put
+	 */
+	private void runWarmupWorld(String cacheDir, List<Coord> locations) {
+		TestSettings ts = new TestSettings();
+		if (cacheDir != null) {
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+					WarmupSnapshot.WARMUP_CACHE_S, cacheDir);
+		}
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+
+		TestUtils utils = new TestUtils(null, null, ts);
+		MovementModel proto = new RandomWaypoint(ts);
+		for (int i=0; i<50; i++) {
+			utils.createHost(proto, null);
+		}
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, 1.0,
+				new ArrayList<UpdateListener>(), false,
+				new ArrayList<EventQueue>());
+		SimClock.getInstance().setTime(-500);
+		w.warmupMovementModel(500);
+		for (DTNHost h : utils.getAllHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+		for (int i=0; i<100; i++) {
+			w.update();
+		}
+
+		for (DTNHost h : utils.getAllHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+		TestSettings.init(null);
+		MovementModel.reset(); // don't leave the shared rng state to others
+	}
+
+	/** Event queue that gives events at the given times */
+	private static class TimesQueue implements EventQueue {
+		private String name;
+		private List<String> processed;
+		private double[] times;
+		private int next;
+
+		public TimesQueue(String name, List<String> processed,
+				double... times) {
+			this.name = name;
+			this.processed = processed;
+			this.times = times;
+		}
+
+		public ExternalEvent nextEvent() {
+			if (next == times.length) {
+				return new ExternalEvent(Double.MAX_VALUE);
+			}
+			return new ExternalEvent(times[next++]) {
+				public void processEvent(World world) {
+					processed.add(name + this.time);
+				}
+			};
+		}
+
+		public double nextEventsTime() {
+			return next == times.length ? Double.MAX_VALUE : times[next];
+		}
+
+		public boolean hasStableTime() {
+			return true;
+		}
+	}
+
+	/**
+	 * Event queue that is empty until events are added to it (like a queue
+	 * filled by another thread)
+	 */
+	private static class LateQueue implements EventQueue {
+		private String name;
+		private List<String> processed;
+		private List<Double> times = new ArrayList<Double>();
+
+		public LateQueue(String name, List<String> processed) {
+			this.name = name;
+			this.processed = processed;
+		}
+
+		public void add(double time) {
+			times.add(time);
+		}
+
+		public ExternalEvent nextEvent() {
+			if (times.isEmpty()) {
+				return new ExternalEvent(Double.MAX_VALUE);
+			}
+			return new ExternalEvent(times.remove(0)) {
+				public void processEvent(World world) {
+					processed.add(name + this.time);
+				}
+			};
+		}
+
+		public double nextEventsTime() {
+			return times.isEmpty() ? Double.MAX_VALUE : times.get(0);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
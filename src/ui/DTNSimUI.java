@@ -15,6 +15,7 @@ import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import core.SimScenario;
 import core.UpdateListener;
 import core.World;
@@ -92,12 +93,17 @@ public abstract class DTNSimUI {
 			settings = new Settings();
 			this.scen = SimScenario.getInstance();
 
-			// add reports
+			// create all reports before adding any (a report may enable
+			// profiling, which affects how the reports are added)
+			Vector<Report> created = new Vector<Report>();
 			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
 				String reportClass = settings.getSetting(REPORT_S + i);
-				addReport((Report)settings.createObject(REPORT_PAC + 
+				created.add((Report)settings.createObject(REPORT_PAC + 
 						reportClass));	
 			}
+			for (Report r : created) {
+				addReport(r);
+			}
 
 			double warmupTime = 0;
 			if (settings.contains(MM_WARMUP_S)) {
@@ -130,27 +136,36 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (this.world != null) {
+			this.world.done();
+		}
 	}
 	
 	/**
-	 * Adds a new report for simulator
+	 * Adds a new report for simulator. If profiling is enabled, the
+	 * report's listener callbacks (other than update listener calls, which
+	 * the world measures itself) are measured by {@link SimProfiler}.
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
 		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
+			scen.addMessageListener(SimProfiler.profiledListener(
+					(MessageListener)r));
 		}
 		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
+			scen.addConnectionListener(SimProfiler.profiledListener(
+					(ConnectionListener)r));
 		}
 		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+			scen.addMovementListener(SimProfiler.profiledListener(
+					(MovementListener)r));
 		}
 		if (r instanceof UpdateListener) {
 			scen.addUpdateListener((UpdateListener)r);
 		}
 		if (r instanceof ApplicationListener) {
-			scen.addApplicationListener((ApplicationListener)r);
+			scen.addApplicationListener(SimProfiler.profiledListener(
+					(ApplicationListener)r));
 		}
 
 		this.reports.add(r);